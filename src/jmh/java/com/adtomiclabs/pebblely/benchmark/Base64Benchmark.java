@@ -0,0 +1,116 @@
+package com.adtomiclabs.pebblely.benchmark;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Base64 codecs used on the way to and from the Pebblely API: commons-codec, which
+ * {@link com.adtomiclabs.pebblely.service.FileStorageService} decodes encoded images with, {@link Base64} on whole
+ * arrays, and the streaming codecs of {@link Base64} and Jackson, which encode file-backed request images and
+ * decode responses without holding both representations in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Base64Benchmark {
+
+    private static final Base64Variant RESPONSE_VARIANT = Base64Variants.MIME_NO_LINEFEEDS
+            .withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+
+    @Param({"65536", "1048576", "8388608"})
+    private int size;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private byte[] image;
+
+    private String encoded;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkData.image(size);
+        encoded = Base64.getEncoder().encodeToString(image);
+        response = ("{\"data\":\"" + encoded + "\",\"credits\":100}").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public String encodeCommonsCodec() {
+        return org.apache.commons.codec.binary.Base64.encodeBase64String(image);
+    }
+
+    @Benchmark
+    public String encodeJdk() {
+        return Base64.getEncoder().encodeToString(image);
+    }
+
+    @Benchmark
+    public void encodeJdkStreaming(Blackhole blackhole) throws IOException {
+        try (OutputStream outputStream = Base64.getEncoder().wrap(new BenchmarkData.BlackholeOutputStream(blackhole))) {
+            new ByteArrayInputStream(image).transferTo(outputStream);
+        }
+    }
+
+    @Benchmark
+    public void encodeJacksonStreaming(Blackhole blackhole) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(new BenchmarkData.BlackholeOutputStream(blackhole))) {
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, new ByteArrayInputStream(image), image.length);
+        }
+    }
+
+    @Benchmark
+    public byte[] decodeCommonsCodec() {
+        return org.apache.commons.codec.binary.Base64.decodeBase64(encoded);
+    }
+
+    @Benchmark
+    public byte[] decodeJdk() {
+        return Base64.getDecoder().decode(encoded);
+    }
+
+    @Benchmark
+    public void decodeJdkStreaming(Blackhole blackhole) throws IOException {
+        try (InputStream inputStream = Base64.getMimeDecoder().wrap(new ByteArrayInputStream(encoded.getBytes(StandardCharsets.ISO_8859_1)))) {
+            inputStream.transferTo(new BenchmarkData.BlackholeOutputStream(blackhole));
+        }
+    }
+
+    @Benchmark
+    public int decodeJacksonStreaming(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            while (parser.nextToken() != JsonToken.VALUE_STRING) {
+                // Skips to the image
+            }
+            return parser.readBinaryValue(RESPONSE_VARIANT, new BenchmarkData.BlackholeOutputStream(blackhole));
+        }
+    }
+
+}
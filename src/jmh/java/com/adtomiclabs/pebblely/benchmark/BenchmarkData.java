@@ -0,0 +1,85 @@
+package com.adtomiclabs.pebblely.benchmark;
+
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Data and helpers shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns incompressible bytes standing for an image of the given size. The seed is fixed so that every run
+     * encodes the same content.
+     *
+     * @param size the number of bytes
+     * @return the bytes
+     */
+    static byte[] image(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a storage configuration rooted in the given directory instead of the working directory.
+     *
+     * @param location the storage location
+     * @return the storage configuration
+     */
+    static StoragePropertiesConfig storage(Path location) {
+        return new StoragePropertiesConfig() {
+            @Override
+            public String getLocation() {
+                return location.toString();
+            }
+        };
+    }
+
+    /**
+     * Deletes a directory created by a benchmark.
+     *
+     * @param directory the directory to delete
+     * @throws IOException if the directory cannot be deleted
+     */
+    static void delete(Path directory) throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    /**
+     * Stream handing every written byte to a {@link Blackhole}, so that streamed encodings are not optimized
+     * away without paying for the copy into a buffer.
+     */
+    static final class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(off);
+            blackhole.consume(len);
+        }
+
+    }
+
+}
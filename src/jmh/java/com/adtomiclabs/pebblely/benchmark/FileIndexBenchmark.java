@@ -0,0 +1,125 @@
+package com.adtomiclabs.pebblely.benchmark;
+
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.FileSortEnum;
+import com.adtomiclabs.pebblely.model.response.FilePageDto;
+import com.adtomiclabs.pebblely.service.FileIndexService;
+import com.adtomiclabs.pebblely.storage.LocalStorageBackend;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the listing of a storage directory holding many files: the manifest load and listing that build the
+ * index at startup, the pages then read from the index, and the lookup of a file by name in the sharded layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileIndexBenchmark {
+
+    private static final String DIRECTORY = "upscale";
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "100000"})
+    private int files;
+
+    private Path location;
+
+    private LocalStorageBackend storageBackend;
+
+    private FileIndexService fileIndexService;
+
+    private String middleCursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        location = Files.createTempDirectory("pebblely-index-benchmark");
+        Path directory = Files.createDirectories(location.resolve(DIRECTORY));
+        Instant modified = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < files; i++) {
+            // Names and modification times in different orders, as for files uploaded over time
+            Path file = Files.write(directory.resolve(String.format("image-%06d.png", (i * 7919) % files)), new byte[16]);
+            Files.setLastModifiedTime(file, FileTime.from(modified.plusSeconds(i)));
+        }
+        // Imports the flat files into their shards
+        storageBackend = newBackend();
+        fileIndexService = newIndex(storageBackend);
+        middleCursor = fileIndexService.list(DIRECTORY, FileSortEnum.NAME, false, null, null, files / 2).getNextCursor();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storageBackend.stop();
+        BenchmarkData.delete(location);
+    }
+
+    @Benchmark
+    public FilePageDto firstPageByName() {
+        return fileIndexService.list(DIRECTORY, FileSortEnum.NAME, false, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FilePageDto firstPageByModified() {
+        return fileIndexService.list(DIRECTORY, FileSortEnum.MODIFIED, true, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FilePageDto middlePageByName() {
+        return fileIndexService.list(DIRECTORY, FileSortEnum.NAME, false, null, middleCursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public FilePageDto prefixPage() {
+        return fileIndexService.list(DIRECTORY, FileSortEnum.NAME, false, "image-0050", null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Optional<StoredObject> lookup() throws IOException {
+        return storageBackend.stat(DIRECTORY, String.format("image-%06d.png", files / 3));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public FileIndexService scan() {
+        LocalStorageBackend backend = newBackend();
+        FileIndexService index = newIndex(backend);
+        backend.stop();
+        return index;
+    }
+
+    private LocalStorageBackend newBackend() {
+        LocalStorageBackend backend = new LocalStorageBackend(location, FilesDirectoriesEnum.getDirectoriesNames());
+        backend.start();
+        return backend;
+    }
+
+    private static FileIndexService newIndex(LocalStorageBackend backend) {
+        FileIndexService index = new FileIndexService(backend, new ThumbnailPropertiesConfig(), "");
+        index.start();
+        return index;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.adtomiclabs.pebblely.benchmark;
+
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.service.FileStorageService;
+import com.adtomiclabs.pebblely.storage.LocalStorageBackend;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link FileStorageService} stores uploads and saves Pebblely results, across image sizes.
+ * <p>
+ * Uploads are streamed to disk and only encoded when a request body is written, which {@link #storeAndEncodeUpload}
+ * measures end to end. Results are either encoded images, decoded by the storage, or temporary files decoded
+ * while the response was read, which are moved into place. Every store adds a file rather than replacing the
+ * previous one, so the stored file is deleted after each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileStorageBenchmark {
+
+    private static final String UPLOAD_DIRECTORY = "originals";
+    private static final String RESULT_DIRECTORY = "upscale";
+    private static final String FILENAME = "image.png";
+
+    @Param({"65536", "1048576", "8388608"})
+    private int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path location;
+
+    private LocalStorageBackend storageBackend;
+
+    private FileStorageService fileStorageService;
+
+    private MockMultipartFile multipartFile;
+
+    private Base64Image encodedImage;
+
+    private String storedDirectory;
+
+    private FileStorageService.StoredFile stored;
+
+    @Setup
+    public void setUp() throws IOException {
+        location = Files.createTempDirectory("pebblely-storage-benchmark");
+        storageBackend = new LocalStorageBackend(location, FilesDirectoriesEnum.getDirectoriesNames());
+        storageBackend.start();
+        fileStorageService = new FileStorageService(BenchmarkData.storage(location), storageBackend);
+        byte[] image = BenchmarkData.image(size);
+        multipartFile = new MockMultipartFile("files", FILENAME, "image/png", image);
+        encodedImage = Base64Image.of(Base64.getEncoder().encodeToString(image));
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteStoredFile() throws IOException {
+        if (stored != null) {
+            storageBackend.delete(storedDirectory, stored.name());
+            stored = null;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storageBackend.stop();
+        BenchmarkData.delete(location);
+    }
+
+    @Benchmark
+    public FileStorageService.StoredFile storeUpload() throws IOException {
+        return keep(UPLOAD_DIRECTORY, fileStorageService.storeMultipartFile(multipartFile, UPLOAD_DIRECTORY));
+    }
+
+    @Benchmark
+    public void storeAndEncodeUpload(Blackhole blackhole) throws IOException {
+        Base64Image image = Base64Image.ofFile(keep(UPLOAD_DIRECTORY, fileStorageService.storeMultipartFile(multipartFile, UPLOAD_DIRECTORY)).file());
+        objectMapper.writeValue(new BenchmarkData.BlackholeOutputStream(blackhole), image);
+    }
+
+    @Benchmark
+    public FileStorageService.StoredFile saveEncodedResult() throws IOException {
+        return keep(RESULT_DIRECTORY, fileStorageService.saveImage(encodedImage, RESULT_DIRECTORY, FILENAME));
+    }
+
+    @Benchmark
+    public FileStorageService.StoredFile saveTemporaryResult(TemporaryResult result) throws IOException {
+        return keep(RESULT_DIRECTORY, fileStorageService.saveImage(result.image, RESULT_DIRECTORY, FILENAME));
+    }
+
+    private FileStorageService.StoredFile keep(String directory, FileStorageService.StoredFile file) {
+        storedDirectory = directory;
+        stored = file;
+        return file;
+    }
+
+    /**
+     * A response decoded to a temporary file, written again before every invocation as saving it moves it away.
+     */
+    @State(Scope.Thread)
+    public static class TemporaryResult {
+
+        private Base64Image image;
+
+        @Setup(Level.Invocation)
+        public void setUp(FileStorageBenchmark benchmark) throws IOException {
+            Path file = Files.createDirectories(benchmark.location.resolve(".staging")).resolve("response.tmp");
+            Files.write(file, benchmark.multipartFile.getBytes());
+            image = Base64Image.ofTemporaryFile(file);
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.adtomiclabs.pebblely.benchmark;
+
+import com.adtomiclabs.pebblely.feign.PebblelyRequestEncoder;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.request.CreateBackgroundDto;
+import com.adtomiclabs.pebblely.model.request.RequestBodyTemplate;
+import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import feign.RequestTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the request bodies written by {@link PebblelyRequestEncoder} for requests carrying large images, either
+ * already encoded or read from a file while the body is written, and the requests of a batch spliced into their
+ * shared {@link RequestBodyTemplate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RequestSerializationBenchmark {
+
+    @Param({"65536", "1048576", "8388608"})
+    private int size;
+
+    @Param({"encoded", "file"})
+    private String source;
+
+    @Param({"false", "true"})
+    private boolean compression;
+
+    private Path directory;
+
+    private PebblelyRequestEncoder encoder;
+
+    private UpscaleDto upscaleDto;
+
+    private CreateBackgroundDto createBackgroundDto;
+
+    private CreateBackgroundDto templatedCreateBackgroundDto;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        encoder = new PebblelyRequestEncoder(objectMapper, compression);
+        directory = Files.createTempDirectory("pebblely-serialization-benchmark");
+        byte[] bytes = BenchmarkData.image(size);
+        Base64Image image = "file".equals(source)
+                ? Base64Image.ofFile(Files.write(directory.resolve("image.png"), bytes))
+                : Base64Image.of(Base64.getEncoder().encodeToString(bytes));
+
+        upscaleDto = UpscaleDto.builder().image(image).size(2048).build();
+        CreateBackgroundDto sharedDto = CreateBackgroundDto.builder()
+                .theme("Surprise me")
+                .description("A product on a marble table")
+                .negative("blurry")
+                .height(2048)
+                .width(2048)
+                .build();
+        createBackgroundDto = sharedDto.toBuilder().images(List.of(image)).build();
+        RequestBodyTemplate bodyTemplate = RequestBodyTemplate.of(objectMapper, sharedDto.toBuilder()
+                .images(List.of(RequestBodyTemplate.PLACEHOLDER_IMAGE))
+                .build());
+        templatedCreateBackgroundDto = createBackgroundDto.toBuilder().bodyTemplate(bodyTemplate).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public byte[] upscale() {
+        return encode(upscaleDto);
+    }
+
+    @Benchmark
+    public byte[] createBackground() {
+        return encode(createBackgroundDto);
+    }
+
+    @Benchmark
+    public byte[] createBackgroundFromTemplate() {
+        return encode(templatedCreateBackgroundDto);
+    }
+
+    private byte[] encode(Object request) {
+        RequestTemplate template = new RequestTemplate();
+        encoder.encode(request, request.getClass(), template);
+        return template.body();
+    }
+
+}
@@ -3,11 +3,13 @@ package com.adtomiclabs.pebblely;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * The main entry point for the Pebblely Files Application.
  */
 @EnableFeignClients
+@EnableScheduling
 @SpringBootApplication(scanBasePackages = "com.adtomiclabs.pebblely")
 public class PebblelyFilesApplication {
 
@@ -0,0 +1,39 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration class for batch processing properties.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.batch")
+public class BatchPropertiesConfig {
+
+    /**
+     * The number of files processed in parallel for operations without a specific concurrency.
+     */
+    private int defaultConcurrency = 4;
+
+    /**
+     * The number of files processed in parallel, keyed by operation name (e.g. {@code upscale}).
+     */
+    private Map<String, Integer> concurrency = new HashMap<>();
+
+    /**
+     * Returns the number of files of the given operation that may be processed in parallel.
+     *
+     * @param operation the Pebblely operation
+     * @return the configured concurrency, never lower than one
+     */
+    public int getConcurrency(PebblelyOperationEnum operation) {
+        return Math.max(1, concurrency.getOrDefault(operation.getName(), defaultConcurrency));
+    }
+
+}
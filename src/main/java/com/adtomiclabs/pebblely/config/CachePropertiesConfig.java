@@ -0,0 +1,26 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration class for the Pebblely result cache properties.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.cache")
+public class CachePropertiesConfig {
+
+    /**
+     * Whether results of previous Pebblely calls are reused for identical requests.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum size of the cached results on disk.
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+
+}
@@ -0,0 +1,29 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the circuit breakers of the Pebblely API endpoints.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.circuit-breaker")
+public class CircuitBreakerPropertiesConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * The number of consecutive failed attempts after which calls to an endpoint fail fast.
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * How long calls to an endpoint fail fast before a single trial call is let through.
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,71 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration class for the adaptive concurrency limits of the Pebblely API endpoints.
+ * <p>
+ * Every endpoint has its own limit, so that a slow operation cannot use up the capacity of the others. The sum
+ * of the maximum limits should not exceed {@code pebblely.http.max-connections}, otherwise the endpoints still
+ * compete for the pooled connections.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.concurrency-limit")
+public class ConcurrencyLimitPropertiesConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * The limit of every endpoint before any call completed.
+     */
+    private int initialLimit = 4;
+
+    private int minLimit = 1;
+
+    /**
+     * The highest limit of the endpoints without a specific maximum.
+     */
+    private int defaultMaxLimit = 6;
+
+    /**
+     * The highest limit, keyed by operation name (e.g. {@code upscale}). The credits endpoint is kept narrow, as
+     * its calls are cheap and rare.
+     */
+    private Map<String, Integer> maxLimit = new HashMap<>(Map.of(PebblelyOperationEnum.CREDITS.getName(), 2));
+
+    /**
+     * The factor applied to the limit of an endpoint when a call is throttled or times out, or when its latency
+     * rises.
+     */
+    private double backoffRatio = 0.7;
+
+    /**
+     * How many times the long-term average latency of an endpoint the average latency of its last few calls may
+     * reach before the limit shrinks.
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * The longest time a call waits for the limit of its endpoint before failing.
+     */
+    private Duration maxWait = Duration.ofSeconds(60);
+
+    /**
+     * Returns the highest limit of the given operation.
+     *
+     * @param operation the Pebblely operation
+     * @return the configured maximum, never lower than one
+     */
+    public int getMaxLimit(PebblelyOperationEnum operation) {
+        return Math.max(1, maxLimit.getOrDefault(operation.getName(), defaultMaxLimit));
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the cached Pebblely credits balance.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.credits")
+public class CreditsPropertiesConfig {
+
+    /**
+     * How long a known balance is trusted before the background refresher asks the Pebblely API again.
+     * Every transformation response also updates the balance, so busy periods need no extra calls.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * How often the background refresher checks whether the balance has expired.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(30);
+
+}
@@ -1,11 +1,27 @@
 package com.adtomiclabs.pebblely.config;
 
+import com.adtomiclabs.pebblely.feign.PebblelyCircuitBreakerCapability;
+import com.adtomiclabs.pebblely.feign.PebblelyConcurrencyLimitCapability;
+import com.adtomiclabs.pebblely.feign.PebblelyErrorDecoder;
+import com.adtomiclabs.pebblely.feign.PebblelyFeignLogger;
+import com.adtomiclabs.pebblely.feign.PebblelyMetricsCapability;
+import com.adtomiclabs.pebblely.feign.PebblelyRequestEncoder;
+import com.adtomiclabs.pebblely.feign.PebblelyResponseDecoder;
+import com.adtomiclabs.pebblely.feign.PebblelyRetryer;
+import com.adtomiclabs.pebblely.service.PebblelyMetricsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Capability;
 import feign.Logger;
 import feign.RequestInterceptor;
+import feign.Retryer;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import feign.codec.ErrorDecoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.openfeign.FeignFormatterRegistrar;
+import org.springframework.cloud.openfeign.FeignLoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.format.datetime.standard.DateTimeFormatterRegistrar;
@@ -27,6 +43,24 @@ public class FeignConfig {
     @Value("${pebblely.api-key}")
     private String pebblelyAPiKey;
 
+    /**
+     * Whether the image data of Pebblely responses is decoded straight to disk instead of into memory.
+     */
+    @Value("${pebblely.response.streaming-decode:true}")
+    private boolean streamingDecode;
+
+    private final StoragePropertiesConfig storagePropertiesConfig;
+
+    private final HttpClientPropertiesConfig httpClientPropertiesConfig;
+
+    private final WireLogPropertiesConfig wireLogPropertiesConfig;
+
+    private final RetryPropertiesConfig retryPropertiesConfig;
+
+    private final CircuitBreakerPropertiesConfig circuitBreakerPropertiesConfig;
+
+    private final ConcurrencyLimitPropertiesConfig concurrencyLimitPropertiesConfig;
+
     /**
      * The formatter for date values.
      */
@@ -53,7 +87,74 @@ public class FeignConfig {
     }
 
     /**
-     * Specifies the logging level for Feign clients.
+     * Creates the encoder writing request bodies as JSON, streaming file-backed images into the body and
+     * compressing it when enabled.
+     *
+     * @param objectMapper the application object mapper
+     * @return the request encoder
+     */
+    @Bean
+    public Encoder feignEncoder(ObjectMapper objectMapper) {
+        return new PebblelyRequestEncoder(objectMapper, httpClientPropertiesConfig.isRequestCompression());
+    }
+
+    /**
+     * Creates the decoder reading Pebblely responses, streaming their image data to the staging directory
+     * when enabled.
+     *
+     * @param objectMapper the application object mapper
+     * @return the response decoder
+     */
+    @Bean
+    public Decoder feignDecoder(ObjectMapper objectMapper) {
+        return new PebblelyResponseDecoder(objectMapper, storagePropertiesConfig.getStagingLocation(), streamingDecode);
+    }
+
+    /**
+     * Creates the error decoder marking timeouts, rate limiting and server errors as retryable.
+     *
+     * @return the error decoder
+     */
+    @Bean
+    public ErrorDecoder feignErrorDecoder() {
+        return new PebblelyErrorDecoder();
+    }
+
+    /**
+     * Creates the retryer retrying retryable failures with exponential backoff and jitter, honoring the
+     * {@code Retry-After} delays asked for by the Pebblely API.
+     *
+     * @return the retryer
+     */
+    @Bean
+    public Retryer feignRetryer() {
+        return new PebblelyRetryer(retryPropertiesConfig);
+    }
+
+    /**
+     * Creates the capability giving every Pebblely endpoint its own circuit breaker.
+     *
+     * @return the circuit breaker capability
+     */
+    @Bean
+    public Capability pebblelyCircuitBreakerCapability() {
+        return new PebblelyCircuitBreakerCapability(circuitBreakerPropertiesConfig);
+    }
+
+    /**
+     * Creates the capability giving every Pebblely endpoint its own adaptive concurrency limit.
+     *
+     * @param metricsService the service publishing the current limits
+     * @return the concurrency limit capability
+     */
+    @Bean
+    public PebblelyConcurrencyLimitCapability pebblelyConcurrencyLimitCapability(PebblelyMetricsService metricsService) {
+        return new PebblelyConcurrencyLimitCapability(concurrencyLimitPropertiesConfig, metricsService);
+    }
+
+    /**
+     * Specifies the logging level for Feign clients. The full level is affordable with {@link PebblelyFeignLogger},
+     * as it only previews a sample of the bodies.
      *
      * @return the logging level
      */
@@ -62,6 +163,29 @@ public class FeignConfig {
         return Logger.Level.FULL;
     }
 
+    /**
+     * Creates the factory of the size-aware loggers used by the Feign clients instead of the default ones.
+     *
+     * @return the logger factory
+     */
+    @Bean
+    public FeignLoggerFactory feignLoggerFactory() {
+        return type -> new PebblelyFeignLogger(type, (int) wireLogPropertiesConfig.getPreviewSize().toBytes(),
+                wireLogPropertiesConfig.getPreviewSampleRate());
+    }
+
+    /**
+     * Creates the capability recording the encode, call and decode stage timers and the byte counters of the
+     * Pebblely requests.
+     *
+     * @param metricsService the service recording the Pebblely metrics
+     * @return the metrics capability
+     */
+    @Bean
+    public Capability pebblelyMetricsCapability(PebblelyMetricsService metricsService) {
+        return new PebblelyMetricsCapability(metricsService);
+    }
+
     /**
      * Registers custom formatters for date, time, and date-time values.
      *
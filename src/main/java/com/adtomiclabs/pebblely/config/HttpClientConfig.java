@@ -0,0 +1,99 @@
+package com.adtomiclabs.pebblely.config;
+
+import feign.Client;
+import feign.RequestInterceptor;
+import feign.http2client.Http2Client;
+import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.RequiredArgsConstructor;
+import org.apache.http.HttpHeaders;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration class for the HTTP client behind the Pebblely API client.
+ * <p>
+ * By default, calls go through a pooled Apache client keeping connections, and their TLS sessions, alive between
+ * calls, asking for gzip responses and publishing its pool usage as {@code httpcomponents.httpclient.pool.*}
+ * metrics. Setting {@code pebblely.http.http2} switches to the JDK client, which multiplexes calls over HTTP/2.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class HttpClientConfig {
+
+    private static final String POOL_NAME = "pebblely";
+    private static final String GZIP = "gzip";
+
+    private final HttpClientPropertiesConfig httpClientPropertiesConfig;
+
+    /**
+     * Creates the pooled Apache HTTP client and binds its pool metrics.
+     *
+     * @param meterRegistry the registry exposing the pool metrics
+     * @return the HTTP client
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pebblely.http", name = "http2", havingValue = "false", matchIfMissing = true)
+    public CloseableHttpClient pebblelyHttpClient(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                httpClientPropertiesConfig.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(httpClientPropertiesConfig.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(httpClientPropertiesConfig.getMaxConnections());
+        connectionManager.setValidateAfterInactivity((int) httpClientPropertiesConfig.getValidateAfterInactivity().toMillis());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+
+        // Content compression stays enabled: gzip responses are requested and transparently decompressed
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(httpClientPropertiesConfig.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .evictExpiredConnections()
+                .disableCookieManagement()
+                .build();
+    }
+
+    /**
+     * Creates the Feign client executing calls with the pooled Apache HTTP client.
+     *
+     * @param pebblelyHttpClient the pooled HTTP client
+     * @return the Feign client
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pebblely.http", name = "http2", havingValue = "false", matchIfMissing = true)
+    public Client feignClient(CloseableHttpClient pebblelyHttpClient) {
+        return new ApacheHttpClient(pebblelyHttpClient);
+    }
+
+    /**
+     * Creates the Feign client executing calls with the JDK HTTP client over HTTP/2.
+     *
+     * @return the Feign client
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pebblely.http", name = "http2", havingValue = "true")
+    public Client http2FeignClient() {
+        return new Http2Client(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build());
+    }
+
+    /**
+     * Creates a request interceptor asking for gzip responses, which the JDK HTTP client does not do by itself.
+     * The responses are decompressed by {@link com.adtomiclabs.pebblely.feign.PebblelyResponseDecoder}.
+     *
+     * @return the request interceptor
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pebblely.http", name = "http2", havingValue = "true")
+    public RequestInterceptor acceptGzipInterceptor() {
+        return requestTemplate -> requestTemplate.header(HttpHeaders.ACCEPT_ENCODING, GZIP);
+    }
+
+}
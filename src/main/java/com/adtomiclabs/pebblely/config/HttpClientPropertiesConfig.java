@@ -0,0 +1,50 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the HTTP client used by the Pebblely API client.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.http")
+public class HttpClientPropertiesConfig {
+
+    /**
+     * The maximum number of pooled connections. Every connection goes to the same host, so this should cover
+     * the parallel calls of all batches and jobs, as configured in {@link BatchPropertiesConfig} and
+     * {@link JobPropertiesConfig}.
+     */
+    private int maxConnections = 32;
+
+    /**
+     * How long a pooled connection may stay idle before it is closed.
+     */
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    /**
+     * The maximum lifetime of a pooled connection, whether idle or not.
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    /**
+     * How long a pooled connection may stay idle before it is checked again before being reused.
+     */
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+    /**
+     * Whether to use the JDK HTTP client, which negotiates HTTP/2, instead of the pooled Apache HTTP/1.1 client.
+     * Pool metrics are only available for the Apache client.
+     */
+    private boolean http2 = false;
+
+    /**
+     * Whether to gzip request bodies. Only enable it if the Pebblely API accepts compressed requests.
+     */
+    private boolean requestCompression = false;
+
+}
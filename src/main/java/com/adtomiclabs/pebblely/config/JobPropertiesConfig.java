@@ -0,0 +1,40 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for asynchronous job properties.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.jobs")
+public class JobPropertiesConfig {
+
+    /**
+     * The number of jobs run at the same time. The files of each job are then processed in parallel
+     * as configured in {@link BatchPropertiesConfig}.
+     */
+    private int concurrency = 2;
+
+    /**
+     * How long a finished job stays available for status queries.
+     */
+    private Duration retention = Duration.ofHours(1);
+
+    /**
+     * Whether the progress of the jobs is journaled to disk, so that the jobs interrupted by a restart are
+     * resumed with the files they had not completed.
+     */
+    private boolean journalEnabled = true;
+
+    /**
+     * The number of journal entries below which the journal is not compacted. Above it, the journal is compacted
+     * whenever it has doubled since its last compaction.
+     */
+    private long journalCompactionThreshold = 100_000;
+
+}
@@ -0,0 +1,68 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Configuration class for the normalization of the uploaded images before they are sent to the Pebblely API.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.preprocessing")
+public class PreprocessingPropertiesConfig {
+
+    /**
+     * The preprocessing of each operation, keyed by operation name (e.g. {@code remove-background}). Images of
+     * operations without an entry are sent as uploaded.
+     */
+    private Map<String, Preprocessing> operations = new HashMap<>();
+
+    /**
+     * Returns the preprocessing of the given operation.
+     *
+     * @param operation the Pebblely operation
+     * @return the preprocessing, or an empty optional if the images of the operation are sent as uploaded
+     */
+    public Optional<Preprocessing> getPreprocessing(PebblelyOperationEnum operation) {
+        return Optional.ofNullable(operations.get(operation.getName()))
+                .filter(Preprocessing::isEnabled);
+    }
+
+    /**
+     * The preprocessing applied to the images of an operation. Preprocessed images are always re-encoded, which
+     * drops their metadata.
+     */
+    @Data
+    public static class Preprocessing {
+
+        /**
+         * Whether the images of the operation are preprocessed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * The largest width or height of the sent images, or {@code null} to keep their size. Smaller images are
+         * never enlarged.
+         */
+        private Integer maxDimension;
+
+        /**
+         * The format of the sent images ({@code png} or {@code jpeg}), or {@code null} to keep the format of
+         * the upload. JPEG drops transparency.
+         */
+        private String format;
+
+        /**
+         * The quality of the JPEG images, between 0 and 1.
+         */
+        private float jpegQuality = 0.9f;
+
+    }
+
+}
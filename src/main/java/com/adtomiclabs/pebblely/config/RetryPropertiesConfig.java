@@ -0,0 +1,44 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration class for the retries of failed Pebblely API calls.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.retry")
+public class RetryPropertiesConfig {
+
+    /**
+     * The maximum number of attempts of a call, including the first one. 1 disables retries.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * The delay before the first retry, multiplied by {@link #multiplier} before each following one.
+     */
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    /**
+     * The upper bound of the computed delays.
+     */
+    private Duration maxBackoff = Duration.ofSeconds(10);
+
+    private double multiplier = 2.0;
+
+    /**
+     * The fraction of each computed delay that is randomized, so that calls failing together do not retry together.
+     */
+    private double jitter = 0.5;
+
+    /**
+     * The longest {@code Retry-After} delay that is waited for. A call asked to wait longer fails instead.
+     */
+    private Duration maxRetryAfter = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,27 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.simulator.PebblelySimulator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class starting the Pebblely API simulator with the application when
+ * {@code pebblely.simulator.enabled} is set.
+ */
+@Configuration
+public class SimulatorConfig {
+
+    /**
+     * Creates the simulator, listening for as long as the application runs.
+     *
+     * @param simulatorPropertiesConfig the simulator configuration
+     * @return the simulator
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "pebblely.simulator", name = "enabled", havingValue = "true")
+    public PebblelySimulator pebblelySimulator(SimulatorPropertiesConfig simulatorPropertiesConfig) {
+        return new PebblelySimulator(simulatorPropertiesConfig);
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration class for the local stand-in of the Pebblely API, which lets the application be run and measured
+ * without calling {@code api.pebblely.com}. The Pebblely client is pointed at it with {@code pebblely.api.base-url},
+ * as done by the {@code simulator} profile.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.simulator")
+public class SimulatorPropertiesConfig {
+
+    /**
+     * Whether the simulator is started with the application.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The local port the simulator listens on, or 0 for any free port.
+     */
+    private int port = 8090;
+
+    /**
+     * The credits balance the simulator starts with. Every successful transformation consumes one credit.
+     */
+    private int credits = 100_000;
+
+    /**
+     * The size of the images returned by operations without a specific response size, before Base64 encoding.
+     */
+    private DataSize defaultResponseSize = DataSize.ofMegabytes(1);
+
+    /**
+     * The size of the returned images, keyed by operation name (e.g. {@code upscale}).
+     */
+    private Map<String, DataSize> responseSize = new HashMap<>();
+
+    /**
+     * The latency of operations without a specific latency.
+     */
+    private Latency defaultLatency = new Latency();
+
+    /**
+     * The latency of the calls, keyed by operation name (e.g. {@code create-background}).
+     */
+    private Map<String, Latency> latency = new HashMap<>();
+
+    /**
+     * The fraction of the calls rejected at once with a {@code 429} status, between 0 and 1.
+     */
+    private double rateLimitRate = 0;
+
+    /**
+     * The fraction of the calls failing with a {@code 500}, {@code 502} or {@code 503} status after their
+     * latency, between 0 and 1.
+     */
+    private double serverErrorRate = 0;
+
+    /**
+     * The delay asked for by the {@code Retry-After} header of the rate limited calls.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * The number of calls accepted per second, the others being rate limited, or 0 for no limit.
+     */
+    private int maxRequestsPerSecond = 0;
+
+    /**
+     * The number of calls processed at the same time, the others being rate limited, or 0 for no limit.
+     */
+    private int maxConcurrentRequests = 0;
+
+    /**
+     * Returns the size of the images returned by the given operation.
+     *
+     * @param operation the Pebblely operation
+     * @return the image size, before Base64 encoding
+     */
+    public DataSize getResponseSize(PebblelyOperationEnum operation) {
+        return responseSize.getOrDefault(operation.getName(), defaultResponseSize);
+    }
+
+    /**
+     * Returns the latency of the calls of the given operation.
+     *
+     * @param operation the Pebblely operation
+     * @return the latency
+     */
+    public Latency getLatency(PebblelyOperationEnum operation) {
+        return latency.getOrDefault(operation.getName(), defaultLatency);
+    }
+
+    /**
+     * The distribution of the latency of a simulated call.
+     */
+    @Data
+    public static class Latency {
+
+        /**
+         * The shape of the distribution. A log-normal distribution gives the long tail of real image generation
+         * calls.
+         */
+        private Distribution distribution = Distribution.LOG_NORMAL;
+
+        /**
+         * The median latency, which is also the latency of every call with a fixed distribution.
+         */
+        private Duration median = Duration.ofSeconds(2);
+
+        /**
+         * The 99th percentile of the latency of a log-normal distribution.
+         */
+        private Duration p99 = Duration.ofSeconds(6);
+
+    }
+
+    /**
+     * The shapes of latency distribution.
+     */
+    public enum Distribution {
+
+        FIXED,
+
+        LOG_NORMAL
+
+    }
+
+}
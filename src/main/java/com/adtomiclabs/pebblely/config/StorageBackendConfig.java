@@ -0,0 +1,89 @@
+package com.adtomiclabs.pebblely.config;
+
+import com.adtomiclabs.pebblely.storage.LocalStorageBackend;
+import com.adtomiclabs.pebblely.storage.S3StorageBackend;
+import com.adtomiclabs.pebblely.storage.StorageBackend;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration class creating the {@link StorageBackend} selected by {@code pebblely.storage.backend}.
+ */
+@Configuration
+public class StorageBackendConfig {
+
+    /**
+     * Creates the backend keeping the stored files on the local file system.
+     *
+     * @param storagePropertiesConfig the storage configuration holding the files location
+     * @return the local backend
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "pebblely.storage", name = "backend", havingValue = "local", matchIfMissing = true)
+    public LocalStorageBackend localStorageBackend(StoragePropertiesConfig storagePropertiesConfig) {
+        return new LocalStorageBackend(Path.of(storagePropertiesConfig.getLocation()), FilesDirectoriesEnum.getDirectoriesNames());
+    }
+
+    /**
+     * Creates the backend keeping the stored files in an S3-compatible object store.
+     *
+     * @param storagePropertiesConfig the storage configuration holding the object store properties
+     * @return the object store backend
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "pebblely.storage", name = "backend", havingValue = "s3")
+    public S3StorageBackend s3StorageBackend(StoragePropertiesConfig storagePropertiesConfig) {
+        StoragePropertiesConfig.S3 properties = storagePropertiesConfig.getS3();
+        return new S3StorageBackend(s3Client(properties), s3Presigner(properties), storagePropertiesConfig,
+                FilesDirectoriesEnum.getDirectoriesNames());
+    }
+
+    private static S3Client s3Client(StoragePropertiesConfig.S3 properties) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(properties.getRegion()))
+                .credentialsProvider(credentialsProvider(properties))
+                .serviceConfiguration(s3Configuration(properties));
+        if (properties.getEndpoint() != null) {
+            builder.endpointOverride(properties.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    private static S3Presigner s3Presigner(StoragePropertiesConfig.S3 properties) {
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(Region.of(properties.getRegion()))
+                .credentialsProvider(credentialsProvider(properties))
+                .serviceConfiguration(s3Configuration(properties));
+        if (properties.getEndpoint() != null) {
+            builder.endpointOverride(properties.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    private static AwsCredentialsProvider credentialsProvider(StoragePropertiesConfig.S3 properties) {
+        if (properties.getAccessKey() == null) {
+            return DefaultCredentialsProvider.create();
+        }
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(properties.getAccessKey(), properties.getSecretKey()));
+    }
+
+    private static S3Configuration s3Configuration(StoragePropertiesConfig.S3 properties) {
+        return S3Configuration.builder()
+                .pathStyleAccessEnabled(properties.isPathStyleAccess())
+                .build();
+    }
+
+}
@@ -1,22 +1,185 @@
 package com.adtomiclabs.pebblely.config;
 
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Configuration class for storage properties.
  */
+@Data
 @Configuration
+@ConfigurationProperties(prefix = "pebblely.storage")
 public class StoragePropertiesConfig {
 
-    private static final String LOCATION = "files";
+    private static final String STAGING_DIRECTORY = ".staging";
+    private static final String CACHE_DIRECTORY = ".cache";
+    private static final String THUMBNAIL_DIRECTORY = ".thumbnails";
+    private static final String OBJECT_CACHE_DIRECTORY = ".objects";
+    private static final String JOURNAL_DIRECTORY = ".journal";
+    private static final String JOB_JOURNAL_FILE = "jobs.log";
+
+    /**
+     * The folder location for storing Pebblely files.
+     */
+    private String location = "files";
+
+    /**
+     * The backend storing the uploaded originals and the results of each operation.
+     */
+    private Backend backend = Backend.LOCAL;
+
+    /**
+     * The object store used by the {@code s3} backend.
+     */
+    private S3 s3 = new S3();
+
+    /**
+     * Returns the folder holding temporary files, such as decoded Pebblely responses, before they are moved
+     * to their final directory. It lives under the storage location so that moves are atomic renames.
+     *
+     * @return the staging directory
+     */
+    public Path getStagingLocation() {
+        return Path.of(getLocation(), STAGING_DIRECTORY);
+    }
+
+    /**
+     * Returns the folder holding the cached results of Pebblely calls.
+     *
+     * @return the cache directory
+     */
+    public Path getCacheLocation() {
+        return Path.of(getLocation(), CACHE_DIRECTORY);
+    }
+
+    /**
+     * Returns the folder holding the resized copies of the stored images.
+     *
+     * @return the thumbnail directory
+     */
+    public Path getThumbnailLocation() {
+        return Path.of(getLocation(), THUMBNAIL_DIRECTORY);
+    }
 
     /**
-     * Returns the folder location for storing Pebblely files.
+     * Returns the folder holding the local copies of the files kept in an object store, e.g. to read them as
+     * images or send them to the Pebblely API.
      *
-     * @return the Pebblely files directory location
+     * @return the object cache directory
      */
-    public String getLocation() {
-        return LOCATION;
+    public Path getObjectCacheLocation() {
+        return Path.of(getLocation(), OBJECT_CACHE_DIRECTORY);
+    }
+
+    /**
+     * Returns the file recording the progress of the asynchronous jobs, so that they can be resumed after a
+     * restart. It lives under the storage location, next to the staged uploads of the jobs.
+     *
+     * @return the job journal file
+     */
+    public Path getJobJournalLocation() {
+        return Path.of(getLocation(), JOURNAL_DIRECTORY, JOB_JOURNAL_FILE);
+    }
+
+    /**
+     * The backends the stored files can be kept in.
+     */
+    public enum Backend {
+
+        /**
+         * The local file system, under the storage location. Every file is stored under a random id, fanned out by
+         * its first characters, and a {@code .manifest} per directory maps the file names to the ids.
+         */
+        LOCAL,
+
+        /**
+         * An S3-compatible object store, shared by every instance of the application.
+         */
+        S3
+
+    }
+
+    /**
+     * The properties of an S3-compatible object store.
+     */
+    @Data
+    public static class S3 {
+
+        /**
+         * The endpoint of the object store, or {@code null} for Amazon S3.
+         */
+        private URI endpoint;
+
+        /**
+         * The region of the bucket.
+         */
+        private String region = "us-east-1";
+
+        /**
+         * The bucket holding the files, which must exist.
+         */
+        private String bucket;
+
+        /**
+         * The prefix of the object keys, e.g. {@code pebblely/}. Files are stored as
+         * {@code <key-prefix><directory>/<name>}.
+         */
+        private String keyPrefix = "";
+
+        /**
+         * The access key, or {@code null} to use the default credentials of the environment.
+         */
+        private String accessKey;
+
+        /**
+         * The secret key, used with the access key.
+         */
+        private String secretKey;
+
+        /**
+         * Whether the bucket is addressed in the path of the URLs rather than in the host name, as most
+         * S3-compatible stores require.
+         */
+        private boolean pathStyleAccess = false;
+
+        /**
+         * The size of the parts of multipart uploads. Smaller files are uploaded in a single request.
+         */
+        private DataSize partSize = DataSize.ofMegabytes(8);
+
+        /**
+         * The number of parts uploaded at the same time, across all uploads.
+         */
+        private int uploadConcurrency = 8;
+
+        /**
+         * Whether downloads are redirected to presigned URLs of the object store. Otherwise the application
+         * streams the requested range of the object.
+         */
+        private boolean presignedDownloads = true;
+
+        /**
+         * How long a presigned download URL is valid.
+         */
+        private Duration presignedUrlExpiry = Duration.ofMinutes(15);
+
+        /**
+         * The maximum total size of the local copies of the objects.
+         */
+        private DataSize localCacheMaxSize = DataSize.ofGigabytes(1);
+
+        /**
+         * How often the bucket is listed to pick up the files written by other instances, or 0 to only see the
+         * files written by this instance.
+         */
+        private Duration pollInterval = Duration.ofSeconds(30);
+
     }
 
 }
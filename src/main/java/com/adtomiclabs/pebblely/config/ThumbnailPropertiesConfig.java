@@ -0,0 +1,46 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration class for the resized copies of the stored images.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.thumbnails")
+public class ThumbnailPropertiesConfig {
+
+    /**
+     * Whether resized copies are served. When disabled, the original file is always served.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum size of the resized copies kept on disk.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * The largest width that may be requested.
+     */
+    private int maxWidth = 2048;
+
+    /**
+     * The width of the previews shown by the gallery.
+     */
+    private int galleryWidth = 128;
+
+    /**
+     * Whether the gallery preview of every Pebblely result is generated as soon as the result is stored.
+     */
+    private boolean eager = true;
+
+    /**
+     * The quality of the JPEG copies, between 0 and 1.
+     */
+    private float jpegQuality = 0.8f;
+
+}
@@ -0,0 +1,30 @@
+package com.adtomiclabs.pebblely.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration class for the wire logging of Pebblely API calls.
+ * <p>
+ * Calls are logged at {@code DEBUG} level by the logger of the Feign client, with the detail set by its Feign
+ * logger level: {@code BASIC} logs the method, URL, status, latency and body sizes, {@code HEADERS} adds the
+ * headers and {@code FULL} adds body previews for a sample of the calls.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pebblely.wire-log")
+public class WireLogPropertiesConfig {
+
+    /**
+     * The maximum length of a logged body preview.
+     */
+    private DataSize previewSize = DataSize.ofBytes(256);
+
+    /**
+     * The fraction of the requests and responses whose body preview is logged, between 0 and 1.
+     */
+    private double previewSampleRate = 0.01;
+
+}
@@ -0,0 +1,82 @@
+package com.adtomiclabs.pebblely.controller;
+
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import com.adtomiclabs.pebblely.model.FileSortEnum;
+import com.adtomiclabs.pebblely.model.response.FilePageDto;
+import com.adtomiclabs.pebblely.service.FileIndexService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller class for listing the stored files of a directory page by page.
+ * <p>
+ * Pages are served from the in-memory file index and chained through the opaque cursor returned with each page,
+ * so listing stays stable while files are added and costs the same for the first and the last page.
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/files")
+public class PebblelyFileListingController {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String ASCENDING = "asc";
+    private static final String DESCENDING = "desc";
+
+    private final FileIndexService fileIndexService;
+
+    /**
+     * Handles the GET request for a page of the files of a directory.
+     *
+     * @param subdirectory the directory to list
+     * @param sort         the order of the files, {@code name} or {@code modified}
+     * @param order        {@code asc} or {@code desc}; defaults to ascending names and most recent files first
+     * @param prefix       the prefix of the listed file names
+     * @param cursor       the cursor returned with the previous page
+     * @param limit        the maximum number of files of the page, at most {@value #MAX_PAGE_SIZE}
+     * @return the page of files
+     */
+    @GetMapping("/{subdirectory}")
+    public FilePageDto listFiles(@PathVariable String subdirectory,
+                                 @RequestParam(value = "sort", defaultValue = "modified") String sort,
+                                 @RequestParam(value = "order", required = false) String order,
+                                 @RequestParam(value = "prefix", required = false) String prefix,
+                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                 @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        FileSortEnum fileSort = FileSortEnum.fromName(sort);
+        boolean descending = order == null ? fileSort.isDescendingByDefault() : isDescending(order);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return fileIndexService.list(subdirectory, fileSort, descending, prefix, cursor, pageSize);
+    }
+
+    /**
+     * Handles the exception for an unknown directory.
+     *
+     * @param exc the exception object
+     * @return the response entity with a not found status
+     */
+    @ExceptionHandler(StorageFileNotFoundException.class)
+    public ResponseEntity<?> handleStorageFileNotFound(StorageFileNotFoundException exc) {
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Handles the exception for an invalid listing parameter.
+     *
+     * @param exc the exception object
+     * @return the response entity with a bad request status and the error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleInvalidParameter(IllegalArgumentException exc) {
+        return ResponseEntity.badRequest().body(exc.getMessage());
+    }
+
+    private static boolean isDescending(String order) {
+        if (!ASCENDING.equals(order) && !DESCENDING.equals(order)) {
+            throw new IllegalArgumentException("Unknown order: " + order);
+        }
+        return DESCENDING.equals(order);
+    }
+
+}
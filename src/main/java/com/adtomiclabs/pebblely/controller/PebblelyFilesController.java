@@ -3,24 +3,26 @@ package com.adtomiclabs.pebblely.controller;
 import com.adtomiclabs.pebblely.model.PebblelyThemesEnum;
 import com.adtomiclabs.pebblely.model.request.CreateBackgroundDto;
 import com.adtomiclabs.pebblely.model.request.InpaintDto;
+import com.adtomiclabs.pebblely.model.response.BatchResultDto;
 import com.adtomiclabs.pebblely.exception.PebblelyException;
 import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import com.adtomiclabs.pebblely.service.CreditsService;
 import com.adtomiclabs.pebblely.service.FileProcessingService;
-import com.adtomiclabs.pebblely.service.FileStorageService;
-import com.adtomiclabs.pebblely.service.PebblelyService;
-import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import com.adtomiclabs.pebblely.service.FileServingService;
 import lombok.AllArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
+import java.util.OptionalInt;
 
 /**
  * Controller class for handling file uploads and transformations in Pebblely application.
@@ -31,57 +33,63 @@ public class PebblelyFilesController {
 
     public static final String HTML_TEMPLATE = "pebblelyUI";
     public static final String REDIRECT_HOME = "redirect:/";
-    public static final String HOST = "http://localhost:8080/files/";
+    public static final String BATCH_RESULT = "batchResult";
 
-    private final FileStorageService fileStorageService;
+    private final FileServingService fileServingService;
     private final FileProcessingService fileProcessingService;
-    private final PebblelyService pebblelyService;
+    private final CreditsService creditsService;
 
     /**
-     * Handles the GET request for the root URL ("/") and lists the downloaded files.
+     * Handles the GET request for the root URL ("/"). The downloaded files are loaded page by page by the
+     * browser from {@link PebblelyFileListingController}.
      *
      * @param model the model object for rendering the HTML template
      * @return the HTML template to be rendered
      */
     @GetMapping("/")
     public String listDownloadedFiles(Model model) {
-        model.addAttribute("host", HOST);
-        model.addAttribute("credits", checkCredits());
+        model.addAttribute("credits", checkCredits().getBody());
         model.addAttribute("themes", PebblelyThemesEnum.getThemes());
-        for (String subdirectory : FilesDirectoriesEnum.getDirectoriesNames()) {
-            model.addAttribute(subdirectory, fileStorageService.loadAll(subdirectory)
-                    .map(path -> MvcUriComponentsBuilder.fromMethodName(PebblelyFilesController.class, "serveFile", subdirectory, path.getFileName().toString())
-                            .build().toUri().toString())
-                    .toList());
-        }
         return HTML_TEMPLATE;
     }
 
     /**
      * Handles the GET request for serving a file from the specified subdirectory and filename.
      *
+     * Conditional and range requests are supported, see {@link FileServingService}. Images may be resized or
+     * converted with the {@code w} and {@code format} parameters, e.g. {@code ?w=256&format=jpeg}.
+     *
      * @param subdirectory the subdirectory where the file is located
      * @param filename     the name of the file
-     * @return the response entity containing the file as a resource
+     * @param version      the version of the file given in its URL, if any
+     * @param width        the width of the served image, if it should be resized
+     * @param format       the format of the served image, if it should be converted
+     * @param webRequest   the request
+     * @param response     the response the file is written to
+     * @throws IOException if the file cannot be read or the response cannot be written
      */
     @GetMapping("/files/{subdirectory}/{filename:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String subdirectory, @PathVariable String filename) {
-        Resource file = fileStorageService.loadAsResource(subdirectory, filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"")
-                .body(file);
+    public void serveFile(@PathVariable String subdirectory, @PathVariable String filename,
+                          @RequestParam(name = FileServingService.VERSION_PARAMETER, required = false) String version,
+                          @RequestParam(name = "w", required = false) Integer width,
+                          @RequestParam(name = "format", required = false) String format,
+                          ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        fileServingService.serve(subdirectory, filename, version, width, format, webRequest, response);
     }
 
     /**
-     * Handles the GET request for checking the available Pebblely credits.
+     * Handles the GET request for checking the available Pebblely credits, served from the cached balance.
      *
-     * @return the number of available credits
-     * @throws PebblelyException if an error occurs while checking the credits
+     * @return the response entity containing the number of available credits, or a service unavailable status
+     * if the balance has not been retrieved yet
      */
     @GetMapping("/credits")
-    public int checkCredits() throws PebblelyException {
-        return pebblelyService.getCredits();
+    @ResponseBody
+    public ResponseEntity<Integer> checkCredits() {
+        OptionalInt credits = creditsService.getCredits();
+        return credits.isPresent()
+                ? ResponseEntity.ok(credits.getAsInt())
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
     }
 
     /**
@@ -89,27 +97,28 @@ public class PebblelyFilesController {
      *
      * @param files       the list of uploaded files
      * @param upscaleSize the desired upscale size
+     * @param redirectAttributes the attributes exposing the batch result to the redirect target
      * @return the redirect URL after processing the files
-     * @throws IOException       if an I/O error occurs during file processing
-     * @throws PebblelyException if an error occurs in the Pebblely service
      */
     @PostMapping("/upscale")
-    public String upscale(@RequestParam("files") List<MultipartFile> files, @RequestParam("upscaleSize") int upscaleSize) throws IOException, PebblelyException {
-        fileProcessingService.upscaleImages(files, upscaleSize);
+    public String upscale(@RequestParam("files") List<MultipartFile> files, @RequestParam("upscaleSize") int upscaleSize,
+                          RedirectAttributes redirectAttributes) {
+        BatchResultDto result = fileProcessingService.upscaleImages(files, upscaleSize);
+        redirectAttributes.addFlashAttribute(BATCH_RESULT, result);
         return REDIRECT_HOME;
     }
 
     /**
      * Handles the POST request for removing the background from images.
      *
-     * @param files the list of uploaded files
+     * @param files              the list of uploaded files
+     * @param redirectAttributes the attributes exposing the batch result to the redirect target
      * @return the redirect URL after processing the files
-     * @throws IOException       if an I/O error occurs during file processing
-     * @throws PebblelyException if an error occurs in the Pebblely service
      */
     @PostMapping("/remove-background")
-    public String removeBackground(@RequestParam("files") List<MultipartFile> files) throws IOException, PebblelyException {
-        fileProcessingService.removeBackgrounds(files);
+    public String removeBackground(@RequestParam("files") List<MultipartFile> files, RedirectAttributes redirectAttributes) {
+        BatchResultDto result = fileProcessingService.removeBackgrounds(files);
+        redirectAttributes.addFlashAttribute(BATCH_RESULT, result);
         return REDIRECT_HOME;
     }
 
@@ -124,9 +133,9 @@ public class PebblelyFilesController {
      * @param negative    the negative of the background
      * @param height      the height of the background
      * @param width       the width of the background
+     * @param redirectAttributes the attributes exposing the batch result to the redirect target
      * @return the redirect URL after processing the files
-     * @throws IOException       if an I/O error occurs during file processing
-     * @throws PebblelyException if an error occurs in the Pebblely service
+     * @throws IOException if an I/O error occurs while reading the style image
      */
     @PostMapping("/create-background")
     public String createBackground(@RequestParam("files") List<MultipartFile> files,
@@ -136,10 +145,12 @@ public class PebblelyFilesController {
                                    @RequestParam(value = "styleImage", required = false) MultipartFile styleImage,
                                    @RequestParam(value = "negative", required = false) String negative,
                                    @RequestParam(value = "height", required = false) Integer height,
-                                   @RequestParam(value = "width", required = false) Integer width)
-            throws IOException, PebblelyException {
+                                   @RequestParam(value = "width", required = false) Integer width,
+                                   RedirectAttributes redirectAttributes)
+            throws IOException {
         CreateBackgroundDto dto = fileProcessingService.buildCreateBackgroundDto(theme, description, styleColor, styleImage, negative, height, width);
-        fileProcessingService.createBackgrounds(files, dto);
+        BatchResultDto result = fileProcessingService.createBackgrounds(files, dto);
+        redirectAttributes.addFlashAttribute(BATCH_RESULT, result);
         return REDIRECT_HOME;
     }
 
@@ -154,9 +165,9 @@ public class PebblelyFilesController {
      * @param styleColor  the color style of the inpainted image
      * @param styleImage  the image style of the inpainted image
      * @param negative    the negative of the inpainted image
+     * @param redirectAttributes the attributes exposing the batch result to the redirect target
      * @return the redirect URL after processing the files
-     * @throws IOException       if an I/O error occurs during file processing
-     * @throws PebblelyException if an error occurs in the Pebblely service
+     * @throws IOException if an I/O error occurs while reading the mask or the style image
      */
     @PostMapping("/inpaint")
     public String inpaint(@RequestParam("files") List<MultipartFile> files,
@@ -165,11 +176,13 @@ public class PebblelyFilesController {
                           @RequestParam(value = "description", required = false) String description,
                           @RequestParam(value = "styleColor", required = false) String styleColor,
                           @RequestParam(value = "styleImage", required = false) MultipartFile styleImage,
-                          @RequestParam(value = "negative", required = false) String negative)
-            throws IOException, PebblelyException {
+                          @RequestParam(value = "negative", required = false) String negative,
+                          RedirectAttributes redirectAttributes)
+            throws IOException {
 
         InpaintDto dto = fileProcessingService.buildInpaintDto(mask, theme, description, styleColor, styleImage, negative);
-        fileProcessingService.inpaintFiles(files, dto);
+        BatchResultDto result = fileProcessingService.inpaintFiles(files, dto);
+        redirectAttributes.addFlashAttribute(BATCH_RESULT, result);
         return REDIRECT_HOME;
     }
 
@@ -184,6 +197,17 @@ public class PebblelyFilesController {
         return ResponseEntity.notFound().build();
     }
 
+    /**
+     * Handles the exception for an unsupported image width or format.
+     *
+     * @param exc the exception object
+     * @return the response entity with a bad request status and the error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleInvalidParameter(IllegalArgumentException exc) {
+        return ResponseEntity.badRequest().body(exc.getMessage());
+    }
+
     /**
      * Handles the exception for a Pebblely API error.
      *
@@ -0,0 +1,185 @@
+package com.adtomiclabs.pebblely.controller;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.request.JobRequestDto;
+import com.adtomiclabs.pebblely.model.request.PipelineDto;
+import com.adtomiclabs.pebblely.model.response.FileStatusEnum;
+import com.adtomiclabs.pebblely.model.response.JobDto;
+import com.adtomiclabs.pebblely.service.FileProcessingService;
+import com.adtomiclabs.pebblely.service.JobService;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Controller class for submitting file transformations as asynchronous jobs and querying their progress.
+ * <p>
+ * Submissions answer with {@code 202 Accepted} as soon as the uploads are staged, and the job can then be
+ * followed through the URL returned in the {@code Location} header.
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/jobs")
+public class PebblelyJobsController {
+
+    private final FileProcessingService fileProcessingService;
+    private final JobService jobService;
+
+    /**
+     * Handles the GET request for the status of a job.
+     *
+     * @param id the job identifier
+     * @return the response entity containing the job, or a not found status if the job is unknown or expired
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<JobDto> getJob(@PathVariable String id) {
+        return jobService.getJob(id)
+                .map(this::withOutputUrls)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Handles the POST request for upscaling images in the background.
+     *
+     * @param files       the list of uploaded files
+     * @param upscaleSize the desired upscale size
+     * @return the accepted response entity containing the queued job
+     * @throws IOException if the uploads cannot be staged
+     */
+    @PostMapping("/upscale")
+    public ResponseEntity<JobDto> upscale(@RequestParam("files") List<MultipartFile> files, @RequestParam("upscaleSize") int upscaleSize) throws IOException {
+        return accepted(jobService.submit(PebblelyOperationEnum.UPSCALE, files, JobRequestDto.builder().upscaleSize(upscaleSize).build()));
+    }
+
+    /**
+     * Handles the POST request for removing the background from images in the background.
+     *
+     * @param files the list of uploaded files
+     * @return the accepted response entity containing the queued job
+     * @throws IOException if the uploads cannot be staged
+     */
+    @PostMapping("/remove-background")
+    public ResponseEntity<JobDto> removeBackground(@RequestParam("files") List<MultipartFile> files) throws IOException {
+        return accepted(jobService.submit(PebblelyOperationEnum.REMOVE_BACKGROUND, files, new JobRequestDto()));
+    }
+
+    /**
+     * Handles the POST request for creating background images in the background.
+     *
+     * @param files       the list of uploaded files
+     * @param theme       the theme of the background
+     * @param description the description of the background
+     * @param styleColor  the color style of the background
+     * @param styleImage  the image style of the background
+     * @param negative    the negative of the background
+     * @param height      the height of the background
+     * @param width       the width of the background
+     * @return the accepted response entity containing the queued job
+     * @throws IOException if the style image or the uploads cannot be stored
+     */
+    @PostMapping("/create-background")
+    public ResponseEntity<JobDto> createBackground(@RequestParam("files") List<MultipartFile> files,
+                                                   @RequestParam(value = "theme", required = false) String theme,
+                                                   @RequestParam(value = "description", required = false) String description,
+                                                   @RequestParam(value = "styleColor", required = false) String styleColor,
+                                                   @RequestParam(value = "styleImage", required = false) MultipartFile styleImage,
+                                                   @RequestParam(value = "negative", required = false) String negative,
+                                                   @RequestParam(value = "height", required = false) Integer height,
+                                                   @RequestParam(value = "width", required = false) Integer width)
+            throws IOException {
+        JobRequestDto request = JobRequestDto.builder()
+                .theme(theme)
+                .description(description)
+                .styleColor(styleColor)
+                .styleImage(fileProcessingService.storeOriginal(styleImage))
+                .negative(negative)
+                .height(height)
+                .width(width)
+                .build();
+        return accepted(jobService.submit(PebblelyOperationEnum.CREATE_BACKGROUND, files, request));
+    }
+
+    /**
+     * Handles the POST request for inpainting images in the background.
+     *
+     * @param files       the list of uploaded files
+     * @param mask        the mask for inpainting
+     * @param theme       the theme of the inpainted image
+     * @param description the description of the inpainted image
+     * @param styleColor  the color style of the inpainted image
+     * @param styleImage  the image style of the inpainted image
+     * @param negative    the negative of the inpainted image
+     * @return the accepted response entity containing the queued job
+     * @throws IOException if the mask, the style image or the uploads cannot be stored
+     */
+    @PostMapping("/inpaint")
+    public ResponseEntity<JobDto> inpaint(@RequestParam("files") List<MultipartFile> files,
+                                          @RequestParam("mask") MultipartFile mask,
+                                          @RequestParam(value = "theme", required = false) String theme,
+                                          @RequestParam(value = "description", required = false) String description,
+                                          @RequestParam(value = "styleColor", required = false) String styleColor,
+                                          @RequestParam(value = "styleImage", required = false) MultipartFile styleImage,
+                                          @RequestParam(value = "negative", required = false) String negative)
+            throws IOException {
+        JobRequestDto request = JobRequestDto.builder()
+                .mask(fileProcessingService.storeOriginal(mask))
+                .theme(theme)
+                .description(description)
+                .styleColor(styleColor)
+                .styleImage(fileProcessingService.storeOriginal(styleImage))
+                .negative(negative)
+                .build();
+        return accepted(jobService.submit(PebblelyOperationEnum.INPAINT, files, request));
+    }
+
+    /**
+     * Handles the POST request for applying a pipeline of operations to images in the background, e.g. a
+     * background removal followed by a background creation and an upscale. The pipeline is sent as a JSON part,
+     * and the job reports the outputs of its last step.
+     *
+     * @param files    the list of uploaded files
+     * @param pipeline the steps of the pipeline
+     * @return the accepted response entity containing the queued job
+     * @throws IOException if the uploads cannot be staged
+     */
+    @PostMapping("/pipeline")
+    public ResponseEntity<JobDto> pipeline(@RequestPart("files") List<MultipartFile> files, @RequestPart("pipeline") PipelineDto pipeline)
+            throws IOException {
+        return accepted(jobService.submit(fileProcessingService.getFinalOperation(pipeline), files, JobRequestDto.builder().pipeline(pipeline).build()));
+    }
+
+    /**
+     * Handles the exception for an invalid pipeline.
+     *
+     * @param exc the exception object
+     * @return the response entity with a bad request status and the error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleInvalidParameter(IllegalArgumentException exc) {
+        return ResponseEntity.badRequest().body(exc.getMessage());
+    }
+
+    private ResponseEntity<JobDto> accepted(JobDto job) {
+        return ResponseEntity.accepted()
+                .location(MvcUriComponentsBuilder.fromMethodName(PebblelyJobsController.class, "getJob", job.getId()).build().toUri())
+                .body(job);
+    }
+
+    private JobDto withOutputUrls(JobDto job) {
+        FilesDirectoriesEnum directory = PebblelyOperationEnum.fromName(job.getOperation()).getDirectory();
+        job.getFiles().stream()
+                .filter(file -> file.getStatus() == FileStatusEnum.SUCCEEDED && file.getOutput() != null)
+                .forEach(file -> file.setUrl(MvcUriComponentsBuilder.fromMethodName(PebblelyFilesController.class, "serveFile", directory.getName(), file.getOutput(),
+                                null, null, null, null, null)
+                        .build().toUri().toString()));
+        return job;
+    }
+
+}
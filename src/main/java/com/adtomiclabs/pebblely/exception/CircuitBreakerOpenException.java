@@ -0,0 +1,17 @@
+package com.adtomiclabs.pebblely.exception;
+
+/**
+ * Exception thrown instead of calling a Pebblely API endpoint whose circuit breaker is open.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code CircuitBreakerOpenException} with the specified detail message.
+     *
+     * @param message the detail message.
+     */
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+
+}
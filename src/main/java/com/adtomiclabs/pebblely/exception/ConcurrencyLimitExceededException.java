@@ -0,0 +1,17 @@
+package com.adtomiclabs.pebblely.exception;
+
+/**
+ * Exception thrown when a call to a Pebblely API endpoint waited too long for the concurrency limit of the endpoint.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code ConcurrencyLimitExceededException} with the specified detail message.
+     *
+     * @param message the detail message.
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+
+}
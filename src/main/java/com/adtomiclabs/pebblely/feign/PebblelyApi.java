@@ -12,8 +12,12 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 /**
  * Feign client interface for interacting with the Pebblely API.
+ * <p>
+ * The API is called at {@code pebblely.api.base-url}, which defaults to the Pebblely API and may point to a
+ * stand-in such as the {@link com.adtomiclabs.pebblely.simulator.PebblelySimulator}.
  */
-@FeignClient(value = "PebblelyApi", url = PebblelyEndpointConstants.PEBBLELY_BASE_URL, configuration = FeignConfig.class)
+@FeignClient(value = "PebblelyApi", url = "${pebblely.api.base-url:" + PebblelyEndpointConstants.PEBBLELY_BASE_URL + "}",
+        configuration = FeignConfig.class)
 public interface PebblelyApi {
 
     /**
@@ -0,0 +1,140 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.CircuitBreakerPropertiesConfig;
+import com.adtomiclabs.pebblely.exception.CircuitBreakerOpenException;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import feign.Capability;
+import feign.Client;
+import feign.Response;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feign capability giving every Pebblely API endpoint its own circuit breaker.
+ * <p>
+ * Every attempt, retries included, is recorded: I/O errors and server errors are failures, any other response is
+ * a success. After the configured number of consecutive failures the circuit opens and calls to the endpoint
+ * fail fast with a {@link CircuitBreakerOpenException}, which is not retried. Once the open duration has elapsed,
+ * a single trial call is let through: its success closes the circuit, its failure opens it again. Calls that
+ * fail without reaching the endpoint, e.g. while waiting for its concurrency limit, and calls interrupted by
+ * their caller, e.g. when a batch is cancelled, are not recorded, though timeouts are. The
+ * capability wraps the HTTP client last, so that rejected calls do not wait for the concurrency limit.
+ */
+@Slf4j
+@Order(2)
+@RequiredArgsConstructor
+public class PebblelyCircuitBreakerCapability implements Capability {
+
+    private final CircuitBreakerPropertiesConfig circuitBreakerPropertiesConfig;
+
+    private final Map<PebblelyOperationEnum, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    @Override
+    public Client enrich(Client client) {
+        if (!circuitBreakerPropertiesConfig.isEnabled()) {
+            return client;
+        }
+        return (request, options) -> {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperations.of(request.requestTemplate());
+            if (operation.isEmpty()) {
+                return client.execute(request, options);
+            }
+            CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(operation.get(), CircuitBreaker::new);
+            circuitBreaker.acquire();
+            Response response;
+            try {
+                response = client.execute(request, options);
+            } catch (IOException e) {
+                // A socket timeout is an interruption too, but one caused by the endpoint
+                if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+                    circuitBreaker.released();
+                } else {
+                    circuitBreaker.failed();
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreaker.released();
+                throw e;
+            }
+            if (response.status() >= 500) {
+                circuitBreaker.failed();
+            } else {
+                circuitBreaker.succeeded();
+            }
+            return response;
+        };
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The circuit breaker of an endpoint.
+     */
+    private final class CircuitBreaker {
+
+        private final PebblelyOperationEnum operation;
+
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        private CircuitBreaker(PebblelyOperationEnum operation) {
+            this.operation = operation;
+        }
+
+        private synchronized void acquire() {
+            if (state == State.OPEN) {
+                long remaining = circuitBreakerPropertiesConfig.getOpenDuration().toMillis() - (System.currentTimeMillis() - openedAt);
+                if (remaining > 0) {
+                    throw new CircuitBreakerOpenException("Pebblely " + operation.getName()
+                            + " endpoint is unavailable, calls are suspended for another " + remaining + " ms");
+                }
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) {
+                    throw new CircuitBreakerOpenException("Pebblely " + operation.getName()
+                            + " endpoint is unavailable, a trial call is in progress");
+                }
+                trialInFlight = true;
+            }
+        }
+
+        private synchronized void succeeded() {
+            if (state != State.CLOSED) {
+                LOG.info("Pebblely {} endpoint recovered, closing its circuit", operation.getName());
+            }
+            state = State.CLOSED;
+            failures = 0;
+            trialInFlight = false;
+        }
+
+        private synchronized void released() {
+            trialInFlight = false;
+        }
+
+        private synchronized void failed() {
+            failures++;
+            if (state == State.HALF_OPEN || state == State.CLOSED && failures >= circuitBreakerPropertiesConfig.getFailureThreshold()) {
+                LOG.warn("Pebblely {} endpoint failed {} times in a row, opening its circuit for {}", operation.getName(),
+                        failures, circuitBreakerPropertiesConfig.getOpenDuration());
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                trialInFlight = false;
+            }
+        }
+
+    }
+
+}
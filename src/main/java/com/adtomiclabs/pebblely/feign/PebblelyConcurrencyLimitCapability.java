@@ -0,0 +1,183 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.ConcurrencyLimitPropertiesConfig;
+import com.adtomiclabs.pebblely.exception.ConcurrencyLimitExceededException;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.PebblelyStageEnum;
+import com.adtomiclabs.pebblely.service.PebblelyMetricsService;
+import com.adtomiclabs.pebblely.utils.AdaptiveConcurrencyLimiter;
+import feign.Capability;
+import feign.Client;
+import feign.Response;
+import org.springframework.core.annotation.Order;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feign capability bounding the calls running at the same time against each Pebblely API endpoint with an
+ * {@link AdaptiveConcurrencyLimiter}, so that every endpoint is a bulkhead of its own.
+ * <p>
+ * A call waits for the limit of its endpoint, and fails with a {@link ConcurrencyLimitExceededException} if it
+ * waited longer than configured. It holds its slot until its response body is closed, so that the download of
+ * large images counts against the limit. Throttled ({@code 429}, {@code 503}) and timed-out calls shrink the
+ * limit, as does a lasting rise of the latency, while successful calls grow it. Limits and running calls are
+ * published as the {@code pebblely.concurrency.*} gauges.
+ */
+@Order(1)
+public class PebblelyConcurrencyLimitCapability implements Capability {
+
+    private final ConcurrencyLimitPropertiesConfig concurrencyLimitPropertiesConfig;
+    private final PebblelyMetricsService metricsService;
+
+    private final Map<PebblelyOperationEnum, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(PebblelyOperationEnum.class);
+
+    /**
+     * Creates the limiters of all the endpoints and publishes their gauges.
+     *
+     * @param concurrencyLimitPropertiesConfig the concurrency limit configuration
+     * @param metricsService                   the service recording the Pebblely metrics
+     */
+    public PebblelyConcurrencyLimitCapability(ConcurrencyLimitPropertiesConfig concurrencyLimitPropertiesConfig,
+                                              PebblelyMetricsService metricsService) {
+        this.concurrencyLimitPropertiesConfig = concurrencyLimitPropertiesConfig;
+        this.metricsService = metricsService;
+        for (PebblelyOperationEnum operation : PebblelyOperationEnum.values()) {
+            int maxLimit = concurrencyLimitPropertiesConfig.getMaxLimit(operation);
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                    Math.min(concurrencyLimitPropertiesConfig.getInitialLimit(), maxLimit),
+                    concurrencyLimitPropertiesConfig.getMinLimit(), maxLimit,
+                    concurrencyLimitPropertiesConfig.getBackoffRatio(), concurrencyLimitPropertiesConfig.getLatencyTolerance());
+            limiters.put(operation, limiter);
+            metricsService.registerConcurrencyLimiter(operation, limiter);
+        }
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        if (!concurrencyLimitPropertiesConfig.isEnabled()) {
+            return client;
+        }
+        return (request, options) -> {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperations.of(request.requestTemplate());
+            if (operation.isEmpty()) {
+                return client.execute(request, options);
+            }
+            AdaptiveConcurrencyLimiter limiter = limiters.get(operation.get());
+            acquire(operation.get(), limiter);
+
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = client.execute(request, options);
+            } catch (IOException e) {
+                limiter.dropped();
+                throw e;
+            } catch (RuntimeException e) {
+                limiter.ignored();
+                throw e;
+            }
+            long latency = System.nanoTime() - start;
+            Outcome outcome = response.status() == 429 || response.status() == 503 ? Outcome.DROPPED
+                    : response.status() >= 500 ? Outcome.IGNORED : Outcome.SUCCEEDED;
+            Releaser releaser = new Releaser(limiter, outcome, latency);
+            if (response.body() == null) {
+                releaser.release();
+                return response;
+            }
+            return response.toBuilder()
+                    .body(new ReleasingInputStream(response.body().asInputStream(), releaser), response.body().length())
+                    .build();
+        };
+    }
+
+    /**
+     * Returns the concurrency limiter of the given operation.
+     *
+     * @param operation the Pebblely operation
+     * @return the limiter of its endpoint
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(PebblelyOperationEnum operation) {
+        return limiters.get(operation);
+    }
+
+    private void acquire(PebblelyOperationEnum operation, AdaptiveConcurrencyLimiter limiter) throws InterruptedIOException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(concurrencyLimitPropertiesConfig.getMaxWait());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Pebblely " + operation.getName() + " concurrency limit");
+        } finally {
+            metricsService.recordStage(operation, PebblelyStageEnum.QUEUE, System.nanoTime() - start);
+        }
+        if (!acquired) {
+            throw new ConcurrencyLimitExceededException("Pebblely " + operation.getName() + " endpoint is saturated, no call slot freed up within "
+                    + concurrencyLimitPropertiesConfig.getMaxWait());
+        }
+    }
+
+    private enum Outcome {
+        SUCCEEDED, DROPPED, IGNORED
+    }
+
+    /**
+     * Reports the outcome of a call to its limiter, once.
+     */
+    private static final class Releaser {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final Outcome outcome;
+        private final long latency;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Releaser(AdaptiveConcurrencyLimiter limiter, Outcome outcome, long latency) {
+            this.limiter = limiter;
+            this.outcome = outcome;
+            this.latency = latency;
+        }
+
+        private void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            switch (outcome) {
+                case SUCCEEDED -> limiter.succeeded(latency);
+                case DROPPED -> limiter.dropped();
+                default -> limiter.ignored();
+            }
+        }
+
+    }
+
+    /**
+     * A response body releasing the slot of its call when it is closed.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+
+        private final Releaser releaser;
+
+        private ReleasingInputStream(InputStream inputStream, Releaser releaser) {
+            super(inputStream);
+            this.releaser = releaser;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                releaser.release();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.adtomiclabs.pebblely.feign;
+
+import feign.Response;
+import feign.RetryableException;
+import feign.codec.ErrorDecoder;
+
+import java.util.Set;
+
+/**
+ * Feign error decoder marking the Pebblely responses that are worth retrying as {@link RetryableException}s.
+ * <p>
+ * Timeouts, rate limiting and server errors are retryable, along with any response carrying a
+ * {@code Retry-After} header, whose delay is kept on the exception for {@link PebblelyRetryer}. Any other
+ * error is decoded as by default and fails the call at once.
+ */
+public class PebblelyErrorDecoder implements ErrorDecoder {
+
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+
+    private final ErrorDecoder delegate = new ErrorDecoder.Default();
+
+    @Override
+    public Exception decode(String methodKey, Response response) {
+        Exception exception = delegate.decode(methodKey, response);
+        if (exception instanceof RetryableException || !RETRYABLE_STATUSES.contains(response.status())) {
+            return exception;
+        }
+        return new RetryableException(response.status(), exception.getMessage(), response.request().httpMethod(),
+                exception, null, response.request());
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.adtomiclabs.pebblely.feign;
+
+import feign.Logger;
+import feign.Request;
+import feign.Response;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Feign logger whose cost does not grow with the size of the bodies.
+ * <p>
+ * Unlike the Feign {@code FULL} level, which formats every body and buffers every response in memory to log it,
+ * this logger only logs body sizes, plus a truncated preview for a sample of the calls. A response preview is
+ * read from the head of the body, which is then handed back to the decoder unbuffered.
+ */
+public class PebblelyFeignLogger extends Logger {
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String REDACTED_HEADER = "X-Pebblely-Access-Token";
+
+    private final org.slf4j.Logger logger;
+    private final int previewSize;
+    private final double previewSampleRate;
+
+    /**
+     * Creates a logger for a Feign client.
+     *
+     * @param type              the Feign client interface, naming the SLF4J logger
+     * @param previewSize       the maximum number of body bytes previewed
+     * @param previewSampleRate the fraction of the bodies previewed, between 0 and 1
+     */
+    public PebblelyFeignLogger(Class<?> type, int previewSize, double previewSampleRate) {
+        this.logger = LoggerFactory.getLogger(type);
+        this.previewSize = previewSize;
+        this.previewSampleRate = previewSampleRate;
+    }
+
+    @Override
+    protected void log(String configKey, String format, Object... args) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format(methodTag(configKey) + format, args));
+        }
+    }
+
+    @Override
+    protected void logRequest(String configKey, Level logLevel, Request request) {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        byte[] body = request.body();
+        int bodyLength = body != null ? body.length : 0;
+        log(configKey, "---> %s %s (%s-byte body)", request.httpMethod(), request.url(), bodyLength);
+        if (logLevel.ordinal() >= Level.HEADERS.ordinal()) {
+            logHeaders(configKey, "--->", request.headers(), this::shouldLogRequestHeader);
+        }
+        if (logLevel == Level.FULL && bodyLength > 0 && isSampled() && !isCompressed(request.headers())) {
+            Charset charset = request.charset() != null ? request.charset() : StandardCharsets.UTF_8;
+            int previewLength = Math.min(bodyLength, previewSize);
+            log(configKey, "---> %s", preview(body, previewLength, charset, bodyLength > previewLength));
+        }
+    }
+
+    @Override
+    protected Response logAndRebufferResponse(String configKey, Level logLevel, Response response, long elapsedTime)
+            throws IOException {
+        if (!logger.isDebugEnabled()) {
+            return response;
+        }
+        Integer bodyLength = 0;
+        if (response.body() != null) {
+            bodyLength = response.body().length();
+        }
+        log(configKey, "<--- %s %s %s (%sms, %s body)", resolveProtocolVersion(response.protocolVersion()), response.status(),
+                response.reason() != null ? response.reason() : "", elapsedTime,
+                bodyLength != null ? bodyLength + "-byte" : "unknown-size");
+        if (logLevel.ordinal() >= Level.HEADERS.ordinal()) {
+            logHeaders(configKey, "<---", response.headers(), this::shouldLogResponseHeader);
+        }
+        if (logLevel != Level.FULL || response.body() == null || !isSampled() || isCompressed(response.headers())) {
+            return response;
+        }
+        InputStream inputStream = response.body().asInputStream();
+        byte[] head = inputStream.readNBytes(previewSize);
+        boolean truncated = bodyLength != null ? head.length < bodyLength : head.length == previewSize;
+        log(configKey, "<--- %s", preview(head, head.length,
+                response.charset() != null ? response.charset() : StandardCharsets.UTF_8, truncated));
+        return response.toBuilder()
+                .body(new SequenceInputStream(new ByteArrayInputStream(head), inputStream), bodyLength)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldLogRequestHeader(String header) {
+        return !REDACTED_HEADER.equalsIgnoreCase(header);
+    }
+
+    private void logHeaders(String configKey, String direction, Map<String, Collection<String>> headers, Predicate<String> logged) {
+        headers.forEach((name, values) -> {
+            log(configKey, "%s %s: %s", direction, name, logged.test(name) ? String.join(", ", values) : "<redacted>");
+        });
+    }
+
+    private boolean isSampled() {
+        return previewSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < previewSampleRate;
+    }
+
+    private static boolean isCompressed(Map<String, Collection<String>> headers) {
+        Collection<String> encodings = headers.get(CONTENT_ENCODING);
+        return encodings != null && !encodings.isEmpty() && !encodings.contains("identity");
+    }
+
+    private static String preview(byte[] body, int previewLength, Charset charset, boolean truncated) {
+        String preview = new String(body, 0, previewLength, charset);
+        return truncated ? preview + "... (truncated)" : preview;
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.PebblelyStageEnum;
+import com.adtomiclabs.pebblely.service.PebblelyMetricsService;
+import feign.Capability;
+import feign.Client;
+import feign.Response;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Feign capability timing the encode, call and decode stages of the Pebblely requests and counting the bytes
+ * they send and receive.
+ * <p>
+ * The operation of a request is resolved from the endpoint of the invoked {@link PebblelyApi} method. The call
+ * stage ends once the response headers are received, so the time spent downloading the body is part of the
+ * decode stage, which reads it as it is decoded. Byte counts are taken as sent and received on the wire, that
+ * is after request compression and before response decompression. The capability wraps the HTTP client first,
+ * so that the call stage leaves out the time spent waiting for the concurrency limit.
+ */
+@Order(0)
+@RequiredArgsConstructor
+public class PebblelyMetricsCapability implements Capability {
+
+    private final PebblelyMetricsService metricsService;
+
+    @Override
+    public Encoder enrich(Encoder encoder) {
+        return (object, bodyType, template) -> {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperations.of(template);
+            long start = System.nanoTime();
+            encoder.encode(object, bodyType, template);
+            operation.ifPresent(op -> {
+                metricsService.recordStage(op, PebblelyStageEnum.ENCODE, System.nanoTime() - start);
+                byte[] body = template.body();
+                metricsService.recordRequestBytes(op, body != null ? body.length : 0);
+            });
+        };
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperations.of(request.requestTemplate());
+            long start = System.nanoTime();
+            try {
+                return client.execute(request, options);
+            } finally {
+                operation.ifPresent(op -> metricsService.recordStage(op, PebblelyStageEnum.CALL, System.nanoTime() - start));
+            }
+        };
+    }
+
+    @Override
+    public Decoder enrich(Decoder decoder) {
+        return (response, type) -> {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperations.of(response.request().requestTemplate());
+            if (operation.isEmpty() || response.body() == null) {
+                return decoder.decode(response, type);
+            }
+            CountingInputStream body = new CountingInputStream(response.body().asInputStream());
+            long start = System.nanoTime();
+            try {
+                return decoder.decode(response.toBuilder().body(body, response.body().length()).build(), type);
+            } finally {
+                metricsService.recordStage(operation.get(), PebblelyStageEnum.DECODE, System.nanoTime() - start);
+                metricsService.recordResponseBytes(operation.get(), body.count);
+            }
+        };
+    }
+
+    /**
+     * A stream counting the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import feign.MethodMetadata;
+import feign.RequestTemplate;
+
+import java.util.Optional;
+
+/**
+ * Resolves the Pebblely operation of the requests built by the {@link PebblelyApi} client.
+ */
+final class PebblelyOperations {
+
+    private PebblelyOperations() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns the operation served by the endpoint of the invoked {@link PebblelyApi} method.
+     *
+     * @param template the request template
+     * @return the operation, or an empty optional if the request was not built from a {@link PebblelyApi} method
+     */
+    static Optional<PebblelyOperationEnum> of(RequestTemplate template) {
+        MethodMetadata metadata = template != null ? template.methodMetadata() : null;
+        return metadata != null ? PebblelyOperationEnum.fromEndpoint(metadata.template().path()) : Optional.empty();
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Feign decoder for Pebblely API responses.
+ * <p>
+ * When streaming is enabled, the {@code data} field of a {@link PebblelyResponseDto} is never materialised as a
+ * string: it is read token by token and Base64-decoded chunk by chunk into a temporary file of the staging
+ * directory, which is then moved to its final directory when the result is stored. Any other response type is
+ * read with the application {@link ObjectMapper}. Gzip-encoded bodies that the HTTP client did not decompress
+ * itself are decompressed while they are read.
+ */
+@RequiredArgsConstructor
+public class PebblelyResponseDecoder implements Decoder {
+
+    private static final String DATA_FIELD = "data";
+    private static final String CREDITS_FIELD = "credits";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final Base64Variant BASE64_VARIANT = Base64Variants.MIME_NO_LINEFEEDS
+            .withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+
+    private final ObjectMapper objectMapper;
+    private final Path stagingDirectory;
+    private final boolean streaming;
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.status() == 404 || response.status() == 204 || response.body() == null) {
+            return Util.emptyValueOf(type);
+        }
+        if (streaming && type == PebblelyResponseDto.class) {
+            return decodeStreaming(response);
+        }
+        try (InputStream inputStream = openBody(response)) {
+            return objectMapper.readValue(inputStream, objectMapper.constructType(type));
+        }
+    }
+
+    private PebblelyResponseDto decodeStreaming(Response response) throws IOException {
+        PebblelyResponseDto result = new PebblelyResponseDto();
+        try (InputStream inputStream = openBody(response);
+             JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodeException(response.status(), "Unexpected Pebblely response body", response.request());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (DATA_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                    result.setData(decodeToStagingFile(parser));
+                } else if (CREDITS_FIELD.equals(field) && value.isNumeric()) {
+                    result.setCredits(parser.getIntValue());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(result.getData());
+            throw e;
+        }
+        return result;
+    }
+
+    private static InputStream openBody(Response response) throws IOException {
+        InputStream inputStream = response.body().asInputStream();
+        Collection<String> encodings = response.headers().get(CONTENT_ENCODING);
+        if (encodings != null && encodings.stream().anyMatch(GZIP::equalsIgnoreCase)) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return inputStream;
+    }
+
+    private Base64Image decodeToStagingFile(JsonParser parser) throws IOException {
+        Files.createDirectories(stagingDirectory);
+        Path file = Files.createTempFile(stagingDirectory, "response-", ".tmp");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+            parser.readBinaryValue(BASE64_VARIANT, outputStream);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return Base64Image.ofTemporaryFile(file);
+    }
+
+    private void discard(Base64Image image) {
+        if (image != null && image.isTemporary()) {
+            image.getFile().toFile().delete();
+        }
+    }
+
+}
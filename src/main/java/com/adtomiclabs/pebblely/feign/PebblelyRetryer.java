@@ -0,0 +1,76 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.RetryPropertiesConfig;
+import feign.RetryableException;
+import feign.Retryer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Feign retryer waiting before each retry for an exponentially growing delay, part of which is randomized.
+ * <p>
+ * When the failed response asked for a delay with a {@code Retry-After} header, that delay is waited for instead,
+ * unless it exceeds the configured maximum, in which case the call fails at once. Feign clones the retryer for
+ * every call, so the attempts are counted per call.
+ */
+@Slf4j
+public class PebblelyRetryer implements Retryer {
+
+    private final RetryPropertiesConfig retryPropertiesConfig;
+
+    private int attempt = 1;
+
+    /**
+     * Creates a retryer for a new call.
+     *
+     * @param retryPropertiesConfig the retry configuration
+     */
+    public PebblelyRetryer(RetryPropertiesConfig retryPropertiesConfig) {
+        this.retryPropertiesConfig = retryPropertiesConfig;
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        if (attempt >= retryPropertiesConfig.getMaxAttempts()) {
+            throw e;
+        }
+        long delay = nextDelayMillis(e);
+        if (delay < 0) {
+            throw e;
+        }
+        LOG.warn("Retrying Pebblely request {} {} in {} ms, attempt {} of {}. Error description: {}", e.method(),
+                e.request() != null ? e.request().url() : "", delay, attempt + 1, retryPropertiesConfig.getMaxAttempts(), e.getMessage());
+        attempt++;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the delay to wait before the next attempt.
+     *
+     * @param e the failure of the last attempt
+     * @return the delay in milliseconds, or -1 if the failure asked for a longer delay than allowed
+     */
+    long nextDelayMillis(RetryableException e) {
+        Date retryAfter = e.retryAfter();
+        if (retryAfter != null) {
+            long delay = Math.max(0, retryAfter.getTime() - System.currentTimeMillis());
+            return delay <= retryPropertiesConfig.getMaxRetryAfter().toMillis() ? delay : -1;
+        }
+        double backoff = Math.min(retryPropertiesConfig.getMaxBackoff().toMillis(),
+                retryPropertiesConfig.getInitialBackoff().toMillis() * Math.pow(retryPropertiesConfig.getMultiplier(), attempt - 1.0));
+        return (long) (backoff * (1 - retryPropertiesConfig.getJitter() * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    @Override
+    public Retryer clone() {
+        return new PebblelyRetryer(retryPropertiesConfig);
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.adtomiclabs.pebblely.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * An image exchanged with the Pebblely API as a Base64 JSON string.
+ * <p>
+ * The image is either kept encoded, or kept as a file whose content is encoded while the request body is
+ * written, so that no encoded copy of the file is held in memory.
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonSerialize(using = Base64Image.Serializer.class)
+public final class Base64Image {
+
+    private final Path file;
+
+    private final String encoded;
+
+    /**
+     * Whether the file is a temporary copy owned by this image, which may be moved instead of copied.
+     */
+    private final boolean temporary;
+
+    @EqualsAndHashCode.Exclude
+    private volatile String contentDigest;
+
+    /**
+     * Creates an image from its Base64 representation.
+     *
+     * @param encoded The Base64-encoded image.
+     * @return The image.
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Base64Image of(String encoded) {
+        return new Base64Image(null, encoded, false);
+    }
+
+    /**
+     * Creates an image whose content is read from a file when it is serialized.
+     *
+     * @param file The image file.
+     * @return The image.
+     */
+    public static Base64Image ofFile(Path file) {
+        return new Base64Image(file, null, false);
+    }
+
+    /**
+     * Creates an image backed by a temporary file, such as a decoded Pebblely response, that is handed over
+     * to whoever stores the image.
+     *
+     * @param file The temporary image file.
+     * @return The image.
+     */
+    public static Base64Image ofTemporaryFile(Path file) {
+        return new Base64Image(file, null, true);
+    }
+
+    /**
+     * Opens a stream over the decoded content of the image.
+     *
+     * @return The image bytes.
+     * @throws IOException If the image file cannot be opened.
+     */
+    public InputStream openStream() throws IOException {
+        if (encoded != null) {
+            return Base64.getMimeDecoder().wrap(new ByteArrayInputStream(encoded.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        return Files.newInputStream(file);
+    }
+
+    /**
+     * Returns the SHA-256 digest of the decoded content, computed on first use.
+     *
+     * @return The hex-encoded digest.
+     * @throws IOException If the image file cannot be read.
+     */
+    public String getContentDigest() throws IOException {
+        String digest = contentDigest;
+        if (digest == null) {
+            MessageDigest messageDigest;
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            try (InputStream inputStream = new DigestInputStream(openStream(), messageDigest)) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+            digest = HexFormat.of().formatHex(messageDigest.digest());
+            contentDigest = digest;
+        }
+        return digest;
+    }
+
+    /**
+     * Returns an image with the same content that can be stored independently of this one. Temporary files are
+     * hard-linked, or copied where links are not supported, so that each image can be moved to its own place.
+     *
+     * @return The duplicated image, or this image if it does not own a temporary file.
+     * @throws IOException If the temporary file cannot be duplicated.
+     */
+    public Base64Image duplicate() throws IOException {
+        if (!temporary) {
+            return this;
+        }
+        Path copy = file.resolveSibling(file.getFileName() + "-" + System.nanoTime());
+        try {
+            Files.createLink(copy, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, copy);
+        }
+        return ofTemporaryFile(copy);
+    }
+
+    @Override
+    public String toString() {
+        return file != null ? "Base64Image[" + file + "]" : "Base64Image[" + encoded.length() + " chars]";
+    }
+
+    /**
+     * Writes the image as a Base64 JSON string, streaming file-backed images through the generator.
+     */
+    public static class Serializer extends StdSerializer<Base64Image> {
+
+        /**
+         * Creates the serializer.
+         */
+        public Serializer() {
+            super(Base64Image.class);
+        }
+
+        @Override
+        public void serialize(Base64Image image, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            if (image.encoded != null) {
+                generator.writeString(image.encoded);
+                return;
+            }
+            try (InputStream inputStream = Files.newInputStream(image.file)) {
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, inputStream, (int) Files.size(image.file));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.adtomiclabs.pebblely.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Enum representing the orders in which stored files can be listed.
+ */
+@Getter
+@AllArgsConstructor
+public enum FileSortEnum {
+
+    NAME("name", false),
+    MODIFIED("modified", true);
+
+    private final String name;
+
+    /**
+     * Whether files are listed in descending order unless another order is requested.
+     */
+    private final boolean descendingByDefault;
+
+    /**
+     * Returns the sort order with the given name.
+     *
+     * @param name The sort order name, e.g. {@code modified}.
+     * @return The matching sort order.
+     * @throws IllegalArgumentException If no sort order has the given name.
+     */
+    public static FileSortEnum fromName(String name) {
+        return Arrays.stream(FileSortEnum.values())
+                .filter(sort -> sort.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sort order: " + name));
+    }
+
+}
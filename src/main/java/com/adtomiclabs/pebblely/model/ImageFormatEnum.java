@@ -0,0 +1,62 @@
+package com.adtomiclabs.pebblely.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Enum representing the formats of the resized copies of the stored images.
+ */
+@Getter
+@AllArgsConstructor
+public enum ImageFormatEnum {
+
+    JPEG("jpeg", "jpg", MediaType.IMAGE_JPEG_VALUE, false),
+    PNG("png", "png", MediaType.IMAGE_PNG_VALUE, true);
+
+    private final String name;
+
+    private final String extension;
+
+    private final String mediaType;
+
+    /**
+     * Whether the format keeps transparency. Transparent images are flattened on white otherwise.
+     */
+    private final boolean alpha;
+
+    /**
+     * Returns the format with the given name or file extension.
+     *
+     * @param name The format name, e.g. {@code jpeg} or {@code jpg}.
+     * @return The matching format.
+     * @throws IllegalArgumentException If no format has the given name.
+     */
+    public static ImageFormatEnum fromName(String name) {
+        return Arrays.stream(ImageFormatEnum.values())
+                .filter(format -> format.getName().equalsIgnoreCase(name) || format.getExtension().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown image format: " + name));
+    }
+
+    /**
+     * Returns the format of a file, given by its extension.
+     *
+     * @param filename The file name.
+     * @return The matching format, or an empty optional if the extension is missing or unknown.
+     */
+    public static Optional<ImageFormatEnum> fromFilename(String filename) {
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        String extension = filename.substring(dot + 1);
+        return Arrays.stream(ImageFormatEnum.values())
+                .filter(format -> format.getName().equalsIgnoreCase(extension) || format.getExtension().equalsIgnoreCase(extension))
+                .findFirst();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.adtomiclabs.pebblely.model;
+
+import com.adtomiclabs.pebblely.model.request.JobRequestDto;
+import com.adtomiclabs.pebblely.model.response.FileResultDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A record of the job journal, written as one line of JSON.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobJournalEntry {
+
+    private Type type;
+
+    private String jobId;
+
+    private Instant timestamp;
+
+    /**
+     * The operation of the job, set on {@link Type#SUBMITTED} entries.
+     */
+    private String operation;
+
+    /**
+     * The parameters of the job, set on {@link Type#SUBMITTED} entries.
+     */
+    private JobRequestDto request;
+
+    /**
+     * The staged files of the job in submission order, set on {@link Type#SUBMITTED} entries.
+     */
+    private List<JournaledFile> files;
+
+    /**
+     * The position of the file in the job, set on {@link Type#FILE_STARTED} and {@link Type#FILE_COMPLETED} entries.
+     */
+    private Integer index;
+
+    /**
+     * The result of the file, set on {@link Type#FILE_COMPLETED} entries.
+     */
+    private FileResultDto result;
+
+    /**
+     * The kinds of journal entries, in the order they are written for a job.
+     */
+    public enum Type {
+
+        SUBMITTED,
+
+        STARTED,
+
+        FILE_STARTED,
+
+        FILE_COMPLETED,
+
+        COMPLETED
+
+    }
+
+    /**
+     * A file staged for a job.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class JournaledFile {
+
+        private String filename;
+
+        private String contentType;
+
+    }
+
+}
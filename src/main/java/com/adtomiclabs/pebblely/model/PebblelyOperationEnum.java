@@ -0,0 +1,66 @@
+package com.adtomiclabs.pebblely.model;
+
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import com.adtomiclabs.pebblely.utils.PebblelyEndpointConstants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Enum representing the operations offered by the Pebblely API.
+ */
+@Getter
+@AllArgsConstructor
+public enum PebblelyOperationEnum {
+
+    CREDITS("credits", PebblelyEndpointConstants.CREDITS_ENDPOINT, null),
+
+    UPSCALE("upscale", PebblelyEndpointConstants.UPSCALE_ENDPOINT, FilesDirectoriesEnum.UPSCALE),
+
+    REMOVE_BACKGROUND("remove-background", PebblelyEndpointConstants.REMOVE_BACKGROUND_ENDPOINT, FilesDirectoriesEnum.REMOVED),
+
+    CREATE_BACKGROUND("create-background", PebblelyEndpointConstants.CREATE_BACKGROUND_ENDPOINT, FilesDirectoriesEnum.CREATED),
+
+    INPAINT("inpaint", PebblelyEndpointConstants.INPAINT_ENDPOINT, FilesDirectoriesEnum.INPAINT),
+
+    OUTPAINT("outpaint", PebblelyEndpointConstants.OUTPAINT_ENDPOINT, null);
+
+    private final String name;
+
+    private final String endpoint;
+
+    /**
+     * The directory where the results of the operation are stored, or {@code null} if the operation
+     * does not produce stored files.
+     */
+    private final FilesDirectoriesEnum directory;
+
+    /**
+     * Returns the operation with the given name.
+     *
+     * @param name The operation name, e.g. {@code upscale}.
+     * @return The matching operation.
+     * @throws IllegalArgumentException If no operation has the given name.
+     */
+    public static PebblelyOperationEnum fromName(String name) {
+        return Arrays.stream(PebblelyOperationEnum.values())
+                .filter(operation -> operation.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown Pebblely operation: " + name));
+    }
+
+    /**
+     * Returns the operation served by the given endpoint.
+     *
+     * @param endpoint The endpoint path, e.g. {@code /upscale/v1}.
+     * @return The matching operation, or an empty optional if no operation is served by the endpoint.
+     */
+    public static Optional<PebblelyOperationEnum> fromEndpoint(String endpoint) {
+        return Arrays.stream(PebblelyOperationEnum.values())
+                .filter(operation -> operation.getEndpoint().equals(endpoint))
+                .findFirst();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.adtomiclabs.pebblely.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Enum representing the stages a Pebblely request goes through, each timed separately.
+ */
+@Getter
+@AllArgsConstructor
+public enum PebblelyStageEnum {
+
+    /**
+     * Normalizing the uploaded image before it is sent.
+     */
+    PREPROCESS("preprocess"),
+
+    /**
+     * Serializing the request DTO into the request body.
+     */
+    ENCODE("encode"),
+
+    /**
+     * Waiting for the concurrency limit of the endpoint.
+     */
+    QUEUE("queue"),
+
+    /**
+     * Sending the request and receiving the response headers.
+     */
+    CALL("call"),
+
+    /**
+     * Reading and deserializing the response body.
+     */
+    DECODE("decode"),
+
+    /**
+     * Storing the resulting image.
+     */
+    WRITE("write");
+
+    private final String name;
+
+}
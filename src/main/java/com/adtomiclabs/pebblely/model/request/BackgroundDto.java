@@ -1,15 +1,18 @@
 package com.adtomiclabs.pebblely.model.request;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -21,8 +24,17 @@ public class BackgroundDto extends ImageDto {
 
     private String styleColor;
 
-    private String styleImage;
+    private Base64Image styleImage;
 
     private String negative;
 
+    /**
+     * The body shared by the requests of a batch, into which the image of this request is spliced when it is
+     * encoded, or {@code null} to serialize the whole request.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private RequestBodyTemplate bodyTemplate;
+
 }
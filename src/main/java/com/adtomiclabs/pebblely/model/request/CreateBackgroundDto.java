@@ -1,5 +1,6 @@
 package com.adtomiclabs.pebblely.model.request;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,13 +12,13 @@ import java.util.List;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class CreateBackgroundDto extends BackgroundDto {
 
-    private List<String> images;
+    private List<Base64Image> images;
     private Object transform;
     private Integer height;
     private Integer width;
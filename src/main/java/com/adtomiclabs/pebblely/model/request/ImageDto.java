@@ -1,16 +1,17 @@
 package com.adtomiclabs.pebblely.model.request;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ImageDto {
 
-    private String image;
+    private Base64Image image;
 
 }
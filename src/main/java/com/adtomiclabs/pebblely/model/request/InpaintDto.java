@@ -1,5 +1,6 @@
 package com.adtomiclabs.pebblely.model.request;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,11 +9,11 @@ import lombok.experimental.SuperBuilder;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 @AllArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class InpaintDto extends BackgroundDto {
 
-    private String mask;
+    private Base64Image mask;
 
 }
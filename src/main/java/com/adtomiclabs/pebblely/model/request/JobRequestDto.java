@@ -0,0 +1,44 @@
+package com.adtomiclabs.pebblely.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The parameters of an asynchronous job, shared by all of its files. They are recorded in the job journal, so
+ * images are referenced by their name in the originals directory rather than embedded.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobRequestDto {
+
+    private Integer upscaleSize;
+
+    private String theme;
+
+    private String description;
+
+    private String styleColor;
+
+    /**
+     * The name of the style image in the originals directory.
+     */
+    private String styleImage;
+
+    private String negative;
+
+    private Integer height;
+
+    private Integer width;
+
+    /**
+     * The name of the inpainting mask in the originals directory.
+     */
+    private String mask;
+
+    private PipelineDto pipeline;
+
+}
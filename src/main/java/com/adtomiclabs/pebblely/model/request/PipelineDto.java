@@ -0,0 +1,28 @@
+package com.adtomiclabs.pebblely.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * An ordered list of Pebblely operations applied to each uploaded image, each step transforming the output of
+ * the previous one.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineDto {
+
+    private List<PipelineStepDto> steps;
+
+    /**
+     * Whether the output of every step is stored in the directory of its operation, rather than only the
+     * output of the last step.
+     */
+    private boolean persistIntermediates;
+
+}
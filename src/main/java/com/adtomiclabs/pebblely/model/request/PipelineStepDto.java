@@ -0,0 +1,33 @@
+package com.adtomiclabs.pebblely.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A step of a pipeline: a Pebblely operation and its parameters. Only the parameters of the operation are read.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStepDto {
+
+    private String operation;
+
+    private Integer size;
+
+    private String theme;
+
+    private String description;
+
+    private String styleColor;
+
+    private String negative;
+
+    private Integer height;
+
+    private Integer width;
+
+}
@@ -0,0 +1,86 @@
+package com.adtomiclabs.pebblely.model.request;
+
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The JSON body shared by the requests of a batch, serialized once with a placeholder in place of the image of
+ * each file.
+ * <p>
+ * The requests of a batch only differ by their image, while their shared parameters may hold a style image or
+ * a mask of several megabytes. Requests referencing a template are encoded by writing the bytes before the
+ * placeholder, the image of the request and the bytes after the placeholder, so the shared parameters are not
+ * serialized again for every file.
+ */
+public final class RequestBodyTemplate {
+
+    private static final String PLACEHOLDER = "pebblely-request-body-template-image";
+
+    /**
+     * The image to set on the shared request passed to {@link #of}, in place of the image of each file.
+     */
+    public static final Base64Image PLACEHOLDER_IMAGE = Base64Image.of(PLACEHOLDER);
+
+    private final byte[] prefix;
+
+    private final byte[] suffix;
+
+    private RequestBodyTemplate(byte[] prefix, byte[] suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Serializes the shared part of the requests of a batch.
+     *
+     * @param objectMapper  the object mapper the requests are encoded with
+     * @param sharedRequest the shared request, holding {@link #PLACEHOLDER_IMAGE} as its only per-file image
+     * @return the template
+     * @throws JsonProcessingException  if the request cannot be serialized
+     * @throws IllegalArgumentException if the request does not hold the placeholder exactly once
+     */
+    public static RequestBodyTemplate of(ObjectMapper objectMapper, Object sharedRequest) throws JsonProcessingException {
+        byte[] body = objectMapper.writeValueAsBytes(sharedRequest);
+        byte[] placeholder = objectMapper.writeValueAsBytes(PLACEHOLDER);
+        int start = indexOf(body, placeholder, 0);
+        if (start < 0 || indexOf(body, placeholder, start + 1) >= 0) {
+            throw new IllegalArgumentException("The shared request must hold the placeholder image exactly once");
+        }
+        return new RequestBodyTemplate(Arrays.copyOfRange(body, 0, start),
+                Arrays.copyOfRange(body, start + placeholder.length, body.length));
+    }
+
+    /**
+     * Writes the body of a request of the batch.
+     *
+     * @param outputStream the stream receiving the body
+     * @param imageWriter  the writer serializing the image, which must leave the stream open
+     * @param image        the image of the request
+     * @throws IOException if the body cannot be written
+     */
+    public void writeTo(OutputStream outputStream, ObjectWriter imageWriter, Base64Image image) throws IOException {
+        outputStream.write(prefix);
+        imageWriter.writeValue(outputStream, image);
+        outputStream.write(suffix);
+    }
+
+    private static int indexOf(byte[] array, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= array.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.adtomiclabs.pebblely.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResultDto {
+
+    private String operation;
+
+    private List<FileResultDto> files;
+
+    private long durationMillis;
+
+    /**
+     * Returns the number of files of the batch that could not be processed.
+     *
+     * @return the number of failed files
+     */
+    public long getFailed() {
+        return files.stream()
+                .filter(file -> file.getStatus() == FileStatusEnum.FAILED)
+                .count();
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.adtomiclabs.pebblely.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilePageDto {
+
+    private List<StoredFileDto> files;
+
+    /**
+     * The cursor of the next page, or {@code null} on the last page.
+     */
+    private String nextCursor;
+
+}
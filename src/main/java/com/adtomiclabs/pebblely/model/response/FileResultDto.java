@@ -0,0 +1,26 @@
+package com.adtomiclabs.pebblely.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileResultDto {
+
+    private String filename;
+
+    private FileStatusEnum status;
+
+    private String output;
+
+    private String url;
+
+    private String error;
+
+    private long durationMillis;
+
+}
@@ -0,0 +1,16 @@
+package com.adtomiclabs.pebblely.model.response;
+
+/**
+ * Enum representing the processing status of a single file of a batch.
+ */
+public enum FileStatusEnum {
+
+    QUEUED,
+
+    RUNNING,
+
+    SUCCEEDED,
+
+    FAILED
+
+}
@@ -0,0 +1,31 @@
+package com.adtomiclabs.pebblely.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobDto {
+
+    private String id;
+
+    private String operation;
+
+    private JobStatusEnum status;
+
+    private Instant submittedAt;
+
+    private Instant startedAt;
+
+    private Instant completedAt;
+
+    private List<FileResultDto> files;
+
+}
@@ -0,0 +1,14 @@
+package com.adtomiclabs.pebblely.model.response;
+
+/**
+ * Enum representing the status of an asynchronous batch job.
+ */
+public enum JobStatusEnum {
+
+    QUEUED,
+
+    RUNNING,
+
+    COMPLETED
+
+}
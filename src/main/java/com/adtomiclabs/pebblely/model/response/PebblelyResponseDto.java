@@ -1,5 +1,6 @@
 package com.adtomiclabs.pebblely.model.response;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,7 +12,7 @@ import lombok.NoArgsConstructor;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class PebblelyResponseDto {
 
-    private String data;
+    private Base64Image data;
 
     private int credits;
 
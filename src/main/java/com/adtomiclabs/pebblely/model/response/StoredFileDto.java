@@ -0,0 +1,26 @@
+package com.adtomiclabs.pebblely.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFileDto {
+
+    private String name;
+
+    private long size;
+
+    private Instant lastModified;
+
+    private String url;
+
+    private String thumbnailUrl;
+
+}
@@ -0,0 +1,162 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.BatchPropertiesConfig;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.response.BatchResultDto;
+import com.adtomiclabs.pebblely.model.response.FileResultDto;
+import com.adtomiclabs.pebblely.model.response.FileStatusEnum;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service class for running a Pebblely operation over a batch of files with bounded parallelism.
+ * <p>
+ * Every operation owns a fixed-size pool sized by {@link BatchPropertiesConfig}, so concurrent batches of the
+ * same operation share its capacity. A failing file is reported in the batch result and does not abort the
+ * remaining files.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class BatchExecutionService {
+
+    private final BatchPropertiesConfig batchPropertiesConfig;
+    private final PebblelyMetricsService metricsService;
+
+    private final Map<PebblelyOperationEnum, ExecutorService> executors = new EnumMap<>(PebblelyOperationEnum.class);
+
+    /**
+     * A unit of work applied to a single file of a batch.
+     */
+    @FunctionalInterface
+    public interface BatchTask {
+
+        /**
+         * Processes a single file.
+         *
+         * @param multipartFile the file to process
+         * @return the name of the stored result
+         * @throws Exception if the file cannot be processed
+         */
+        String process(MultipartFile multipartFile) throws Exception;
+
+    }
+
+    /**
+     * Receives progress notifications for the files of a batch.
+     */
+    public interface BatchListener {
+
+        /**
+         * Called when a file starts being processed.
+         *
+         * @param index the position of the file in the batch
+         */
+        default void fileStarted(int index) {
+        }
+
+        /**
+         * Called when a file has been processed, successfully or not.
+         *
+         * @param index  the position of the file in the batch
+         * @param result the result of the file
+         */
+        default void fileCompleted(int index, FileResultDto result) {
+        }
+
+    }
+
+    /**
+     * Applies the given task to every file, running up to the configured number of files of the operation in
+     * parallel, and waits for the whole batch to finish.
+     *
+     * @param operation      the Pebblely operation performed by the task
+     * @param multipartFiles the files to process
+     * @param task           the task applied to each file
+     * @return the per-file results, in the same order as the given files
+     */
+    public BatchResultDto execute(PebblelyOperationEnum operation, List<MultipartFile> multipartFiles, BatchTask task) {
+        return execute(operation, multipartFiles, task, new BatchListener() {
+        });
+    }
+
+    /**
+     * Applies the given task to every file, running up to the configured number of files of the operation in
+     * parallel, and waits for the whole batch to finish while reporting the progress of each file.
+     *
+     * @param operation      the Pebblely operation performed by the task
+     * @param multipartFiles the files to process
+     * @param task           the task applied to each file
+     * @param listener       the listener notified when each file starts and completes
+     * @return the per-file results, in the same order as the given files
+     */
+    public BatchResultDto execute(PebblelyOperationEnum operation, List<MultipartFile> multipartFiles, BatchTask task, BatchListener listener) {
+        long start = System.currentTimeMillis();
+        metricsService.recordBatchSize(operation, multipartFiles.size());
+        ExecutorService executor = getExecutor(operation);
+        List<CompletableFuture<FileResultDto>> futures = new ArrayList<>(multipartFiles.size());
+        for (int i = 0; i < multipartFiles.size(); i++) {
+            int index = i;
+            MultipartFile multipartFile = multipartFiles.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                listener.fileStarted(index);
+                FileResultDto result = processFile(operation, multipartFile, task);
+                listener.fileCompleted(index, result);
+                return result;
+            }, executor));
+        }
+
+        List<FileResultDto> results = futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+        return BatchResultDto.builder()
+                .operation(operation.getName())
+                .files(results)
+                .durationMillis(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    /**
+     * Shuts down the operation pools, interrupting the files still being processed.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        executors.values().forEach(ExecutorService::shutdownNow);
+        executors.clear();
+    }
+
+    private FileResultDto processFile(PebblelyOperationEnum operation, MultipartFile multipartFile, BatchTask task) {
+        long start = System.currentTimeMillis();
+        FileResultDto.FileResultDtoBuilder result = FileResultDto.builder()
+                .filename(multipartFile.getOriginalFilename());
+        try {
+            result.output(task.process(multipartFile))
+                    .status(FileStatusEnum.SUCCEEDED);
+        } catch (Exception exception) {
+            String error = Objects.toString(exception.getMessage(), exception.getClass().getSimpleName());
+            LOG.warn("Batch {} failed for file {}. Error description: {}", operation.getName(), multipartFile.getOriginalFilename(), error);
+            result.status(FileStatusEnum.FAILED)
+                    .error(error);
+        }
+        return result.durationMillis(System.currentTimeMillis() - start).build();
+    }
+
+    private synchronized ExecutorService getExecutor(PebblelyOperationEnum operation) {
+        return executors.computeIfAbsent(operation, key -> Executors.newFixedThreadPool(
+                batchPropertiesConfig.getConcurrency(key), new CustomizableThreadFactory("batch-" + key.getName() + "-")));
+    }
+
+}
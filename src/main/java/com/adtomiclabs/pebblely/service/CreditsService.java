@@ -0,0 +1,154 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.CreditsPropertiesConfig;
+import com.adtomiclabs.pebblely.feign.PebblelyApi;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Service class keeping the Pebblely credits balance in memory.
+ * <p>
+ * The balance is updated from the {@code credits} field of every transformation response and refreshed in the
+ * background once it is older than the configured TTL, so reading it never waits for the Pebblely API. When a
+ * refresh fails, the last known balance is kept.
+ * <p>
+ * Every call is numbered when it is issued, and updates are applied under the service lock in that order: a
+ * response to a call issued before the one that recorded the current balance is ignored, so a slower, older
+ * response never replaces a newer balance. Every decrease of the balance applied this way is recorded as consumed
+ * credits, so their total is right however many calls run at the same time. The decrease is tagged with the
+ * operation of the call that reported it when no other call was in flight at any point while it ran, and as
+ * unattributed otherwise, since the calls that consumed the credits cannot be told apart.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class CreditsService {
+
+    private final PebblelyApi api;
+    private final CreditsPropertiesConfig creditsPropertiesConfig;
+    private final PebblelyMetricsService metricsService;
+
+    // Guarded by the lock of this service
+    private final Set<Call> inFlightCalls = new HashSet<>();
+    private long issuedCalls;
+
+    // Written under the lock of this service
+    private volatile Balance balance;
+
+    /**
+     * Returns the last known credits balance.
+     *
+     * @return the number of available credits, or an empty optional if the balance has never been retrieved
+     */
+    public OptionalInt getCredits() {
+        Balance current = balance;
+        return current != null ? OptionalInt.of(current.credits()) : OptionalInt.empty();
+    }
+
+    /**
+     * Registers a Pebblely call about to be issued, to hand to {@link #update} along with the balance it reports,
+     * or to {@link #callFailed} if it fails.
+     *
+     * @param operation the Pebblely operation of the call
+     * @return the call
+     */
+    public synchronized Call startCall(PebblelyOperationEnum operation) {
+        Call call = new Call(++issuedCalls, operation);
+        if (!inFlightCalls.isEmpty()) {
+            inFlightCalls.forEach(Call::overlap);
+            call.overlap();
+        }
+        inFlightCalls.add(call);
+        return call;
+    }
+
+    /**
+     * Unregisters a Pebblely call that failed.
+     *
+     * @param call the call returned by {@link #startCall}
+     */
+    public synchronized void callFailed(Call call) {
+        inFlightCalls.remove(call);
+    }
+
+    /**
+     * Records the credits balance reported by the Pebblely API, unless a call issued later already reported one,
+     * along with the credits consumed since the previous balance.
+     *
+     * @param call    the call returned by {@link #startCall}
+     * @param credits the number of available credits
+     */
+    public synchronized void update(Call call, int credits) {
+        inFlightCalls.remove(call);
+        Balance previous = balance;
+        if (previous != null && previous.call() >= call.number) {
+            return;
+        }
+        balance = new Balance(call.number, credits, Instant.now());
+        if (previous != null && previous.credits() > credits) {
+            metricsService.recordCreditsConsumed(call.overlapped ? null : call.operation, previous.credits() - credits);
+        }
+    }
+
+    /**
+     * Refreshes the credits balance from the Pebblely API if it is unknown or older than the TTL.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "#{@creditsPropertiesConfig.refreshInterval.toMillis()}")
+    public void refreshIfExpired() {
+        Balance current = balance;
+        if (current != null && Duration.between(current.updatedAt(), Instant.now()).compareTo(creditsPropertiesConfig.getTtl()) < 0) {
+            return;
+        }
+        Call call = startReadCall();
+        Timer.Sample sample = metricsService.startRequest();
+        try {
+            int credits = api.getCredits().getCredits();
+            metricsService.requestCompleted(PebblelyOperationEnum.CREDITS, sample, null);
+            update(call, credits);
+        } catch (Exception exception) {
+            metricsService.requestCompleted(PebblelyOperationEnum.CREDITS, sample, exception);
+            LOG.warn("Failed to refresh Pebblely credits. Error description: {}", exception.getMessage());
+        }
+    }
+
+    // Numbers a call that does not consume credits, without registering it as in flight
+    private synchronized Call startReadCall() {
+        return new Call(++issuedCalls, null);
+    }
+
+    /**
+     * A Pebblely call, numbered in the order the calls were issued.
+     */
+    public static final class Call {
+
+        private final long number;
+        private final PebblelyOperationEnum operation;
+
+        // Guarded by the lock of the credits service
+        private boolean overlapped;
+
+        private Call(long number, PebblelyOperationEnum operation) {
+            this.number = number;
+            this.operation = operation;
+        }
+
+        private void overlap() {
+            overlapped = true;
+        }
+
+    }
+
+    private record Balance(long call, int credits, Instant updatedAt) {
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import com.adtomiclabs.pebblely.model.FileSortEnum;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.model.response.FilePageDto;
+import com.adtomiclabs.pebblely.model.response.StoredFileDto;
+import com.adtomiclabs.pebblely.storage.StorageBackend;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Service class keeping an in-memory index of the files of each storage directory.
+ * <p>
+ * The directories are listed once at startup and the index is then kept up to date by the changes notified by the
+ * {@link StorageBackend}, whether written through {@link FileStorageService} or imported by the backend. Entries hold their URL and
+ * are kept sorted by name and by modification time, so a page of files is read in time proportional to its size
+ * without touching the file system or the request mappings. URLs carry the version of the file, which lets
+ * {@link FileServingService} mark them as cacheable for good, and images also hold the URL of their gallery
+ * preview.
+ */
+@Slf4j
+@Service
+public class FileIndexService {
+
+    private static final String FILES_PATH = "files";
+    private static final String THUMBNAIL_WIDTH_PARAMETER = "w";
+    private static final String THUMBNAIL_FORMAT_PARAMETER = "format";
+    private static final char CURSOR_SEPARATOR = '/';
+    private static final Comparator<StoredFileDto> BY_MODIFIED = Comparator.comparing(StoredFileDto::getLastModified)
+            .thenComparing(StoredFileDto::getName);
+
+    private final StorageBackend storageBackend;
+    private final ThumbnailPropertiesConfig thumbnailPropertiesConfig;
+    private final String contextPath;
+
+    private final Map<String, DirectoryIndex> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the file index.
+     *
+     * @param storageBackend            the backend holding the stored files
+     * @param thumbnailPropertiesConfig the thumbnail configuration giving the width of the gallery previews
+     * @param contextPath               the servlet context path prefixed to the file URLs
+     */
+    public FileIndexService(StorageBackend storageBackend, ThumbnailPropertiesConfig thumbnailPropertiesConfig,
+                            @Value("${server.servlet.context-path:}") String contextPath) {
+        this.storageBackend = storageBackend;
+        this.thumbnailPropertiesConfig = thumbnailPropertiesConfig;
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * Starts following the changes of the stored files and indexes the files already stored.
+     *
+     * @throws StorageException if a directory cannot be listed
+     */
+    @PostConstruct
+    public void start() {
+        FilesDirectoriesEnum.getDirectoriesNames().forEach(directory -> directories.put(directory, new DirectoryIndex()));
+        // Registered before the listing so that no change falls between the two
+        storageBackend.addListener(new StorageBackend.Listener() {
+            @Override
+            public void stored(StoredObject object) {
+                DirectoryIndex files = directories.get(object.getDirectory());
+                if (files != null) {
+                    index(files, object);
+                }
+            }
+
+            @Override
+            public void deleted(String directory, String name) {
+                DirectoryIndex files = directories.get(directory);
+                if (files != null) {
+                    files.remove(name);
+                }
+            }
+        });
+        directories.forEach((directory, files) -> {
+            try (Stream<StoredObject> objects = storageBackend.list(directory)) {
+                objects.forEach(object -> index(files, object));
+            } catch (IOException e) {
+                throw new StorageException("Failed to read stored files", e);
+            }
+        });
+    }
+
+    /**
+     * Returns a page of the indexed files of a directory.
+     * <p>
+     * Pages sorted by name read only the files matching the prefix. Pages sorted by modification time skip the
+     * files that do not match it.
+     *
+     * @param directory  the storage directory name
+     * @param sort       the order of the files
+     * @param descending whether the files are listed in descending order
+     * @param prefix     the prefix of the listed file names, or {@code null} to list every file
+     * @param cursor     the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit      the maximum number of files of the page
+     * @return the page of files
+     * @throws StorageFileNotFoundException if the directory is unknown
+     * @throws IllegalArgumentException     if the cursor is malformed
+     */
+    public FilePageDto list(String directory, FileSortEnum sort, boolean descending, String prefix, String cursor, int limit) {
+        DirectoryIndex index = directories.get(directory);
+        if (index == null) {
+            throw new StorageFileNotFoundException("Unknown directory: " + directory);
+        }
+        String namePrefix = prefix != null ? prefix : "";
+        StoredFileDto after = cursor != null ? decodeCursor(cursor) : null;
+        Iterator<StoredFileDto> files = sort == FileSortEnum.NAME
+                ? index.byName(namePrefix, descending, after).values().iterator()
+                : index.byModified(descending, after).iterator();
+
+        List<StoredFileDto> page = new ArrayList<>(Math.max(1, limit));
+        while (files.hasNext() && page.size() < Math.max(1, limit)) {
+            StoredFileDto file = files.next();
+            if (file.getName().startsWith(namePrefix)) {
+                page.add(file);
+            }
+        }
+        boolean hasMore = false;
+        while (!hasMore && files.hasNext()) {
+            hasMore = files.next().getName().startsWith(namePrefix);
+        }
+        return FilePageDto.builder()
+                .files(page)
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    private void index(DirectoryIndex files, StoredObject object) {
+        String name = object.getName();
+        UriComponentsBuilder url = UriComponentsBuilder.fromPath(contextPath)
+                .pathSegment(FILES_PATH, object.getDirectory(), name)
+                .queryParam(FileServingService.VERSION_PARAMETER, FileServingService.version(object.getSize(), object.getLastModified()));
+        boolean thumbnail = thumbnailPropertiesConfig.isEnabled() && ImageFormatEnum.fromFilename(name).isPresent();
+        files.put(StoredFileDto.builder()
+                .name(name)
+                .size(object.getSize())
+                .lastModified(object.getLastModified())
+                .url(url.build().encode().toUriString())
+                .thumbnailUrl(thumbnail
+                        ? url.cloneBuilder()
+                                .queryParam(THUMBNAIL_WIDTH_PARAMETER, thumbnailPropertiesConfig.getGalleryWidth())
+                                .queryParam(THUMBNAIL_FORMAT_PARAMETER, ImageFormatEnum.JPEG.getName())
+                                .build().encode().toUriString()
+                        : null)
+                .build());
+    }
+
+    private static String encodeCursor(StoredFileDto file) {
+        String position = file.getLastModified().toString() + CURSOR_SEPARATOR + file.getName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static StoredFileDto decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(CURSOR_SEPARATOR);
+            return StoredFileDto.builder()
+                    .lastModified(Instant.parse(position.substring(0, separator)))
+                    .name(position.substring(separator + 1))
+                    .build();
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * The files of a directory, sorted by name and by modification time. Updates are serialized so that both
+     * orders hold the same entries, while reads go through the concurrent views without locking.
+     */
+    private static final class DirectoryIndex {
+
+        private final ConcurrentSkipListMap<String, StoredFileDto> byName = new ConcurrentSkipListMap<>();
+        private final ConcurrentSkipListSet<StoredFileDto> byModified = new ConcurrentSkipListSet<>(BY_MODIFIED);
+
+        private synchronized void put(StoredFileDto file) {
+            StoredFileDto previous = byName.put(file.getName(), file);
+            if (previous != null) {
+                byModified.remove(previous);
+            }
+            byModified.add(file);
+        }
+
+        private synchronized void remove(String name) {
+            StoredFileDto previous = byName.remove(name);
+            if (previous != null) {
+                byModified.remove(previous);
+            }
+        }
+
+        private NavigableMap<String, StoredFileDto> byName(String prefix, boolean descending, StoredFileDto after) {
+            NavigableMap<String, StoredFileDto> files = prefix.isEmpty()
+                    ? byName
+                    : byName.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (descending) {
+                files = files.descendingMap();
+            }
+            return after != null ? files.tailMap(after.getName(), false) : files;
+        }
+
+        private NavigableSet<StoredFileDto> byModified(boolean descending, StoredFileDto after) {
+            NavigableSet<StoredFileDto> files = descending ? byModified.descendingSet() : byModified;
+            return after != null ? files.tailSet(after, false) : files;
+        }
+
+    }
+
+}
@@ -1,80 +1,233 @@
 package com.adtomiclabs.pebblely.service;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.PebblelyStageEnum;
 import com.adtomiclabs.pebblely.model.request.*;
+import com.adtomiclabs.pebblely.model.response.BatchResultDto;
 import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
 import com.adtomiclabs.pebblely.exception.PebblelyException;
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
 import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Service class for file processing operations.
  */
+@Slf4j
 @AllArgsConstructor
 @Service
 public class FileProcessingService {
 
     private final PebblelyService pebblelyService;
     private final FileStorageService fileStorageService;
+    private final BatchExecutionService batchExecutionService;
+    private final ResultCacheService resultCacheService;
+    private final PebblelyMetricsService metricsService;
+    private final ThumbnailService thumbnailService;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Upscales multiple images.
      *
      * @param multipartFiles The list of MultipartFile objects representing the images to upscale.
      * @param size           The upscale size.
-     * @throws IOException       If an I/O error occurs during the image processing or storage.
-     * @throws PebblelyException If an error occurs during the upscale operation.
+     * @return The per-file results of the batch.
      */
-    public void upscaleImages(List<MultipartFile> multipartFiles, int size) throws IOException, PebblelyException {
-        for (MultipartFile multipartFile : multipartFiles) {
-            upscaleImage(multipartFile, size);
-        }
+    public BatchResultDto upscaleImages(List<MultipartFile> multipartFiles, int size) {
+        return batchExecutionService.execute(PebblelyOperationEnum.UPSCALE, multipartFiles, upscaleTask(size));
     }
 
     /**
      * Removes the background from multiple images.
      *
      * @param multipartFiles The list of MultipartFile objects representing the images to process.
-     * @throws IOException       If an I/O error occurs during the image processing or storage.
-     * @throws PebblelyException If an error occurs during the background removal operation.
+     * @return The per-file results of the batch.
      */
-    public void removeBackgrounds(List<MultipartFile> multipartFiles) throws IOException, PebblelyException {
-        for (MultipartFile multipartFile : multipartFiles) {
-            removeBackground(multipartFile);
-        }
+    public BatchResultDto removeBackgrounds(List<MultipartFile> multipartFiles) {
+        return batchExecutionService.execute(PebblelyOperationEnum.REMOVE_BACKGROUND, multipartFiles, removeBackgroundTask());
     }
 
     /**
      * Creates backgrounds from multiple images using the specified CreateBackgroundDto.
+     * The given DTO is shared by the whole batch and is never modified.
      *
      * @param multipartFiles      The list of MultipartFile objects representing the images to process.
      * @param createBackgroundDto The CreateBackgroundDto object containing the background creation parameters.
-     * @throws IOException       If an I/O error occurs during the image processing or storage.
-     * @throws PebblelyException If an error occurs during the background creation operation.
+     * @return The per-file results of the batch.
      */
-    public void createBackgrounds(List<MultipartFile> multipartFiles, CreateBackgroundDto createBackgroundDto) throws IOException, PebblelyException {
-        for (MultipartFile multipartFile : multipartFiles) {
-            createBackground(multipartFile, createBackgroundDto);
-        }
+    public BatchResultDto createBackgrounds(List<MultipartFile> multipartFiles, CreateBackgroundDto createBackgroundDto) {
+        return batchExecutionService.execute(PebblelyOperationEnum.CREATE_BACKGROUND, multipartFiles, createBackgroundTask(createBackgroundDto));
     }
 
     /**
      * Inpaints multiple images using the specified InpaintDto.
+     * The given DTO is shared by the whole batch and is never modified.
      *
      * @param multipartFiles The list of MultipartFile objects representing the images to process.
      * @param inpaintDto     The InpaintDto object containing the inpainting parameters.
-     * @throws IOException       If an I/O error occurs during the image processing or storage.
-     * @throws PebblelyException If an error occurs during the inpainting operation.
+     * @return The per-file results of the batch.
+     */
+    public BatchResultDto inpaintFiles(List<MultipartFile> multipartFiles, InpaintDto inpaintDto) {
+        return batchExecutionService.execute(PebblelyOperationEnum.INPAINT, multipartFiles, inpaintTask(inpaintDto));
+    }
+
+    /**
+     * Returns the task upscaling a single image, for use with {@link BatchExecutionService}.
+     *
+     * @param size The upscale size.
+     * @return The upscale task.
+     */
+    public BatchExecutionService.BatchTask upscaleTask(int size) {
+        return multipartFile -> upscaleImage(multipartFile, size);
+    }
+
+    /**
+     * Returns the task removing the background of a single image, for use with {@link BatchExecutionService}.
+     *
+     * @return The background removal task.
+     */
+    public BatchExecutionService.BatchTask removeBackgroundTask() {
+        return this::removeBackground;
+    }
+
+    /**
+     * Returns the task creating the background of a single image, for use with {@link BatchExecutionService}.
+     * The parameters shared by the files are serialized once, see {@link RequestBodyTemplate}.
+     *
+     * @param createBackgroundDto The CreateBackgroundDto object containing the background creation parameters.
+     * @return The background creation task.
+     */
+    public BatchExecutionService.BatchTask createBackgroundTask(CreateBackgroundDto createBackgroundDto) {
+        CreateBackgroundDto sharedDto = createBackgroundDto.toBuilder()
+                .bodyTemplate(bodyTemplate(createBackgroundDto.toBuilder().images(List.of(RequestBodyTemplate.PLACEHOLDER_IMAGE)).build()))
+                .build();
+        return multipartFile -> createBackground(multipartFile, sharedDto);
+    }
+
+    /**
+     * Returns the task inpainting a single image, for use with {@link BatchExecutionService}.
+     * The parameters shared by the files, including the mask, are serialized once, see {@link RequestBodyTemplate}.
+     *
+     * @param inpaintDto The InpaintDto object containing the inpainting parameters.
+     * @return The inpainting task.
+     */
+    public BatchExecutionService.BatchTask inpaintTask(InpaintDto inpaintDto) {
+        InpaintDto sharedDto = inpaintDto.toBuilder()
+                .bodyTemplate(bodyTemplate(inpaintDto.toBuilder().image(RequestBodyTemplate.PLACEHOLDER_IMAGE).build()))
+                .build();
+        return multipartFile -> inpaintFile(multipartFile, sharedDto);
+    }
+
+    /**
+     * Returns the task applying a pipeline of operations to a single image, for use with
+     * {@link BatchExecutionService}.
+     * <p>
+     * The output of each step is handed to the next one as the decoded response file, without being stored in
+     * the originals directory or read back. Only the output of the last step is stored, in the directory of its
+     * operation, unless the pipeline persists its intermediates. Each step reuses the cached result of an
+     * identical request like a single operation does. The parameters of every step are checked here, before
+     * any image is sent, so that an invalid step never runs after earlier steps already consumed credits.
+     *
+     * @param pipeline The pipeline, which must hold at least one step.
+     * @return The pipeline task.
+     * @throws IllegalArgumentException If the pipeline has no step, a step is not an upscale, background removal
+     *                                  or background creation, or a step misses a required parameter.
+     */
+    public BatchExecutionService.BatchTask pipelineTask(PipelineDto pipeline) throws IOException {
+        if (pipeline.getSteps() == null || pipeline.getSteps().isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one step");
+        }
+        List<PipelineStage<?>> stages = new ArrayList<>(pipeline.getSteps().size());
+        for (PipelineStepDto step : pipeline.getSteps()) {
+            stages.add(stage(step));
+        }
+        return multipartFile -> runPipeline(multipartFile, stages, pipeline.isPersistIntermediates());
+    }
+
+    /**
+     * Returns the task of an asynchronous job, for use with {@link BatchExecutionService}. The task only depends
+     * on the recorded job parameters, so that it can be rebuilt to resume the job after a restart.
+     *
+     * @param operation The Pebblely operation of the job, the operation of the last step for pipelines.
+     * @param request   The parameters of the job.
+     * @return The task applied to each file of the job.
+     * @throws IOException                  If the mask cannot be preprocessed.
+     * @throws IllegalArgumentException     If a required parameter is missing, the pipeline is invalid or the
+     *                                      operation is not supported by jobs.
+     * @throws StorageFileNotFoundException If the style image or the mask is no longer stored.
+     */
+    public BatchExecutionService.BatchTask task(PebblelyOperationEnum operation, JobRequestDto request) throws IOException {
+        if (request.getPipeline() != null) {
+            return pipelineTask(request.getPipeline());
+        }
+        switch (operation) {
+            case UPSCALE:
+                if (request.getUpscaleSize() == null) {
+                    throw new IllegalArgumentException("An upscale job needs an upscale size");
+                }
+                return upscaleTask(request.getUpscaleSize());
+            case REMOVE_BACKGROUND:
+                return removeBackgroundTask();
+            case CREATE_BACKGROUND:
+                CreateBackgroundDto createBackgroundDto = new CreateBackgroundDto();
+                createBackgroundDto.setHeight(request.getHeight());
+                createBackgroundDto.setWidth(request.getWidth());
+                return createBackgroundTask(buildBackgroundDto(createBackgroundDto, request.getTheme(), request.getDescription(),
+                        request.getStyleColor(), loadOriginal(request.getStyleImage()), request.getNegative()));
+            case INPAINT:
+                if (request.getMask() == null) {
+                    throw new IllegalArgumentException("An inpainting job needs a mask");
+                }
+                InpaintDto inpaintDto = new InpaintDto(imagePreprocessingService.preprocessMask(PebblelyOperationEnum.INPAINT, loadOriginal(request.getMask())));
+                return inpaintTask(buildBackgroundDto(inpaintDto, request.getTheme(), request.getDescription(),
+                        request.getStyleColor(), loadOriginal(request.getStyleImage()), request.getNegative()));
+            default:
+                throw new IllegalArgumentException("Operation not supported by jobs: " + operation.getName());
+        }
+    }
+
+    /**
+     * Stores an uploaded request parameter image, such as a style image or a mask, in the originals directory.
+     *
+     * @param multipartFile The uploaded image, which may be absent.
+     * @return The name of the stored image, or null if no image was uploaded.
+     * @throws IOException If an I/O error occurs during the storage.
      */
-    public void inpaintFiles(List<MultipartFile> multipartFiles, InpaintDto inpaintDto) throws IOException, PebblelyException {
-        for (MultipartFile multipartFile : multipartFiles) {
-            inpaintFile(multipartFile, inpaintDto);
+    public String storeOriginal(MultipartFile multipartFile) throws IOException {
+        FileStorageService.StoredFile stored = storeParameterImage(multipartFile);
+        return stored != null ? stored.name() : null;
+    }
+
+    /**
+     * Returns the operation whose directory receives the final outputs of a pipeline.
+     *
+     * @param pipeline The pipeline.
+     * @return The operation of the last step.
+     * @throws IllegalArgumentException If the pipeline has no step or the operation of its last step is unknown.
+     */
+    public PebblelyOperationEnum getFinalOperation(PipelineDto pipeline) {
+        if (pipeline.getSteps() == null || pipeline.getSteps().isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one step");
         }
+        return PebblelyOperationEnum.fromName(pipeline.getSteps().get(pipeline.getSteps().size() - 1).getOperation());
     }
 
     /**
@@ -97,7 +250,7 @@ public class FileProcessingService {
         if (Objects.nonNull(width)) {
             dto.setWidth(width);
         }
-        buildBackgroundDto(dto, theme, description, styleColor, styleImage, negative);
+        buildBackgroundDto(dto, theme, description, styleColor, parameterImage(styleImage), negative);
         return dto;
     }
 
@@ -113,39 +266,182 @@ public class FileProcessingService {
      * @return The created InpaintDto object.
      */
     public InpaintDto buildInpaintDto(MultipartFile mask, String theme, String description, String styleColor, MultipartFile styleImage, String negative) throws IOException {
-        String imageBase64 = fileStorageService.getMultipartFileInBase64(mask, FilesDirectoriesEnum.ORIGINALS.name());
-        InpaintDto dto = new InpaintDto(imageBase64);
-        return buildBackgroundDto(dto, theme, description, styleColor, styleImage, negative);
+        Base64Image storedMask = Base64Image.ofFile(fileStorageService.storeMultipartFile(mask, FilesDirectoriesEnum.ORIGINALS.getName()).file());
+        InpaintDto dto = new InpaintDto(imagePreprocessingService.preprocessMask(PebblelyOperationEnum.INPAINT, storedMask));
+        return buildBackgroundDto(dto, theme, description, styleColor, parameterImage(styleImage), negative);
     }
 
-    private void upscaleImage(MultipartFile multipartFile, int size) throws IOException, PebblelyException {
-        String imageBase64 = fileStorageService.getMultipartFileInBase64(multipartFile, FilesDirectoriesEnum.ORIGINALS.name());
-        UpscaleDto upscaleDto = UpscaleDto.builder()
-                .image(imageBase64)
-                .size(size)
-                .build();
-        PebblelyResponseDto result = pebblelyService.upscale(upscaleDto);
-        fileStorageService.saveFileFromBase64(result.getData(), FilesDirectoriesEnum.UPSCALE.name(), multipartFile.getOriginalFilename());
+    private String upscaleImage(MultipartFile multipartFile, int size) throws IOException, PebblelyException {
+        return process(PebblelyOperationEnum.UPSCALE, multipartFile,
+                image -> UpscaleDto.builder().image(image).size(size).build(), pebblelyService::upscale);
     }
 
-    private void removeBackground(MultipartFile multipartFile) throws IOException, PebblelyException {
-        String imageBase64 = fileStorageService.getMultipartFileInBase64(multipartFile, FilesDirectoriesEnum.ORIGINALS.name());
-        PebblelyResponseDto result = pebblelyService.removeBackground(new ImageDto(imageBase64));
-        fileStorageService.saveFileFromBase64(result.getData(), FilesDirectoriesEnum.REMOVED.name(), multipartFile.getOriginalFilename());
+    private String removeBackground(MultipartFile multipartFile) throws IOException, PebblelyException {
+        return process(PebblelyOperationEnum.REMOVE_BACKGROUND, multipartFile, ImageDto::new, pebblelyService::removeBackground);
     }
 
-    private void createBackground(MultipartFile multipartFile, CreateBackgroundDto createBackgroundDto) throws IOException, PebblelyException {
-        String imageBase64 = fileStorageService.getMultipartFileInBase64(multipartFile, FilesDirectoriesEnum.ORIGINALS.name());
-        createBackgroundDto.setImages(List.of(imageBase64));
-        PebblelyResponseDto result = pebblelyService.createBackground(createBackgroundDto);
-        fileStorageService.saveFileFromBase64(result.getData(), FilesDirectoriesEnum.CREATED.name(), multipartFile.getOriginalFilename());
+    private String createBackground(MultipartFile multipartFile, CreateBackgroundDto createBackgroundDto) throws IOException, PebblelyException {
+        return process(PebblelyOperationEnum.CREATE_BACKGROUND, multipartFile,
+                image -> createBackgroundDto.toBuilder().images(List.of(image)).build(), pebblelyService::createBackground);
     }
 
-    private void inpaintFile(MultipartFile multipartFile, InpaintDto inpaintDto) throws IOException, PebblelyException {
-        String imageBase64 = fileStorageService.getMultipartFileInBase64(multipartFile, FilesDirectoriesEnum.ORIGINALS.name());
-        inpaintDto.setImage(imageBase64);
-        PebblelyResponseDto result = pebblelyService.inpaint(inpaintDto);
-        fileStorageService.saveFileFromBase64(result.getData(), FilesDirectoriesEnum.INPAINT.name(), multipartFile.getOriginalFilename());
+    private String inpaintFile(MultipartFile multipartFile, InpaintDto inpaintDto) throws IOException, PebblelyException {
+        return process(PebblelyOperationEnum.INPAINT, multipartFile,
+                image -> inpaintDto.toBuilder().image(image).build(), pebblelyService::inpaint);
+    }
+
+    /**
+     * Stores an uploaded image in the originals directory and processes the request built from its
+     * preprocessed copy, which is deleted once the result is stored.
+     *
+     * @param <T>           The type of the request DTO.
+     * @param operation     The Pebblely operation.
+     * @param multipartFile The uploaded image.
+     * @param request       The function building the request DTO from the image to send.
+     * @param call          The Pebblely call performing the operation.
+     * @return The name of the stored result.
+     */
+    private <T> String process(PebblelyOperationEnum operation, MultipartFile multipartFile, Function<Base64Image, T> request,
+                               Function<T, PebblelyResponseDto> call) throws IOException {
+        Base64Image original = Base64Image.ofFile(fileStorageService.storeMultipartFile(multipartFile, FilesDirectoriesEnum.ORIGINALS.getName()).file());
+        Base64Image image = imagePreprocessingService.preprocess(operation, original);
+        try {
+            return process(operation, request.apply(image), call, multipartFile.getOriginalFilename());
+        } finally {
+            if (image != original) {
+                Files.deleteIfExists(image.getFile());
+            }
+        }
+    }
+
+    private PipelineStage<?> stage(PipelineStepDto step) throws IOException {
+        PebblelyOperationEnum operation = PebblelyOperationEnum.fromName(step.getOperation());
+        switch (operation) {
+            case UPSCALE:
+                if (step.getSize() == null) {
+                    throw new IllegalArgumentException("An upscale step needs an upscale size");
+                }
+                return new PipelineStage<>(operation,
+                        image -> UpscaleDto.builder().image(image).size(step.getSize()).build(), pebblelyService::upscale);
+            case REMOVE_BACKGROUND:
+                return new PipelineStage<>(operation, ImageDto::new, pebblelyService::removeBackground);
+            case CREATE_BACKGROUND:
+                CreateBackgroundDto createBackgroundDto = buildCreateBackgroundDto(step.getTheme(), step.getDescription(),
+                        step.getStyleColor(), null, step.getNegative(), step.getHeight(), step.getWidth());
+                return new PipelineStage<>(operation,
+                        image -> createBackgroundDto.toBuilder().images(List.of(image)).build(), pebblelyService::createBackground);
+            default:
+                throw new IllegalArgumentException("Operation not supported in pipelines: " + operation.getName());
+        }
+    }
+
+    /**
+     * Serializes the parameters shared by the requests of a batch. The requests are serialized whole if the
+     * template cannot be built.
+     */
+    private RequestBodyTemplate bodyTemplate(Object sharedRequest) {
+        try {
+            return RequestBodyTemplate.of(objectMapper, sharedRequest);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Failed to serialize the shared request parameters. Error description: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String runPipeline(MultipartFile multipartFile, List<PipelineStage<?>> stages, boolean persistIntermediates) throws IOException {
+        String fileName = multipartFile.getOriginalFilename();
+        Base64Image original = Base64Image.ofFile(fileStorageService.storeMultipartFile(multipartFile, FilesDirectoriesEnum.ORIGINALS.getName()).file());
+        Base64Image image = imagePreprocessingService.preprocess(stages.get(0).operation(), original);
+        String storedName = null;
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                PipelineStage<?> stage = stages.get(i);
+                Base64Image output = runStage(stage, image);
+                discard(image);
+                image = output;
+                if (persistIntermediates || i == stages.size() - 1) {
+                    FileStorageService.StoredFile saved = write(stage.operation(), output, stage.operation().getDirectory().getName(), fileName);
+                    image = Base64Image.ofFile(saved.file());
+                    storedName = saved.name();
+                }
+            }
+            return storedName;
+        } finally {
+            discard(image);
+        }
+    }
+
+    /**
+     * Runs a step of a pipeline, reusing the cached result of an identical request when there is one.
+     *
+     * @return The output of the step, a temporary file unless the response was kept encoded.
+     */
+    private <T> Base64Image runStage(PipelineStage<T> stage, Base64Image image) throws IOException {
+        T request = stage.request().apply(image);
+        String cacheKey = resultCacheService.key(stage.operation(), request);
+        Optional<Path> cached = resultCacheService.lookup(cacheKey);
+        if (cached.isPresent()) {
+            try {
+                return fileStorageService.stageCopy(cached.get());
+            } catch (NoSuchFileException e) {
+                LOG.debug("Cached result of a {} step was evicted before it could be copied", stage.operation().getName());
+            }
+        }
+        Base64Image output = stage.call().apply(request).getData();
+        if (output == null) {
+            throw new StorageException("No image returned by the " + stage.operation().getName() + " step");
+        }
+        if (output.getFile() != null) {
+            resultCacheService.store(cacheKey, output.getFile());
+        }
+        return output;
+    }
+
+    private static void discard(Base64Image image) throws IOException {
+        if (image != null && image.isTemporary()) {
+            Files.deleteIfExists(image.getFile());
+        }
+    }
+
+    /**
+     * Stores the result of a request in the directory of its operation, reusing a cached result of an identical
+     * request when there is one and calling the Pebblely API otherwise.
+     *
+     * @param <T>       The type of the request DTO.
+     * @param operation The Pebblely operation.
+     * @param request   The request DTO.
+     * @param call      The Pebblely call performing the operation.
+     * @param fileName  The name of the stored result, which is given a variant if it is taken.
+     * @return The name of the stored result.
+     */
+    private <T> String process(PebblelyOperationEnum operation, T request, Function<T, PebblelyResponseDto> call, String fileName) throws IOException {
+        String subdirectory = operation.getDirectory().getName();
+        String cacheKey = resultCacheService.key(operation, request);
+        Optional<Path> cached = resultCacheService.lookup(cacheKey);
+        if (cached.isPresent()) {
+            try {
+                return write(operation, Base64Image.ofFile(cached.get()), subdirectory, fileName).name();
+            } catch (NoSuchFileException e) {
+                LOG.debug("Cached result of {} was evicted before it could be copied", fileName);
+            }
+        }
+
+        PebblelyResponseDto result = call.apply(request);
+        FileStorageService.StoredFile saved = write(operation, result.getData(), subdirectory, fileName);
+        resultCacheService.store(cacheKey, saved.file());
+        return saved.name();
+    }
+
+    private FileStorageService.StoredFile write(PebblelyOperationEnum operation, Base64Image image, String subdirectory, String fileName) throws IOException {
+        long start = System.nanoTime();
+        FileStorageService.StoredFile saved;
+        try {
+            saved = fileStorageService.saveImage(image, subdirectory, fileName);
+        } finally {
+            metricsService.recordStage(operation, PebblelyStageEnum.WRITE, System.nanoTime() - start);
+        }
+        thumbnailService.generateEagerly(subdirectory, saved.name());
+        return saved;
     }
 
     /**
@@ -156,11 +452,11 @@ public class FileProcessingService {
      * @param theme       The background theme template from Pebblely.
      * @param description The background description.
      * @param styleColor  The background style color.
-     * @param styleImage  The background style image.
+     * @param styleImage  The stored background style image, if any.
      * @param negative    The negative value.
      * @return The populated BackgroundDto object.
      */
-    private <T extends BackgroundDto> T buildBackgroundDto(T dto, String theme, String description, String styleColor, MultipartFile styleImage, String negative) throws IOException {
+    private <T extends BackgroundDto> T buildBackgroundDto(T dto, String theme, String description, String styleColor, Base64Image styleImage, String negative) {
         dto.setDescription(description);
         dto.setNegative(negative);
 
@@ -170,11 +466,37 @@ public class FileProcessingService {
         if (styleColor != null && !styleColor.isEmpty()) {
             dto.setStyleColor(styleColor);
         }
-        if (styleImage != null && !styleImage.isEmpty()) {
-            String imageBase64 = fileStorageService.getMultipartFileInBase64(styleImage, FilesDirectoriesEnum.ORIGINALS.name());
-            dto.setStyleImage(imageBase64);
+        if (styleImage != null) {
+            dto.setStyleImage(styleImage);
         }
 
         return dto;
     }
+
+    private FileStorageService.StoredFile storeParameterImage(MultipartFile multipartFile) throws IOException {
+        if (multipartFile == null || multipartFile.isEmpty()) {
+            return null;
+        }
+        return fileStorageService.storeMultipartFile(multipartFile, FilesDirectoriesEnum.ORIGINALS.getName());
+    }
+
+    private Base64Image parameterImage(MultipartFile multipartFile) throws IOException {
+        FileStorageService.StoredFile stored = storeParameterImage(multipartFile);
+        return stored != null ? Base64Image.ofFile(stored.file()) : null;
+    }
+
+    private Base64Image loadOriginal(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        return Base64Image.ofFile(fileStorageService.loadAsFile(FilesDirectoriesEnum.ORIGINALS.getName(), filename));
+    }
+
+    /**
+     * A step of a pipeline, building its request from the image to transform.
+     */
+    private record PipelineStage<T>(PebblelyOperationEnum operation, Function<Base64Image, T> request,
+                                    Function<T, PebblelyResponseDto> call) {
+    }
+
 }
@@ -0,0 +1,250 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service class writing stored files to HTTP responses.
+ * <p>
+ * Every file is served with an ETag and a Last-Modified date derived from its size and modification time, so
+ * conditional requests are answered with {@code 304 Not Modified}, and a single byte range may be requested to
+ * resume a download. URLs carrying the current {@link #VERSION_PARAMETER version} of the file, as listed by
+ * {@link FileIndexService}, are cached for a year, since a changed file gets a new URL. Other URLs must be
+ * revalidated.
+ * <p>
+ * Local files are handed to Tomcat's sendfile support, which copies them to the socket in the kernel, whatever
+ * their size: unlike Tomcat's default servlet, which only uses sendfile from 48 KiB, no size threshold is
+ * applied. Tomcat only offers sendfile when its connector has {@code useSendfile} enabled, the default, and the
+ * connection is not encrypted. Otherwise, and always for resized copies of images served from the
+ * {@link ThumbnailService} cache, the content is transferred from a {@link FileChannel} to the servlet output
+ * stream, which the JDK copies through a small heap buffer, one chunk at a time.
+ * <p>
+ * Files kept in an object store are redirected to a presigned URL when the backend provides one, so that the
+ * download does not go through the application, and otherwise streamed from the requested range of the object.
+ */
+@RequiredArgsConstructor
+@Service
+public class FileServingService {
+
+    /**
+     * The query parameter holding the version of a file in its URL.
+     */
+    public static final String VERSION_PARAMETER = "v";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+    private static final String NO_STORE_CACHE_CONTROL = "no-store";
+    private static final String BYTES = "bytes";
+
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final FileStorageService fileStorageService;
+    private final ThumbnailService thumbnailService;
+    private final ThumbnailPropertiesConfig thumbnailPropertiesConfig;
+
+    /**
+     * Returns the version of a file, which changes whenever the file is rewritten.
+     *
+     * @param size         the size of the file
+     * @param lastModified the modification time of the file
+     * @return the version
+     */
+    public static String version(long size, Instant lastModified) {
+        return Long.toString(lastModified.toEpochMilli(), Character.MAX_RADIX) + "-" + Long.toString(size, Character.MAX_RADIX);
+    }
+
+    /**
+     * Writes a stored file, or the requested range of it, to the response.
+     * <p>
+     * When a width or a format is given, a resized copy of the image is written instead, taken from the
+     * {@link ThumbnailService}. Its ETag also holds the width and the format, and it is only generated once the
+     * conditional headers have been checked, so a revalidated preview costs no decoding.
+     *
+     * @param subdirectory the subdirectory of the file
+     * @param filename     the name of the file
+     * @param version      the version of the file given in the URL, or {@code null}
+     * @param width        the width of the resized copy, or {@code null}
+     * @param format       the format of the resized copy, or {@code null} to keep the format of the file
+     * @param webRequest   the request
+     * @param response     the response
+     * @throws IOException              if the file cannot be read or the response cannot be written
+     * @throws IllegalArgumentException if the width or the format is not supported
+     */
+    public void serve(String subdirectory, String filename, String version, Integer width, String format,
+                      ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        StoredObject stored = fileStorageService.stat(subdirectory, filename);
+        long length = stored.getSize();
+        Instant lastModified = stored.getLastModified();
+        String currentVersion = version(length, lastModified);
+        ImageFormatEnum imageFormat = null;
+        String etag = "\"" + currentVersion + "\"";
+        if (thumbnailPropertiesConfig.isEnabled() && (width != null || format != null)) {
+            imageFormat = format != null ? ImageFormatEnum.fromName(format) : ImageFormatEnum.fromFilename(filename).orElse(ImageFormatEnum.PNG);
+            etag = "\"" + currentVersion + "-" + (width != null ? width : "full") + "-" + imageFormat.getName() + "\"";
+        }
+
+        if (imageFormat == null) {
+            Optional<URI> downloadUrl = fileStorageService.getDownloadUrl(subdirectory, filename);
+            if (downloadUrl.isPresent()) {
+                // The URL expires, so neither the redirect nor its validators may be reused
+                response.setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE_CACHE_CONTROL);
+                response.sendRedirect(downloadUrl.get().toString());
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, currentVersion.equals(version) ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        // Answers If-None-Match and If-Modified-Since, and sets the ETag and Last-Modified headers
+        if (webRequest.checkNotModified(etag, lastModified.toEpochMilli())) {
+            return;
+        }
+
+        if (imageFormat == null) {
+            Content content = fileStorageService.isLocal()
+                    ? localContent(fileStorageService.loadAsFile(subdirectory, filename))
+                    : remoteContent(subdirectory, filename);
+            write(content, filename, MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM),
+                    length, etag, lastModified, webRequest.getRequest(), response);
+            return;
+        }
+        Path thumbnail = thumbnailService.getThumbnail(fileStorageService.loadAsFile(subdirectory, filename), currentVersion, width, imageFormat);
+        // Opened right away so that the copy can be evicted from the cache while it is being sent, which rules out
+        // sendfile, as Tomcat only opens the file once the request has been handled
+        try (FileChannel channel = FileChannel.open(thumbnail, StandardOpenOption.READ)) {
+            write((start, count, servletRequest, servletResponse) -> transfer(channel, start, count, servletResponse),
+                    StringUtils.stripFilenameExtension(filename) + "." + imageFormat.getExtension(),
+                    MediaType.parseMediaType(imageFormat.getMediaType()), channel.size(), etag, lastModified,
+                    webRequest.getRequest(), response);
+        }
+    }
+
+    private static void write(Content content, String name, MediaType mediaType, long length, String etag,
+                              Instant lastModified, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Several ranges are answered with the whole file, which is allowed and saves a multipart body
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || start > end) {
+                        throw new IllegalArgumentException("Unsatisfiable range: " + range);
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        response.setContentType(mediaType.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(name).build().toString());
+        response.setContentLengthLong(end - start + 1);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || end < start) {
+            return;
+        }
+        content.transfer(start, end - start + 1, request, response);
+    }
+
+    private static Content localContent(Path file) {
+        return (start, count, request, response) -> {
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+                // Tomcat sends the file with sendfile once the request has been handled
+                request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+                request.setAttribute(SENDFILE_END_ATTRIBUTE, start + count);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                transfer(channel, start, count, response);
+            }
+        };
+    }
+
+    private Content remoteContent(String subdirectory, String filename) {
+        return (start, count, request, response) -> {
+            // Streamed from the backend, without first downloading the whole file
+            try (InputStream input = fileStorageService.openRange(subdirectory, filename, start, start + count - 1)) {
+                input.transferTo(response.getOutputStream());
+            }
+        };
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, Instant lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified.getEpochSecond();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies through a heap buffer: the servlet output stream is neither a file nor a socket channel, so
+     * {@link FileChannel#transferTo} cannot hand it to the kernel.
+     */
+    private static void transfer(FileChannel channel, long position, long count, HttpServletResponse response) throws IOException {
+        WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position + count - remaining, remaining, output);
+            if (transferred <= 0) {
+                break;
+            }
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * The content of a served file, written to the response from a given position.
+     */
+    @FunctionalInterface
+    private interface Content {
+
+        void transfer(long start, long count, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+    }
+
+}
@@ -3,133 +3,290 @@ package com.adtomiclabs.pebblely.service;
 import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
 import com.adtomiclabs.pebblely.exception.StorageException;
 import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.storage.StorageBackend;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import com.adtomiclabs.pebblely.utils.StagedMultipartFile;
 import lombok.AllArgsConstructor;
 import org.apache.commons.codec.binary.Base64;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import javax.annotation.PostConstruct;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 /**
  * Service class for file storage operations.
+ * <p>
+ * The uploaded originals and the results of each operation are kept by the {@link StorageBackend}, addressed by
+ * their directory and name. They are first written to the staging directory, then handed to the backend, which
+ * never replaces a stored file: a file whose name is taken is stored under a variant of it, e.g.
+ * {@code flowers (1).png}, and the name it was stored under is returned.
  */
 @AllArgsConstructor
 @Service
 public class FileStorageService {
 
+    private static final String JOBS_DIRECTORY = ".jobs";
+
     private final StoragePropertiesConfig storagePropertiesConfig;
+    private final StorageBackend storageBackend;
 
     /**
-     * Converts a MultipartFile to a File and stores it in the specified subdirectory.
+     * Stores a MultipartFile in the specified subdirectory.
+     * The upload is streamed to disk and the returned image is only encoded when a request body is written.
      *
-     * @param multipartFile The MultipartFile to convert.
+     * @param multipartFile The MultipartFile to store.
      * @param subdirectory  The subdirectory to store the file in.
-     * @return The Base64-encoded representation of the stored file.
-     * @throws IOException If an I/O error occurs during the conversion or storage.
+     * @return The stored file, whose local file can be sent in Base64.
+     * @throws IOException If an I/O error occurs during the storage.
      */
-    public String getMultipartFileInBase64(MultipartFile multipartFile, String subdirectory) throws IOException {
-        File file = convertMultipartFileToFile(multipartFile, subdirectory);
-        return encodeFileToBase64(file);
+    public StoredFile storeMultipartFile(MultipartFile multipartFile, String subdirectory) throws IOException {
+        String filename = Objects.requireNonNull(multipartFile.getOriginalFilename());
+        Path staged = stagingFile();
+        StoredObject stored;
+        try {
+            multipartFile.transferTo(staged.toAbsolutePath());
+            stored = storageBackend.put(subdirectory, filename, staged);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+        return new StoredFile(stored.getName(), storageBackend.getLocalFile(subdirectory, stored.getName()));
     }
 
     /**
-     * Saves a file from a Base64-encoded string representation.
+     * Saves an image returned by the Pebblely API.
+     * Temporary files, such as responses decoded to the staging directory, are moved into place; other
+     * file-backed images are copied and encoded images are decoded.
      *
-     * @param imageBase64  The Base64-encoded string representing the file.
+     * @param image        The image to save.
      * @param subdirectory The subdirectory to store the file in.
      * @param fileName     The name of the file.
-     * @throws IOException If an I/O error occurs during the storage.
+     * @return The saved file.
+     * @throws IOException      If an I/O error occurs during the storage.
+     * @throws StorageException If there is no image to save.
      */
-    public void saveFileFromBase64(String imageBase64, String subdirectory, String fileName) throws IOException {
-        byte[] decodedBytes = Base64.decodeBase64(imageBase64);
-        File directory = new File(storagePropertiesConfig.getLocation(), subdirectory);
-        if (!directory.exists()) {
-            directory.mkdirs();
+    public StoredFile saveImage(Base64Image image, String subdirectory, String fileName) throws IOException {
+        if (image == null) {
+            throw new StorageException("No image to save as " + fileName);
         }
-
-        File file = new File(directory, fileName);
-        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-            fileOutputStream.write(decodedBytes);
+        Path staged;
+        if (image.getEncoded() != null) {
+            staged = Files.write(stagingFile(), Base64.decodeBase64(image.getEncoded()));
+        } else if (image.isTemporary()) {
+            staged = image.getFile();
+        } else {
+            staged = Files.copy(image.getFile(), stagingFile());
+        }
+        StoredObject stored;
+        try {
+            stored = storageBackend.put(subdirectory, fileName, staged);
+        } finally {
+            Files.deleteIfExists(staged);
         }
+        return new StoredFile(stored.getName(), storageBackend.getLocalFile(subdirectory, stored.getName()));
     }
 
     /**
-     * Loads all files in the specified subdirectory.
+     * Makes a temporary copy of a file in the staging directory, hard-linked where links are supported, so that
+     * it can be read while the original is deleted, e.g. a cached result evicted from the cache.
      *
-     * @param subdirectory The subdirectory to load files from.
-     * @return A Stream of Path objects representing the loaded files.
-     * @throws StorageException If an error occurs during the file loading process.
+     * @param file The file to copy.
+     * @return The copy, as a temporary image.
+     * @throws IOException If the file cannot be copied.
      */
-    public Stream<Path> loadAll(String subdirectory) {
+    public Base64Image stageCopy(Path file) throws IOException {
+        Path directory = storagePropertiesConfig.getStagingLocation();
+        Files.createDirectories(directory);
+        Path copy = directory.resolve(file.getFileName() + "-" + System.nanoTime());
         try {
-            Path subdirectoryPath = Path.of(storagePropertiesConfig.getLocation(), subdirectory);
-            return Files.walk(subdirectoryPath, 2)
-                    .filter(path -> !path.equals(subdirectoryPath))
-                    .map(subdirectoryPath::relativize);
+            Files.createLink(copy, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, copy);
+        }
+        return Base64Image.ofTemporaryFile(copy);
+    }
+
+    /**
+     * Deletes the temporary files left in the staging directory, e.g. by responses that were decoded but never
+     * saved because the application stopped.
+     *
+     * @throws StorageException If the staging directory cannot be cleaned.
+     */
+    @PostConstruct
+    public void cleanStagingDirectory() {
+        deleteRecursively(storagePropertiesConfig.getStagingLocation());
+    }
+
+    /**
+     * Copies an upload to the staging area of a job, so that it can be processed after the request ends.
+     *
+     * @param multipartFile The MultipartFile to stage.
+     * @param jobId         The identifier of the job owning the file.
+     * @param index         The position of the file in the job.
+     * @return The staged file.
+     * @throws IOException If an I/O error occurs during the copy.
+     */
+    public MultipartFile stageMultipartFile(MultipartFile multipartFile, String jobId, int index) throws IOException {
+        String filename = Objects.requireNonNull(multipartFile.getOriginalFilename());
+        Path file = stagedFile(jobId, index, filename);
+        Files.createDirectories(file.getParent());
+        multipartFile.transferTo(file.toAbsolutePath());
+        return new StagedMultipartFile(file, filename, multipartFile.getContentType());
+    }
+
+    /**
+     * Returns a file staged for a job by {@link #stageMultipartFile}, e.g. to resume the job after a restart.
+     *
+     * @param jobId       The identifier of the job owning the file.
+     * @param index       The position of the file in the job.
+     * @param filename    The original name of the file.
+     * @param contentType The content type of the upload.
+     * @return The staged file, or an empty optional if it no longer exists.
+     */
+    public Optional<MultipartFile> loadStagedFile(String jobId, int index, String filename, String contentType) {
+        Path file = stagedFile(jobId, index, filename);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(new StagedMultipartFile(file, filename, contentType));
+    }
+
+    /**
+     * Deletes the staging area of a job.
+     *
+     * @param jobId The identifier of the job.
+     * @throws StorageException If the staged files cannot be deleted.
+     */
+    public void deleteStagedFiles(String jobId) {
+        deleteRecursively(Path.of(storagePropertiesConfig.getLocation(), JOBS_DIRECTORY, jobId));
+    }
+
+    /**
+     * Deletes the staging areas of all jobs but the given ones, e.g. those left by jobs that were lost when the
+     * application stopped.
+     *
+     * @param jobIds The identifiers of the jobs whose staged files are kept.
+     * @throws StorageException If the staged files cannot be listed or deleted.
+     */
+    public void deleteStagedFilesExcept(Set<String> jobIds) {
+        Path directory = Path.of(storagePropertiesConfig.getLocation(), JOBS_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.filter(path -> !jobIds.contains(path.getFileName().toString()))
+                    .forEach(this::deleteRecursively);
         } catch (IOException e) {
-            throw new StorageException("Failed to read stored files", e);
+            throw new StorageException("Failed to list " + directory, e);
         }
     }
 
     /**
-     * Loads a file from the specified subdirectory as a Resource.
+     * Loads a stored file from the specified subdirectory.
      *
      * @param subdirectory The subdirectory of the file.
      * @param filename     The name of the file.
-     * @return The loaded file as a Resource object.
-     * @throws StorageFileNotFoundException If the file cannot be found or accessed.
+     * @return The path of the file.
+     * @throws StorageFileNotFoundException If the directory is unknown or the file cannot be found or read.
      */
-    public Resource loadAsResource(String subdirectory, String filename) {
+    public Path loadAsFile(String subdirectory, String filename) {
         try {
-            Path file = load(subdirectory, filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new StorageFileNotFoundException("Could not read file: " + filename);
-            }
-        } catch (MalformedURLException e) {
+            return storageBackend.getLocalFile(subdirectory, filename);
+        } catch (IOException e) {
             throw new StorageFileNotFoundException("Could not read file: " + filename, e);
         }
     }
 
-    private Path load(String subdirectory, String filename) {
-        Path subdirectoryPath = Path.of(storagePropertiesConfig.getLocation(), subdirectory);
-        return subdirectoryPath.resolve(filename);
+    /**
+     * Returns the attributes of a stored file.
+     *
+     * @param subdirectory The subdirectory of the file.
+     * @param filename     The name of the file.
+     * @return The stored file.
+     * @throws IOException                  If the attributes of the file cannot be read.
+     * @throws StorageFileNotFoundException If the directory is unknown or the file cannot be found.
+     */
+    public StoredObject stat(String subdirectory, String filename) throws IOException {
+        return storageBackend.stat(subdirectory, filename)
+                .orElseThrow(() -> new StorageFileNotFoundException("Could not read file: " + filename));
     }
 
-    private File convertMultipartFileToFile(MultipartFile multipartFile, String subdirectory) throws IOException {
-        File directory = new File(storagePropertiesConfig.getLocation(), subdirectory);
-        if (!directory.exists()) {
-            directory.mkdirs();
-        }
+    /**
+     * Opens a byte range of a stored file, streamed from the backend.
+     *
+     * @param subdirectory The subdirectory of the file.
+     * @param filename     The name of the file.
+     * @param start        The position of the first byte of the range.
+     * @param end          The position of the last byte of the range, inclusive.
+     * @return The stream of the range, which must be closed.
+     * @throws IOException                  If the file cannot be read.
+     * @throws StorageFileNotFoundException If the directory is unknown or the file cannot be found.
+     */
+    public InputStream openRange(String subdirectory, String filename, long start, long end) throws IOException {
+        return storageBackend.openRange(subdirectory, filename, start, end);
+    }
 
-        File file = new File(directory, Objects.requireNonNull(multipartFile.getOriginalFilename()));
-        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-            fileOutputStream.write(multipartFile.getBytes());
-        }
-        return file;
+    /**
+     * Returns a URL a stored file can be downloaded from without going through the application.
+     *
+     * @param subdirectory The subdirectory of the file.
+     * @param filename     The name of the file.
+     * @return The URL, or an empty optional if the file must be served by the application.
+     */
+    public Optional<URI> getDownloadUrl(String subdirectory, String filename) {
+        return storageBackend.getDownloadUrl(subdirectory, filename);
     }
 
-    private String encodeFileToBase64(File file) throws IOException {
-        byte[] bytes;
-        try (FileInputStream fileInputStream = new FileInputStream(file)) {
-            bytes = new byte[(int) file.length()];
-            fileInputStream.read(bytes);
+    /**
+     * Returns whether {@link #loadAsFile} returns the stored files themselves, rather than local copies that
+     * must first be downloaded.
+     *
+     * @return Whether the files are stored locally.
+     */
+    public boolean isLocal() {
+        return storageBackend.isLocal();
+    }
+
+    private void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new StorageException("Failed to delete " + directory, e);
         }
-        return new String(Base64.encodeBase64(bytes), StandardCharsets.UTF_8);
     }
 
-}
+    private Path stagedFile(String jobId, int index, String filename) {
+        return Path.of(storagePropertiesConfig.getLocation(), JOBS_DIRECTORY, jobId, String.valueOf(index))
+                .resolve(Path.of(filename).getFileName());
+    }
+
+    private Path stagingFile() throws IOException {
+        Path directory = storagePropertiesConfig.getStagingLocation();
+        Files.createDirectories(directory);
+        return directory.resolve(UUID.randomUUID().toString());
+    }
 
+    /**
+     * A file handed to the storage backend.
+     *
+     * @param name The name the file was stored under, which differs from the requested name if it was taken.
+     * @param file The local file holding its content.
+     */
+    public record StoredFile(String name, Path file) {
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.PreprocessingPropertiesConfig;
+import com.adtomiclabs.pebblely.config.PreprocessingPropertiesConfig.Preprocessing;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.PebblelyStageEnum;
+import com.adtomiclabs.pebblely.utils.ImageUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Service class normalizing uploaded images before they are sent to the Pebblely API.
+ * <p>
+ * Uploads are often much larger than what Pebblely needs, and every byte is sent Base64-encoded, a third larger
+ * again. Depending on the {@link PreprocessingPropertiesConfig configuration} of the operation, images are
+ * shrunk to a maximum dimension and re-encoded without metadata, possibly in another format. An image that is
+ * not shrunk and does not get smaller when re-encoded is sent as uploaded. The sizes before and after
+ * preprocessing are recorded by the {@link PebblelyMetricsService}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class ImagePreprocessingService {
+
+    private final PreprocessingPropertiesConfig preprocessingPropertiesConfig;
+    private final StoragePropertiesConfig storagePropertiesConfig;
+    private final PebblelyMetricsService metricsService;
+
+    /**
+     * Normalizes an uploaded image for the given operation.
+     *
+     * @param operation the Pebblely operation the image is sent to
+     * @param image     the uploaded image
+     * @return the image to send, either the given image or a temporary file that the caller must delete
+     * @throws IOException if the preprocessed image cannot be written
+     */
+    public Base64Image preprocess(PebblelyOperationEnum operation, Base64Image image) throws IOException {
+        Optional<Preprocessing> preprocessing = preprocessingPropertiesConfig.getPreprocessing(operation);
+        if (preprocessing.isEmpty() || image.getFile() == null) {
+            return image;
+        }
+        ImageFormatEnum format = preprocessing.get().getFormat() != null
+                ? ImageFormatEnum.fromName(preprocessing.get().getFormat())
+                : ImageFormatEnum.fromFilename(image.getFile().getFileName().toString()).orElse(ImageFormatEnum.PNG);
+        return normalize(operation, image.getFile(), preprocessing.get(), format)
+                .map(Base64Image::ofTemporaryFile)
+                .orElse(image);
+    }
+
+    /**
+     * Shrinks an inpainting mask to the dimensions its images are shrunk to, keeping it lossless. The mask is
+     * shared by a whole batch, so it is returned encoded rather than as a temporary file.
+     *
+     * @param operation the Pebblely operation the mask is sent to
+     * @param mask      the uploaded mask
+     * @return the mask to send
+     * @throws IOException if the mask cannot be read
+     */
+    public Base64Image preprocessMask(PebblelyOperationEnum operation, Base64Image mask) throws IOException {
+        Optional<Preprocessing> preprocessing = preprocessingPropertiesConfig.getPreprocessing(operation);
+        if (preprocessing.isEmpty() || preprocessing.get().getMaxDimension() == null || mask.getFile() == null) {
+            return mask;
+        }
+        Optional<Path> normalized = normalize(operation, mask.getFile(), preprocessing.get(), ImageFormatEnum.PNG);
+        if (normalized.isEmpty()) {
+            return mask;
+        }
+        try {
+            return Base64Image.of(Base64.getEncoder().encodeToString(Files.readAllBytes(normalized.get())));
+        } finally {
+            Files.deleteIfExists(normalized.get());
+        }
+    }
+
+    /**
+     * Writes the normalized copy of an image to the staging directory.
+     *
+     * @return the copy, or an empty optional if the image should be sent as uploaded
+     */
+    private Optional<Path> normalize(PebblelyOperationEnum operation, Path source, Preprocessing preprocessing,
+                                     ImageFormatEnum format) throws IOException {
+        long start = System.nanoTime();
+        long originalSize = Files.size(source);
+        int maxDimension = preprocessing.getMaxDimension() != null ? preprocessing.getMaxDimension() : Integer.MAX_VALUE;
+        BufferedImage image;
+        try (InputStream input = Files.newInputStream(source)) {
+            image = ImageUtils.read(input, maxDimension, maxDimension);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Sending {} as uploaded, it cannot be preprocessed. Error description: {}", source.getFileName(), e.getMessage());
+            return Optional.empty();
+        }
+
+        double scale = Math.min(1, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        boolean resized = scale < 1;
+        // JPEG writers reject transparent and indexed images, which are redrawn on white
+        boolean flattened = !format.isAlpha() && (image.getColorModel().hasAlpha() || image.getColorModel() instanceof IndexColorModel);
+        if (resized || flattened) {
+            image = ImageUtils.resize(image, Math.max(1, (int) Math.round(image.getWidth() * scale)),
+                    Math.max(1, (int) Math.round(image.getHeight() * scale)), format);
+        }
+        Files.createDirectories(storagePropertiesConfig.getStagingLocation());
+        Path temporary = Files.createTempFile(storagePropertiesConfig.getStagingLocation(), "preprocessed-", "." + format.getExtension());
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                ImageUtils.write(image, format, preprocessing.getJpegQuality(), output);
+            }
+            long preprocessedSize = Files.size(temporary);
+            if (!resized && preprocessedSize >= originalSize) {
+                Files.delete(temporary);
+                metricsService.recordPreprocessedBytes(operation, originalSize, originalSize);
+                return Optional.empty();
+            }
+            metricsService.recordPreprocessedBytes(operation, originalSize, preprocessedSize);
+            LOG.debug("Preprocessed {} for {}: {} bytes reduced to {} bytes", source.getFileName(), operation.getName(),
+                    originalSize, preprocessedSize);
+            return Optional.of(temporary);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        } finally {
+            metricsService.recordStage(operation, PebblelyStageEnum.PREPROCESS, System.nanoTime() - start);
+        }
+    }
+
+}
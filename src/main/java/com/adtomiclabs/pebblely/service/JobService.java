@@ -0,0 +1,420 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.JobPropertiesConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.JobJournalEntry;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.request.JobRequestDto;
+import com.adtomiclabs.pebblely.model.response.FileResultDto;
+import com.adtomiclabs.pebblely.model.response.FileStatusEnum;
+import com.adtomiclabs.pebblely.model.response.JobDto;
+import com.adtomiclabs.pebblely.model.response.JobStatusEnum;
+import com.adtomiclabs.pebblely.utils.JobJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for running file batches as asynchronous jobs.
+ * <p>
+ * Uploads are staged to the storage before the job is accepted, so the request thread is released as soon as
+ * the files are on disk. The job is then processed in the background by {@link BatchExecutionService} and its
+ * progress can be queried until the configured retention expires.
+ * <p>
+ * The submission, start and completion of each job and the start and completion of each of its files are
+ * recorded in a {@link JobJournal} under the storage location. A job is only accepted once its submission is on disk, and a
+ * file only counts as completed once its result is. On startup, the journal is replayed: completed jobs can be
+ * queried again, and unfinished jobs are resumed with the files that were queued or in progress once the
+ * application is ready, so that no Pebblely call is issued by an application that is still starting or failed to
+ * start.
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    private final FileStorageService fileStorageService;
+    private final FileProcessingService fileProcessingService;
+    private final BatchExecutionService batchExecutionService;
+    private final JobPropertiesConfig jobPropertiesConfig;
+
+    private final Map<String, JobDto> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final JobJournal journal;
+
+    // The unfinished jobs found in the journal, resumed once the application is ready
+    private final List<Runnable> resumptions = new ArrayList<>();
+
+    private volatile boolean stopping;
+
+    /**
+     * Creates the job service, its pool of job runners and its journal.
+     *
+     * @param fileStorageService      the service used to stage the uploads
+     * @param fileProcessingService   the service building the task of each job
+     * @param batchExecutionService   the service processing the files of each job
+     * @param jobPropertiesConfig     the job configuration
+     * @param storagePropertiesConfig the storage configuration, locating the journal
+     * @param objectMapper            the mapper serializing the journal entries
+     */
+    public JobService(FileStorageService fileStorageService, FileProcessingService fileProcessingService, BatchExecutionService batchExecutionService,
+                      JobPropertiesConfig jobPropertiesConfig, StoragePropertiesConfig storagePropertiesConfig, ObjectMapper objectMapper) {
+        this.fileStorageService = fileStorageService;
+        this.fileProcessingService = fileProcessingService;
+        this.batchExecutionService = batchExecutionService;
+        this.jobPropertiesConfig = jobPropertiesConfig;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, jobPropertiesConfig.getConcurrency()), new CustomizableThreadFactory("job-"));
+        this.journal = jobPropertiesConfig.isJournalEnabled()
+                ? new JobJournal(storagePropertiesConfig.getJobJournalLocation(), objectMapper,
+                jobPropertiesConfig.getJournalCompactionThreshold(), jobPropertiesConfig.getRetention())
+                : null;
+    }
+
+    /**
+     * Replays the journal, restoring the jobs still retained and queueing the unfinished ones for
+     * {@link #resumeUnfinishedJobs()}, and deletes the staged files of the jobs that cannot be resumed.
+     */
+    @PostConstruct
+    public void recover() {
+        Map<String, List<JobJournalEntry>> journaled = journal != null ? journal.open() : Map.of();
+        Set<String> unfinished = new HashSet<>();
+        journaled.forEach((id, entries) -> {
+            JobDto job = restore(entries);
+            jobs.put(id, job);
+            if (job.getStatus() != JobStatusEnum.COMPLETED) {
+                unfinished.add(id);
+                resumptions.add(() -> resume(job, entries.get(0)));
+            }
+        });
+        fileStorageService.deleteStagedFilesExcept(unfinished);
+    }
+
+    /**
+     * Resumes the unfinished jobs found in the journal, once the application, its web server and its schedulers
+     * included, has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeUnfinishedJobs() {
+        if (!resumptions.isEmpty()) {
+            LOG.info("Resuming {} unfinished jobs", resumptions.size());
+        }
+        resumptions.forEach(Runnable::run);
+        resumptions.clear();
+    }
+
+    /**
+     * Stages the given files and queues a job applying the operation to each of them.
+     *
+     * @param operation      the Pebblely operation of the job, the operation of the last step for pipelines
+     * @param multipartFiles the uploaded files
+     * @param request        the parameters of the job
+     * @return a snapshot of the queued job
+     * @throws IOException              if the files cannot be staged or the job cannot be journaled
+     * @throws IllegalArgumentException if the parameters do not describe a valid job
+     */
+    public JobDto submit(PebblelyOperationEnum operation, List<MultipartFile> multipartFiles, JobRequestDto request) throws IOException {
+        BatchExecutionService.BatchTask task = fileProcessingService.task(operation, request);
+        evictExpiredJobs();
+        String id = UUID.randomUUID().toString();
+        List<MultipartFile> stagedFiles = new ArrayList<>(multipartFiles.size());
+        List<FileResultDto> results = new ArrayList<>(multipartFiles.size());
+        List<JobJournalEntry.JournaledFile> journaledFiles = new ArrayList<>(multipartFiles.size());
+        JobDto job = JobDto.builder()
+                .id(id)
+                .operation(operation.getName())
+                .status(JobStatusEnum.QUEUED)
+                .submittedAt(Instant.now())
+                .files(results)
+                .build();
+        try {
+            for (int i = 0; i < multipartFiles.size(); i++) {
+                MultipartFile stagedFile = fileStorageService.stageMultipartFile(multipartFiles.get(i), id, i);
+                stagedFiles.add(stagedFile);
+                results.add(FileResultDto.builder()
+                        .filename(stagedFile.getOriginalFilename())
+                        .status(FileStatusEnum.QUEUED)
+                        .build());
+                journaledFiles.add(new JobJournalEntry.JournaledFile(stagedFile.getOriginalFilename(), stagedFile.getContentType()));
+            }
+            await(append(JobJournalEntry.builder()
+                    .type(JobJournalEntry.Type.SUBMITTED)
+                    .jobId(id)
+                    .timestamp(job.getSubmittedAt())
+                    .operation(operation.getName())
+                    .request(request)
+                    .files(journaledFiles)
+                    .build()));
+        } catch (IOException e) {
+            fileStorageService.deleteStagedFiles(id);
+            throw e;
+        }
+
+        jobs.put(id, job);
+        List<Integer> indexes = new ArrayList<>(stagedFiles.size());
+        for (int i = 0; i < stagedFiles.size(); i++) {
+            indexes.add(i);
+        }
+        executor.execute(() -> run(job, operation, indexes, stagedFiles, task));
+        return snapshot(job);
+    }
+
+    /**
+     * Returns the current state of a job.
+     *
+     * @param id the job identifier
+     * @return a snapshot of the job, or an empty optional if the job is unknown or has expired
+     */
+    public Optional<JobDto> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(this::snapshot);
+    }
+
+    /**
+     * Stops the job runners, interrupting the jobs in progress, and closes the journal. The interrupted files are
+     * not journaled as completed, so that they are processed again on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        executor.shutdownNow();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Rebuilds a job from its journal entries. Files that were in progress are queued again.
+     */
+    private JobDto restore(List<JobJournalEntry> entries) {
+        JobJournalEntry submitted = entries.get(0);
+        List<FileResultDto> results = submitted.getFiles().stream()
+                .map(file -> FileResultDto.builder()
+                        .filename(file.getFilename())
+                        .status(FileStatusEnum.QUEUED)
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new));
+        JobDto job = JobDto.builder()
+                .id(submitted.getJobId())
+                .operation(submitted.getOperation())
+                .status(JobStatusEnum.QUEUED)
+                .submittedAt(submitted.getTimestamp())
+                .files(results)
+                .build();
+        for (JobJournalEntry entry : entries.subList(1, entries.size())) {
+            switch (entry.getType()) {
+                case STARTED:
+                    job.setStatus(JobStatusEnum.RUNNING);
+                    job.setStartedAt(entry.getTimestamp());
+                    break;
+                case FILE_COMPLETED:
+                    results.set(entry.getIndex(), entry.getResult());
+                    break;
+                case COMPLETED:
+                    job.setStatus(JobStatusEnum.COMPLETED);
+                    job.setCompletedAt(entry.getTimestamp());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Queues an unfinished job again with the files it had not completed.
+     */
+    private void resume(JobDto job, JobJournalEntry submitted) {
+        PebblelyOperationEnum operation = PebblelyOperationEnum.fromName(job.getOperation());
+        BatchExecutionService.BatchTask task;
+        try {
+            task = fileProcessingService.task(operation, submitted.getRequest());
+        } catch (Exception e) {
+            LOG.error("Job {} cannot be resumed. Error description: {}", job.getId(), e.getMessage());
+            for (int i = 0; i < job.getFiles().size(); i++) {
+                if (!isDone(job.getFiles().get(i))) {
+                    fail(job, i, "The job could not be resumed: " + e.getMessage());
+                }
+            }
+            complete(job);
+            return;
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<MultipartFile> stagedFiles = new ArrayList<>();
+        for (int i = 0; i < job.getFiles().size(); i++) {
+            if (isDone(job.getFiles().get(i))) {
+                continue;
+            }
+            JobJournalEntry.JournaledFile file = submitted.getFiles().get(i);
+            Optional<MultipartFile> stagedFile = fileStorageService.loadStagedFile(job.getId(), i, file.getFilename(), file.getContentType());
+            if (stagedFile.isPresent()) {
+                indexes.add(i);
+                stagedFiles.add(stagedFile.get());
+            } else {
+                fail(job, i, "The staged file was lost");
+            }
+        }
+        executor.execute(() -> run(job, operation, indexes, stagedFiles, task));
+    }
+
+    /**
+     * Processes the given files of a job.
+     *
+     * @param indexes     the position in the job of each file to process
+     * @param stagedFiles the files to process
+     */
+    private void run(JobDto job, PebblelyOperationEnum operation, List<Integer> indexes, List<MultipartFile> stagedFiles, BatchExecutionService.BatchTask task) {
+        boolean started;
+        synchronized (job) {
+            job.setStatus(JobStatusEnum.RUNNING);
+            started = job.getStartedAt() == null;
+            if (started) {
+                job.setStartedAt(Instant.now());
+            }
+        }
+        if (started) {
+            append(JobJournalEntry.builder()
+                    .type(JobJournalEntry.Type.STARTED)
+                    .jobId(job.getId())
+                    .timestamp(job.getStartedAt())
+                    .build());
+        }
+        try {
+            batchExecutionService.execute(operation, stagedFiles, task, new BatchExecutionService.BatchListener() {
+
+                @Override
+                public void fileStarted(int index) {
+                    synchronized (job) {
+                        job.getFiles().get(indexes.get(index)).setStatus(FileStatusEnum.RUNNING);
+                    }
+                    // Files in progress are processed again whether their start is journaled or not
+                    append(JobJournalEntry.builder()
+                            .type(JobJournalEntry.Type.FILE_STARTED)
+                            .jobId(job.getId())
+                            .timestamp(Instant.now())
+                            .index(indexes.get(index))
+                            .build());
+                }
+
+                @Override
+                public void fileCompleted(int index, FileResultDto result) {
+                    synchronized (job) {
+                        job.getFiles().set(indexes.get(index), result);
+                    }
+                    if (!stopping || result.getStatus() == FileStatusEnum.SUCCEEDED) {
+                        awaitQuietly(job, completion(job, indexes.get(index), result));
+                    }
+                }
+
+            });
+        } catch (Exception e) {
+            LOG.error("Job {} failed. Error description: {}", job.getId(), e.getMessage());
+        } finally {
+            if (!stopping) {
+                complete(job);
+            }
+        }
+    }
+
+    private void fail(JobDto job, int index, String error) {
+        FileResultDto result = FileResultDto.builder()
+                .filename(job.getFiles().get(index).getFilename())
+                .status(FileStatusEnum.FAILED)
+                .error(error)
+                .build();
+        synchronized (job) {
+            job.getFiles().set(index, result);
+        }
+        awaitQuietly(job, completion(job, index, result));
+    }
+
+    /**
+     * Marks a job as completed and deletes its staged files once the completion is journaled.
+     */
+    private void complete(JobDto job) {
+        Instant completedAt = Instant.now();
+        awaitQuietly(job, append(JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.COMPLETED)
+                .jobId(job.getId())
+                .timestamp(completedAt)
+                .build()));
+        fileStorageService.deleteStagedFiles(job.getId());
+        synchronized (job) {
+            job.setStatus(JobStatusEnum.COMPLETED);
+            job.setCompletedAt(completedAt);
+        }
+    }
+
+    private CompletableFuture<Void> completion(JobDto job, int index, FileResultDto result) {
+        return append(JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.FILE_COMPLETED)
+                .jobId(job.getId())
+                .timestamp(Instant.now())
+                .index(index)
+                .result(result.toBuilder().build())
+                .build());
+    }
+
+    private CompletableFuture<Void> append(JobJournalEntry entry) {
+        return journal != null ? journal.append(entry) : CompletableFuture.completedFuture(null);
+    }
+
+    private static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.join();
+        } catch (Exception e) {
+            throw new IOException("Failed to journal the job", e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    private static void awaitQuietly(JobDto job, CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (Exception e) {
+            LOG.warn("Failed to journal the progress of job {}. Error description: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private static boolean isDone(FileResultDto result) {
+        return result.getStatus() == FileStatusEnum.SUCCEEDED || result.getStatus() == FileStatusEnum.FAILED;
+    }
+
+    private JobDto snapshot(JobDto job) {
+        synchronized (job) {
+            return job.toBuilder()
+                    .files(job.getFiles().stream()
+                            .map(file -> file.toBuilder().build())
+                            .toList())
+                    .build();
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant threshold = Instant.now().minus(jobPropertiesConfig.getRetention());
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.getCompletedAt() != null && job.getCompletedAt().isBefore(threshold);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.PebblelyStageEnum;
+import com.adtomiclabs.pebblely.utils.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class recording the Micrometer metrics of the Pebblely calls and batches, tagged by operation.
+ * <p>
+ * The meters are exposed on {@code /actuator/metrics} and {@code /actuator/prometheus}:
+ * <ul>
+ *     <li>{@code pebblely.api.requests}: latency of the API calls, tagged by outcome and exception type;</li>
+ *     <li>{@code pebblely.api.errors}: failed API calls, tagged by exception type;</li>
+ *     <li>{@code pebblely.api.request.bytes} and {@code pebblely.api.response.bytes}: bytes sent and received;</li>
+ *     <li>{@code pebblely.stage.duration}: time spent in each {@link PebblelyStageEnum stage} of a request;</li>
+ *     <li>{@code pebblely.preprocessing.bytes}: size of the uploaded images before and after preprocessing;</li>
+ *     <li>{@code pebblely.credits.consumed}: decreases of the balance reported by the API, tagged with the
+ *     operation of the call when it ran alone and as {@code unattributed} otherwise;</li>
+ *     <li>{@code pebblely.batch.size}: number of files of each batch;</li>
+ *     <li>{@code pebblely.concurrency.limit} and {@code pebblely.concurrency.in-flight}: current concurrency limit
+ *     and running calls of each endpoint.</li>
+ * </ul>
+ * Timers publish a percentile histogram along with the median, 95th and 99th percentiles.
+ */
+@RequiredArgsConstructor
+@Service
+public class PebblelyMetricsService {
+
+    private static final String OPERATION_TAG = "operation";
+    private static final String UNATTRIBUTED = "unattributed";
+    private static final String STAGE_TAG = "stage";
+    private static final String OUTCOME_TAG = "outcome";
+    private static final String EXCEPTION_TAG = "exception";
+    private static final String NO_EXCEPTION = "none";
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Starts timing an API call.
+     *
+     * @return the sample to hand to {@link #requestCompleted}
+     */
+    public Timer.Sample startRequest() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the latency of an API call and, if it failed, its error.
+     *
+     * @param operation the Pebblely operation
+     * @param sample    the sample returned by {@link #startRequest()}
+     * @param error     the error of the call, or {@code null} if it succeeded
+     */
+    public void requestCompleted(PebblelyOperationEnum operation, Timer.Sample sample, Throwable error) {
+        String exception = error != null ? error.getClass().getSimpleName() : NO_EXCEPTION;
+        sample.stop(Timer.builder("pebblely.api.requests")
+                .description("Latency of the Pebblely API calls")
+                .tag(OPERATION_TAG, operation.getName())
+                .tag(OUTCOME_TAG, error != null ? "error" : "success")
+                .tag(EXCEPTION_TAG, exception)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        if (error != null) {
+            Counter.builder("pebblely.api.errors")
+                    .description("Failed Pebblely API calls")
+                    .tag(OPERATION_TAG, operation.getName())
+                    .tag(EXCEPTION_TAG, exception)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Records the time spent in a stage of a request.
+     *
+     * @param operation the Pebblely operation
+     * @param stage     the stage
+     * @param nanos     the time spent in the stage, in nanoseconds
+     */
+    public void recordStage(PebblelyOperationEnum operation, PebblelyStageEnum stage, long nanos) {
+        Timer.builder("pebblely.stage.duration")
+                .description("Time spent in each stage of the Pebblely requests")
+                .tag(OPERATION_TAG, operation.getName())
+                .tag(STAGE_TAG, stage.getName())
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the size of a request body sent to the API.
+     *
+     * @param operation the Pebblely operation
+     * @param bytes     the size of the body as sent, in bytes
+     */
+    public void recordRequestBytes(PebblelyOperationEnum operation, long bytes) {
+        countBytes("pebblely.api.request.bytes", "Bytes sent to the Pebblely API", operation, bytes);
+    }
+
+    /**
+     * Records the size of a response body received from the API.
+     *
+     * @param operation the Pebblely operation
+     * @param bytes     the size of the body as received, in bytes
+     */
+    public void recordResponseBytes(PebblelyOperationEnum operation, long bytes) {
+        countBytes("pebblely.api.response.bytes", "Bytes received from the Pebblely API", operation, bytes);
+    }
+
+    /**
+     * Records the size of an uploaded image before and after it was preprocessed.
+     *
+     * @param operation         the Pebblely operation
+     * @param originalBytes     the size of the uploaded image, in bytes
+     * @param preprocessedBytes the size of the image as sent, in bytes
+     */
+    public void recordPreprocessedBytes(PebblelyOperationEnum operation, long originalBytes, long preprocessedBytes) {
+        preprocessingSummary(operation, "original").record(originalBytes);
+        preprocessingSummary(operation, "preprocessed").record(preprocessedBytes);
+    }
+
+    /**
+     * Records credits consumed by Pebblely calls.
+     *
+     * @param operation the Pebblely operation that consumed them, or {@code null} if it is unknown
+     * @param credits   the number of consumed credits
+     */
+    public void recordCreditsConsumed(PebblelyOperationEnum operation, int credits) {
+        Counter.builder("pebblely.credits.consumed")
+                .description("Pebblely credits consumed")
+                .tag(OPERATION_TAG, operation != null ? operation.getName() : UNATTRIBUTED)
+                .register(meterRegistry)
+                .increment(credits);
+    }
+
+    /**
+     * Records the number of files of a batch.
+     *
+     * @param operation the Pebblely operation
+     * @param size      the number of files
+     */
+    public void recordBatchSize(PebblelyOperationEnum operation, int size) {
+        DistributionSummary.builder("pebblely.batch.size")
+                .description("Number of files of the Pebblely batches")
+                .baseUnit("files")
+                .tag(OPERATION_TAG, operation.getName())
+                .register(meterRegistry)
+                .record(size);
+    }
+
+    /**
+     * Publishes the current limit and running calls of the concurrency limiter of an endpoint.
+     *
+     * @param operation the Pebblely operation
+     * @param limiter   the concurrency limiter of its endpoint
+     */
+    public void registerConcurrencyLimiter(PebblelyOperationEnum operation, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("pebblely.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current concurrency limit of the Pebblely endpoints")
+                .tag(OPERATION_TAG, operation.getName())
+                .register(meterRegistry);
+        Gauge.builder("pebblely.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Running calls of the Pebblely endpoints")
+                .tag(OPERATION_TAG, operation.getName())
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary preprocessingSummary(PebblelyOperationEnum operation, String image) {
+        return DistributionSummary.builder("pebblely.preprocessing.bytes")
+                .description("Size of the uploaded images before and after preprocessing")
+                .baseUnit(BaseUnits.BYTES)
+                .tag(OPERATION_TAG, operation.getName())
+                .tag("image", image)
+                .register(meterRegistry);
+    }
+
+    private void countBytes(String name, String description, PebblelyOperationEnum operation, long bytes) {
+        Counter.builder(name)
+                .description(description)
+                .baseUnit(BaseUnits.BYTES)
+                .tag(OPERATION_TAG, operation.getName())
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+}
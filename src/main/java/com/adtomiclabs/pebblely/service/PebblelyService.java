@@ -1,34 +1,44 @@
 package com.adtomiclabs.pebblely.service;
 
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
 import com.adtomiclabs.pebblely.model.request.*;
 import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
 import com.adtomiclabs.pebblely.exception.PebblelyException;
 import com.adtomiclabs.pebblely.feign.PebblelyApi;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Service class calling the Pebblely API.
+ * <p>
+ * Identical transformation requests that are in flight at the same time are coalesced: the first caller invokes
+ * the API and the others wait for its response, each receiving its own copy of the resulting image. The credits
+ * balance reported by each response is recorded in the {@link CreditsService}, and every call to the API is
+ * recorded by the {@link PebblelyMetricsService}.
+ */
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class PebblelyService {
 
     private final PebblelyApi api;
+    private final RequestDigestService requestDigestService;
+    private final CreditsService creditsService;
+    private final PebblelyMetricsService metricsService;
 
-    /**
-     * Retrieves the available credits from the Pebblely API.
-     *
-     * @return the number of available credits
-     * @throws PebblelyException if an error occurs while retrieving the credits
-     */
-    public int getCredits() throws PebblelyException {
-        try {
-            return api.getCredits().getCredits();
-        } catch (Exception exception) {
-            LOG.error("Pebblely API error - Credits. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Credits", exception);
-        }
-    }
+    private final ConcurrentMap<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
 
     /**
      * Upscales an image using the Pebblely API.
@@ -38,12 +48,7 @@ public class PebblelyService {
      * @throws PebblelyException if an error occurs while upscaling the image
      */
     public PebblelyResponseDto upscale(UpscaleDto upscaleDto) throws PebblelyException {
-        try {
-            return api.upscale(upscaleDto);
-        } catch (Exception exception) {
-            LOG.error("Pebblely API error - Upscale. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Upscale", exception);
-        }
+        return call(PebblelyOperationEnum.UPSCALE, upscaleDto, "Upscale", () -> api.upscale(upscaleDto));
     }
 
     /**
@@ -54,12 +59,7 @@ public class PebblelyService {
      * @throws PebblelyException if an error occurs while removing the background
      */
     public PebblelyResponseDto removeBackground(ImageDto imageDto) throws PebblelyException {
-        try {
-            return api.removeBackground(imageDto);
-        } catch (Exception exception) {
-            LOG.error("Pebblely API error - Remove Background. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Remove Background", exception);
-        }
+        return call(PebblelyOperationEnum.REMOVE_BACKGROUND, imageDto, "Remove Background", () -> api.removeBackground(imageDto));
     }
 
     /**
@@ -70,12 +70,7 @@ public class PebblelyService {
      * @throws PebblelyException if an error occurs while creating the background
      */
     public PebblelyResponseDto createBackground(CreateBackgroundDto createBackgroundDto) throws PebblelyException {
-        try {
-            return api.createBackground(createBackgroundDto);
-        } catch (Exception exception) {
-            LOG.error("Pebblely API error - Create Background. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Create Background", exception);
-        }
+        return call(PebblelyOperationEnum.CREATE_BACKGROUND, createBackgroundDto, "Create Background", () -> api.createBackground(createBackgroundDto));
     }
 
     /**
@@ -86,12 +81,7 @@ public class PebblelyService {
      * @throws PebblelyException if an error occurs while inpainting the image
      */
     public PebblelyResponseDto inpaint(InpaintDto inpaintDto) throws PebblelyException {
-        try {
-            return api.inpaint(inpaintDto);
-        } catch (Exception exception) {
-            LOG.error("Pebblely API error - Inpaint. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Inpaint", exception);
-        }
+        return call(PebblelyOperationEnum.INPAINT, inpaintDto, "Inpaint", () -> api.inpaint(inpaintDto));
     }
 
     /**
@@ -102,12 +92,105 @@ public class PebblelyService {
      * @throws PebblelyException if an error occurs while outpainting the image
      */
     public PebblelyResponseDto outpaint(OutpaintDto outpaintDto) throws PebblelyException {
+        return call(PebblelyOperationEnum.OUTPAINT, outpaintDto, "Outpaint", () -> api.outpaint(outpaintDto));
+    }
+
+    /**
+     * Invokes the API, or joins the identical request already in flight.
+     * <p>
+     * Followers register under the map lock, and the leader unregisters the request under the same lock before
+     * reading their count, so it duplicates the response exactly once per follower before releasing them. This
+     * lets every caller move its temporary response file to its own destination.
+     */
+    private PebblelyResponseDto call(PebblelyOperationEnum operation, Object request, String description,
+                                     Supplier<PebblelyResponseDto> invocation) throws PebblelyException {
+        String key = requestDigestService.digest(operation, request);
+        InFlightRequest candidate = new InFlightRequest();
+        InFlightRequest inFlightRequest = inFlightRequests.compute(key, (k, existing) -> existing == null ? candidate : existing.join());
+        if (inFlightRequest != candidate) {
+            LOG.debug("Joining in-flight Pebblely request - {}", description);
+            return inFlightRequest.await();
+        }
+
+        PebblelyResponseDto response;
+        CreditsService.Call call = creditsService.startCall(operation);
+        Timer.Sample sample = metricsService.startRequest();
         try {
-            return api.outpaint(outpaintDto);
+            response = invocation.get();
         } catch (Exception exception) {
-            LOG.error("Pebblely API error - Outpaint. Error description: {}", exception.getMessage());
-            throw new PebblelyException("Pebblely API error - Outpaint", exception);
+            inFlightRequests.remove(key);
+            creditsService.callFailed(call);
+            metricsService.requestCompleted(operation, sample, exception);
+            LOG.error("Pebblely API error - {}. Error description: {}", description, exception.getMessage());
+            PebblelyException pebblelyException = new PebblelyException("Pebblely API error - " + description, exception);
+            inFlightRequest.result.completeExceptionally(pebblelyException);
+            throw pebblelyException;
+        }
+        inFlightRequests.remove(key);
+        metricsService.requestCompleted(operation, sample, null);
+        if (response != null) {
+            creditsService.update(call, response.getCredits());
+        } else {
+            creditsService.callFailed(call);
         }
+        inFlightRequest.complete(response, description);
+        return response;
+    }
+
+    private static PebblelyResponseDto duplicate(PebblelyResponseDto response) throws IOException {
+        if (response == null) {
+            return null;
+        }
+        Base64Image data = response.getData();
+        return new PebblelyResponseDto(data != null ? data.duplicate() : null, response.getCredits());
+    }
+
+    /**
+     * A request in flight, handing one copy of its response to each follower.
+     */
+    private static final class InFlightRequest {
+
+        private final CompletableFuture<Queue<PebblelyResponseDto>> result = new CompletableFuture<>();
+
+        // Guarded by the lock of the in-flight map entry
+        private int followers;
+
+        private InFlightRequest join() {
+            followers++;
+            return this;
+        }
+
+        private void complete(PebblelyResponseDto response, String description) {
+            if (response == null) {
+                result.complete(null);
+                return;
+            }
+            Queue<PebblelyResponseDto> copies = new ConcurrentLinkedQueue<>();
+            try {
+                for (int i = 0; i < followers; i++) {
+                    copies.add(duplicate(response));
+                }
+            } catch (IOException exception) {
+                LOG.error("Failed to share Pebblely response - {}. Error description: {}", description, exception.getMessage());
+                copies.stream()
+                        .map(PebblelyResponseDto::getData)
+                        .filter(data -> data != null && data.isTemporary())
+                        .forEach(data -> data.getFile().toFile().delete());
+                result.completeExceptionally(new PebblelyException("Pebblely API error - " + description, exception));
+                return;
+            }
+            result.complete(copies);
+        }
+
+        private PebblelyResponseDto await() throws PebblelyException {
+            try {
+                Queue<PebblelyResponseDto> copies = result.join();
+                return copies != null ? copies.remove() : null;
+            } catch (CompletionException exception) {
+                throw (PebblelyException) exception.getCause();
+            }
+        }
+
     }
 
 }
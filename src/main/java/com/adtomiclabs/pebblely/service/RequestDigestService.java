@@ -0,0 +1,95 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Service class computing content digests of Pebblely requests.
+ * <p>
+ * Two requests have the same digest when they target the same operation with the same parameters and the same
+ * image bytes, whether the images are file-backed or already encoded. Images contribute the memoized digest of
+ * their raw content instead of being Base64-encoded, so each image is read at most once.
+ */
+@Service
+public class RequestDigestService {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private final ObjectWriter writer;
+
+    /**
+     * Creates the digest service.
+     *
+     * @param objectMapper the application object mapper, used to serialize the request parameters
+     */
+    public RequestDigestService(ObjectMapper objectMapper) {
+        this.writer = objectMapper.copy()
+                .addMixIn(Base64Image.class, ContentDigestMixIn.class)
+                .writer();
+    }
+
+    /**
+     * Computes the digest of a request.
+     *
+     * @param operation the Pebblely operation
+     * @param request   the request DTO
+     * @return the hex-encoded SHA-256 digest
+     * @throws StorageException if an image of the request cannot be read
+     */
+    public String digest(PebblelyOperationEnum operation, Object request) {
+        MessageDigest messageDigest = newMessageDigest();
+        messageDigest.update(operation.getName().getBytes(StandardCharsets.UTF_8));
+        messageDigest.update((byte) 0);
+        try (OutputStream outputStream = new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest)) {
+            writer.writeValue(outputStream, request);
+        } catch (IOException e) {
+            throw new StorageException("Failed to compute the digest of a " + operation.getName() + " request", e);
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    private MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    @JsonSerialize(using = ContentDigestSerializer.class)
+    private abstract static class ContentDigestMixIn {
+    }
+
+    /**
+     * Writes an image as the digest of its decoded content.
+     */
+    private static class ContentDigestSerializer extends StdSerializer<Base64Image> {
+
+        ContentDigestSerializer() {
+            super(Base64Image.class);
+        }
+
+        @Override
+        public void serialize(Base64Image image, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeString(image.getContentDigest());
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.CachePropertiesConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.utils.DiskLruCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Service class caching the results of Pebblely calls on local disk.
+ * <p>
+ * Results are keyed by the digest of the operation and the full request, including every image, so a request
+ * identical to a previous one can be answered with a file copy instead of a round-trip to the Pebblely API.
+ */
+@Slf4j
+@Service
+public class ResultCacheService {
+
+    private final RequestDigestService requestDigestService;
+    private final DiskLruCache cache;
+
+    /**
+     * Creates the result cache, indexing the results already cached on disk.
+     *
+     * @param requestDigestService    the service computing the cache keys
+     * @param storagePropertiesConfig the storage configuration holding the cache location
+     * @param cachePropertiesConfig   the cache configuration
+     * @param meterRegistry           the registry exposing the cache counters
+     */
+    public ResultCacheService(RequestDigestService requestDigestService, StoragePropertiesConfig storagePropertiesConfig,
+                              CachePropertiesConfig cachePropertiesConfig, MeterRegistry meterRegistry) {
+        this.requestDigestService = requestDigestService;
+        this.cache = cachePropertiesConfig.isEnabled()
+                ? new DiskLruCache(storagePropertiesConfig.getCacheLocation(), cachePropertiesConfig.getMaxSize().toBytes())
+                : null;
+        if (cache != null) {
+            FunctionCounter.builder("pebblely.cache.requests", cache, c -> c.getHits().get())
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("pebblely.cache.requests", cache, c -> c.getMisses().get())
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+            FunctionCounter.builder("pebblely.cache.evictions", cache, c -> c.getEvictions().get())
+                    .register(meterRegistry);
+            Gauge.builder("pebblely.cache.size", cache, DiskLruCache::getSize)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Computes the cache key of a request.
+     *
+     * @param operation the Pebblely operation
+     * @param request   the request DTO
+     * @return the cache key, or {@code null} if the cache is disabled
+     */
+    public String key(PebblelyOperationEnum operation, Object request) {
+        return cache != null ? requestDigestService.digest(operation, request) : null;
+    }
+
+    /**
+     * Looks up the cached result of a request.
+     *
+     * @param key the cache key
+     * @return the cached result file, or an empty optional on a miss
+     */
+    public Optional<Path> lookup(String key) {
+        return key != null ? cache.get(key) : Optional.empty();
+    }
+
+    /**
+     * Caches the result of a request. Failures are logged and otherwise ignored, as the result has already
+     * been stored.
+     *
+     * @param key    the cache key
+     * @param result the result file
+     */
+    public void store(String key, Path result) {
+        if (key == null || result == null) {
+            return;
+        }
+        try {
+            cache.put(key, result);
+        } catch (IOException e) {
+            LOG.warn("Failed to cache result {}. Error description: {}", result, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return cache != null ? cache.getHits().get() : 0;
+    }
+
+    /**
+     * Returns the number of requests that were not found in the cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return cache != null ? cache.getMisses().get() : 0;
+    }
+
+}
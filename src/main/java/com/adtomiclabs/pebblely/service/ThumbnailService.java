@@ -0,0 +1,205 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import com.adtomiclabs.pebblely.utils.DiskLruCache;
+import com.adtomiclabs.pebblely.utils.ImageUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class producing resized copies of the stored images, such as the gallery previews.
+ * <p>
+ * Copies are kept in a size-bounded {@link DiskLruCache}, keyed by the source file, its version, the width and
+ * the format, so a rewritten file never gets a stale copy. Concurrent requests for the same missing copy wait
+ * for a single generation. Large sources are subsampled while they are decoded, so a preview of a
+ * multi-megapixel upscale never holds the full image in memory. The gallery preview of every Pebblely result
+ * can be generated in the background as soon as the result is stored.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    private static final int EAGER_QUEUE_SIZE = 256;
+
+    private final ThumbnailPropertiesConfig thumbnailPropertiesConfig;
+    private final StoragePropertiesConfig storagePropertiesConfig;
+    private final FileStorageService fileStorageService;
+    private final DiskLruCache cache;
+
+    private final ConcurrentMap<String, CompletableFuture<Path>> generations = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor eagerExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(EAGER_QUEUE_SIZE), new CustomizableThreadFactory("thumbnail-"),
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    /**
+     * Creates the thumbnail service, indexing the copies already cached on disk.
+     *
+     * @param thumbnailPropertiesConfig the thumbnail configuration
+     * @param storagePropertiesConfig   the storage configuration holding the cache location
+     * @param fileStorageService        the storage of the images generated eagerly
+     * @param meterRegistry             the registry exposing the cache counters
+     */
+    public ThumbnailService(ThumbnailPropertiesConfig thumbnailPropertiesConfig, StoragePropertiesConfig storagePropertiesConfig,
+                            FileStorageService fileStorageService, MeterRegistry meterRegistry) {
+        this.thumbnailPropertiesConfig = thumbnailPropertiesConfig;
+        this.storagePropertiesConfig = storagePropertiesConfig;
+        this.fileStorageService = fileStorageService;
+        this.cache = new DiskLruCache(storagePropertiesConfig.getThumbnailLocation(), thumbnailPropertiesConfig.getMaxSize().toBytes());
+        FunctionCounter.builder("pebblely.thumbnails.requests", cache, c -> c.getHits().get())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("pebblely.thumbnails.requests", cache, c -> c.getMisses().get())
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("pebblely.thumbnails.evictions", cache, c -> c.getEvictions().get())
+                .register(meterRegistry);
+        Gauge.builder("pebblely.thumbnails.size", cache, DiskLruCache::getSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a resized copy of a stored image, generating it if it is not cached.
+     *
+     * @param source  the stored image
+     * @param version the version of the stored image, see {@link FileServingService#version}
+     * @param width   the width of the copy, or {@code null} to keep the width of the source. Sources narrower
+     *                than the requested width are never enlarged.
+     * @param format  the format of the copy
+     * @return the cached copy
+     * @throws IOException              if the source cannot be read or the copy cannot be written
+     * @throws IllegalArgumentException if the width is out of bounds or the source is not a readable image
+     */
+    public Path getThumbnail(Path source, String version, Integer width, ImageFormatEnum format) throws IOException {
+        if (width != null && (width < 1 || width > thumbnailPropertiesConfig.getMaxWidth())) {
+            throw new IllegalArgumentException("Width must be between 1 and " + thumbnailPropertiesConfig.getMaxWidth());
+        }
+        String key = key(source, version, width, format);
+        Optional<Path> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        CompletableFuture<Path> generation = new CompletableFuture<>();
+        CompletableFuture<Path> existing = generations.putIfAbsent(key, generation);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            generation.complete(generate(key, source, width, format));
+        } catch (IOException | RuntimeException e) {
+            generation.completeExceptionally(e);
+        } finally {
+            generations.remove(key);
+        }
+        return await(generation);
+    }
+
+    /**
+     * Generates the gallery preview of a stored image in the background. Previews that cannot be generated,
+     * or that do not fit in the queue of pending previews, are generated when they are first requested.
+     *
+     * @param subdirectory the subdirectory of the stored image
+     * @param filename     the name of the stored image
+     */
+    public void generateEagerly(String subdirectory, String filename) {
+        if (!thumbnailPropertiesConfig.isEnabled() || !thumbnailPropertiesConfig.isEager()) {
+            return;
+        }
+        eagerExecutor.execute(() -> {
+            try {
+                StoredObject stored = fileStorageService.stat(subdirectory, filename);
+                getThumbnail(fileStorageService.loadAsFile(subdirectory, filename),
+                        FileServingService.version(stored.getSize(), stored.getLastModified()),
+                        thumbnailPropertiesConfig.getGalleryWidth(), ImageFormatEnum.JPEG);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Failed to generate the preview of {}. Error description: {}", filename, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops generating previews in the background.
+     */
+    @PreDestroy
+    public void shutdown() {
+        eagerExecutor.shutdownNow();
+    }
+
+    private Path generate(String key, Path source, Integer width, ImageFormatEnum format) throws IOException {
+        BufferedImage image;
+        try (InputStream input = Files.newInputStream(source)) {
+            image = ImageUtils.read(input, width != null ? width : Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a readable image: " + source.getFileName(), e);
+        }
+        int targetWidth = width != null ? Math.min(width, image.getWidth()) : image.getWidth();
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * (double) targetWidth / image.getWidth()));
+        BufferedImage resized = ImageUtils.resize(image, targetWidth, targetHeight, format);
+
+        Files.createDirectories(storagePropertiesConfig.getStagingLocation());
+        Path temporary = Files.createTempFile(storagePropertiesConfig.getStagingLocation(), "thumbnail-", "." + format.getExtension());
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                ImageUtils.write(resized, format, thumbnailPropertiesConfig.getJpegQuality(), output);
+            }
+            return cache.put(key, temporary);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static String key(Path source, String version, Integer width, ImageFormatEnum format) {
+        String description = source.toAbsolutePath().normalize() + "\n" + version + "\n" + width + "\n" + format.getName();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(description.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> generation) throws IOException {
+        try {
+            return generation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+}
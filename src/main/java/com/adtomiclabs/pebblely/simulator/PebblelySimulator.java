@@ -0,0 +1,301 @@
+package com.adtomiclabs.pebblely.simulator;
+
+import com.adtomiclabs.pebblely.config.SimulatorPropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.utils.ImageUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.FastByteArrayOutputStream;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in for the Pebblely API, serving every endpoint of {@link PebblelyOperationEnum} over HTTP on the
+ * loopback interface.
+ * <p>
+ * Transformations drain their request body and answer, after a latency drawn from the configured distribution,
+ * with a noise PNG of the configured size, so that responses are as large as real ones and can still be read as
+ * images. Rate limiting is simulated at random and by caps on the calls per second and on the concurrent calls,
+ * answering {@code 429} with a {@code Retry-After} header, and server errors are injected at random. The
+ * simulator runs on its own, e.g. from a test, or with the application when {@code pebblely.simulator.enabled}
+ * is set.
+ */
+@Slf4j
+public class PebblelySimulator {
+
+    private static final String ACCESS_TOKEN_HEADER = "X-Pebblely-Access-Token";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String GZIP = "gzip";
+    private static final int[] SERVER_ERROR_STATUSES = {500, 502, 503};
+    // Standard normal quantile of the 99th percentile
+    private static final double Z_99 = 2.3263;
+    private static final int BACKLOG = 128;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final SimulatorPropertiesConfig simulatorPropertiesConfig;
+
+    private final Map<Long, byte[]> encodedImages = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger credits;
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+
+    // Guarded by this
+    private double tokens;
+    private long refilledAt;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates the simulator, which does not listen until it is started.
+     *
+     * @param simulatorPropertiesConfig the port, payload sizes, latencies and failures of the simulator
+     */
+    public PebblelySimulator(SimulatorPropertiesConfig simulatorPropertiesConfig) {
+        this.simulatorPropertiesConfig = simulatorPropertiesConfig;
+        this.credits = new AtomicInteger(simulatorPropertiesConfig.getCredits());
+        this.tokens = simulatorPropertiesConfig.getMaxRequestsPerSecond();
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Starts listening on the configured port.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "pebblely-simulator-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), simulatorPropertiesConfig.getPort()), BACKLOG);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Pebblely API simulator listening on {}", getBaseUrl());
+    }
+
+    /**
+     * Stops listening and aborts the calls in progress.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Returns the URL the Pebblely client should call instead of the Pebblely API.
+     *
+     * @return the base URL of the simulator
+     * @throws IllegalStateException if the simulator is not started
+     */
+    public String getBaseUrl() {
+        if (server == null) {
+            throw new IllegalStateException("The Pebblely API simulator is not started");
+        }
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of responses sent with the given status since the simulator was created.
+     *
+     * @param status the HTTP status
+     * @return the number of responses
+     */
+    public long getResponseCount(int status) {
+        LongAdder count = responses.get(status);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Returns the remaining credits balance.
+     *
+     * @return the credits
+     */
+    public int getCredits() {
+        return credits.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Optional<PebblelyOperationEnum> operation = PebblelyOperationEnum.fromEndpoint(exchange.getRequestURI().getPath());
+            drain(exchange);
+            if (operation.isEmpty()) {
+                sendError(exchange, 404, "Not found");
+            } else if (exchange.getRequestHeaders().getFirst(ACCESS_TOKEN_HEADER) == null) {
+                sendError(exchange, 401, "Missing access token");
+            } else if (operation.get() == PebblelyOperationEnum.CREDITS) {
+                send(exchange, 200, ("{\"credits\":" + credits.get() + "}").getBytes(StandardCharsets.UTF_8));
+            } else if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed");
+            } else {
+                transform(exchange, operation.get());
+            }
+        }
+    }
+
+    private void transform(HttpExchange exchange, PebblelyOperationEnum operation) throws IOException {
+        long throttled = throttle();
+        if (throttled > 0) {
+            sendRateLimited(exchange, Duration.ofNanos(throttled));
+            return;
+        }
+        int maxConcurrentRequests = simulatorPropertiesConfig.getMaxConcurrentRequests();
+        if (concurrentRequests.incrementAndGet() > maxConcurrentRequests && maxConcurrentRequests > 0) {
+            concurrentRequests.decrementAndGet();
+            sendRateLimited(exchange, simulatorPropertiesConfig.getRetryAfter());
+            return;
+        }
+        try {
+            if (ThreadLocalRandom.current().nextDouble() < simulatorPropertiesConfig.getRateLimitRate()) {
+                sendRateLimited(exchange, simulatorPropertiesConfig.getRetryAfter());
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(latency(simulatorPropertiesConfig.getLatency(operation)).toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503, "Simulator stopped");
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < simulatorPropertiesConfig.getServerErrorRate()) {
+                sendError(exchange, SERVER_ERROR_STATUSES[ThreadLocalRandom.current().nextInt(SERVER_ERROR_STATUSES.length)],
+                        "Simulated server error");
+                return;
+            }
+            byte[] image = encodedImage(simulatorPropertiesConfig.getResponseSize(operation).toBytes());
+            byte[] prefix = "{\"data\":\"".getBytes(StandardCharsets.US_ASCII);
+            byte[] suffix = ("\",\"credits\":" + credits.updateAndGet(balance -> Math.max(0, balance - 1)) + "}").getBytes(StandardCharsets.US_ASCII);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, (long) prefix.length + image.length + suffix.length);
+            count(200);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(prefix);
+                outputStream.write(image);
+                outputStream.write(suffix);
+            }
+        } finally {
+            concurrentRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a token from the bucket refilled with the allowed calls per second.
+     *
+     * @return 0 if the call is allowed, else the nanoseconds until the next token
+     */
+    private synchronized long throttle() {
+        int maxRequestsPerSecond = simulatorPropertiesConfig.getMaxRequestsPerSecond();
+        if (maxRequestsPerSecond <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(maxRequestsPerSecond, tokens + (now - refilledAt) * maxRequestsPerSecond / 1e9);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * 1e9 / maxRequestsPerSecond);
+    }
+
+    /**
+     * Draws the latency of a simulated call.
+     *
+     * @param latency the distribution of the latency
+     * @return the latency
+     */
+    public static Duration latency(SimulatorPropertiesConfig.Latency latency) {
+        Duration median = latency.getMedian();
+        if (latency.getDistribution() == SimulatorPropertiesConfig.Distribution.FIXED || median.isZero()
+                || latency.getP99().compareTo(median) <= 0) {
+            return median;
+        }
+        double sigma = Math.log((double) latency.getP99().toNanos() / median.toNanos()) / Z_99;
+        return Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+    }
+
+    /**
+     * Returns a Base64-encoded noise PNG of about the given size, generated once per size. Noise does not
+     * compress, so the PNG is about three bytes per pixel.
+     */
+    private byte[] encodedImage(long size) {
+        return encodedImages.computeIfAbsent(size, key -> {
+            int side = (int) Math.max(1, Math.ceil(Math.sqrt((double) size / BYTES_PER_PIXEL)));
+            BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+            Random random = new Random(size);
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    image.setRGB(x, y, random.nextInt());
+                }
+            }
+            FastByteArrayOutputStream outputStream = new FastByteArrayOutputStream();
+            try {
+                ImageUtils.write(image, ImageFormatEnum.PNG, 1, outputStream);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to generate the simulated image", e);
+            }
+            return Base64.getEncoder().encode(outputStream.toByteArrayUnsafe());
+        });
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        Collection<String> encodings = exchange.getRequestHeaders().get(CONTENT_ENCODING_HEADER);
+        InputStream inputStream = exchange.getRequestBody();
+        if (encodings != null && encodings.stream().anyMatch(GZIP::equalsIgnoreCase)) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        inputStream.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private void sendRateLimited(HttpExchange exchange, Duration retryAfter) throws IOException {
+        exchange.getResponseHeaders().set(RETRY_AFTER_HEADER, String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        sendError(exchange, 429, "Too many requests");
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, ("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        count(status);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private void count(int status) {
+        responses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+}
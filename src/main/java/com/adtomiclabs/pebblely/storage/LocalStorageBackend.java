@@ -0,0 +1,554 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link StorageBackend} keeping the files on the local file system, fanned out by a random id.
+ * <p>
+ * Every stored file gets its own random id and is stored as {@code <directory>/ab/cd/<id>.<extension>}, so that
+ * no directory holds more than a few hundred entries however many files are stored. The name of each file and its
+ * id are recorded in a manifest per directory, appended to on every new or deleted name and replayed at startup,
+ * which lets a file be found by its name and the files be listed without walking the shards. A file stored under
+ * a name that is already taken is given the next free {@link StorageNames#variant variant} of it, so it never
+ * replaces another file. The manifest is compacted when it has grown to twice the number of live names. Like the
+ * stored files, it is not synced on every write, so it survives a crash of the application but not of the host.
+ * <p>
+ * A name is recorded once its file is in place and removed before its file is deleted, so a crash leaves at
+ * worst a file no name points to. The files are therefore not checked at startup: a name whose file is missing,
+ * e.g. because it was deleted by hand, is dropped from the manifest when reading the file fails.
+ * <p>
+ * Regular files found directly in a storage directory, e.g. those of the flat layout of earlier versions, are
+ * moved into their shard at startup. The directories are then watched so that files dropped there later, which
+ * should be moved into place rather than written in place, are imported as well.
+ */
+@Slf4j
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final String MANIFEST_FILE = ".manifest";
+    private static final String COMPACTION_SUFFIX = ".compact";
+    private static final String TEMPORARY_PREFIX = ".";
+    private static final char ADDED = '+';
+    private static final char DELETED = '-';
+    private static final char ID_SEPARATOR = ' ';
+    private static final long MIN_COMPACTION_LINES = 1024;
+    private static final Pattern EXTENSION = Pattern.compile("[A-Za-z0-9]{1,10}");
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{32}");
+
+    private final Path root;
+
+    private final Map<String, Directory> directories = new LinkedHashMap<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<WatchKey, Directory> watchKeys = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+
+    /**
+     * Creates a backend storing the given directories under a root folder, which is not read until the backend is
+     * started.
+     *
+     * @param root        the storage location
+     * @param directories the storage directory names
+     */
+    public LocalStorageBackend(Path root, List<String> directories) {
+        this.root = root.toAbsolutePath().normalize();
+        directories.forEach(name -> this.directories.put(name, new Directory(name, this.root.resolve(name))));
+    }
+
+    /**
+     * Loads the manifests, imports the files found directly in the storage directories and starts watching them.
+     *
+     * @throws StorageException if a directory cannot be created, loaded or imported
+     */
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Files dropped in the storage directories will not be imported. Error description: {}", e.getMessage());
+        }
+        for (Directory directory : directories.values()) {
+            try {
+                Files.createDirectories(directory.path);
+                directory.open();
+                if (watchService != null) {
+                    // Registered before the import so that no file falls between the two
+                    watchKeys.put(directory.path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY), directory);
+                }
+            } catch (IOException e) {
+                throw new StorageException("Failed to open storage directory " + directory.path, e);
+            }
+            importFiles(directory);
+        }
+        if (watchService != null) {
+            Thread watcher = new Thread(this::watch, "storage-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Stops watching the storage directories and closes the manifests.
+     */
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the storage watcher. Error description: {}", e.getMessage());
+            }
+        }
+        directories.values().forEach(Directory::close);
+    }
+
+    @Override
+    public StoredObject put(String directory, String name, Path source) throws IOException {
+        Directory storageDirectory = directory(directory);
+        StorageNames.validate(name);
+        String id = StorageNames.newId();
+        Path file = storageDirectory.path.resolve(relativePath(id, name));
+        Files.createDirectories(file.getParent());
+        move(source, file, id);
+        String storedName;
+        try {
+            // Recorded once the file is in place so that a name of the manifest always has its file
+            storedName = storageDirectory.add(name, id);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        StoredObject object = toStoredObject(directory, storedName, id, Files.readAttributes(file, BasicFileAttributes.class));
+        listeners.forEach(listener -> listener.stored(object));
+        return object;
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String directory, String name) throws IOException {
+        Directory storageDirectory = directory(directory);
+        String id = StorageNames.isValid(name) ? storageDirectory.ids.get(name) : null;
+        return id != null ? stat(storageDirectory, name, id) : Optional.empty();
+    }
+
+    @Override
+    public Path getLocalFile(String directory, String name) throws IOException {
+        Directory storageDirectory = directory(directory);
+        String id = StorageNames.isValid(name) ? storageDirectory.ids.get(name) : null;
+        if (id == null) {
+            throw new StorageFileNotFoundException("Could not read file: " + name);
+        }
+        Path file = storageDirectory.path.resolve(relativePath(id, name));
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            if (Files.notExists(file)) {
+                prune(storageDirectory, name, id);
+            }
+            throw new StorageFileNotFoundException("Could not read file: " + name);
+        }
+        return file;
+    }
+
+    @Override
+    public InputStream openRange(String directory, String name, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(getLocalFile(directory, name), StandardOpenOption.READ);
+        return new BoundedInputStream(Channels.newInputStream(channel.position(start)), end - start + 1);
+    }
+
+    @Override
+    public Optional<URI> getDownloadUrl(String directory, String name) {
+        directory(directory);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public boolean delete(String directory, String name) throws IOException {
+        Directory storageDirectory = directory(directory);
+        if (!StorageNames.isValid(name)) {
+            return false;
+        }
+        // Removed from the manifest first so that a name of the manifest always has its file
+        String id = storageDirectory.remove(name);
+        if (id == null) {
+            return false;
+        }
+        Files.deleteIfExists(storageDirectory.path.resolve(relativePath(id, name)));
+        listeners.forEach(listener -> listener.deleted(directory, name));
+        return true;
+    }
+
+    @Override
+    public Stream<StoredObject> list(String directory) {
+        Directory storageDirectory = directory(directory);
+        return Map.copyOf(storageDirectory.ids).entrySet().stream()
+                .map(entry -> {
+                    try {
+                        return stat(storageDirectory, entry.getKey(), entry.getValue());
+                    } catch (IOException e) {
+                        LOG.debug("Skipping unreadable file {} of {}", entry.getKey(), directory);
+                        return Optional.<StoredObject>empty();
+                    }
+                })
+                .flatMap(Optional::stream);
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the path of a file relative to its storage directory, which keeps the extension of its name so that
+     * the file can still be recognized by type.
+     */
+    private static String relativePath(String id, String name) {
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot + 1) : "";
+        String fileName = EXTENSION.matcher(extension).matches() ? id + "." + extension.toLowerCase(Locale.ROOT) : id;
+        return id.substring(0, 2) + "/" + id.substring(2, 4) + "/" + fileName;
+    }
+
+    private Directory directory(String name) {
+        Directory directory = directories.get(name);
+        if (directory == null) {
+            throw new StorageFileNotFoundException("Unknown directory: " + name);
+        }
+        return directory;
+    }
+
+    private Optional<StoredObject> stat(Directory storageDirectory, String name, String id) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(storageDirectory.path.resolve(relativePath(id, name)), BasicFileAttributes.class);
+            return Optional.of(toStoredObject(storageDirectory.name, name, id, attributes));
+        } catch (NoSuchFileException e) {
+            prune(storageDirectory, name, id);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Drops a name whose file is missing, unless the name was stored again or deleted in the meantime.
+     */
+    private void prune(Directory storageDirectory, String name, String id) {
+        try {
+            if (storageDirectory.remove(name, id)) {
+                LOG.warn("Dropped file {} of {}, which is missing", name, storageDirectory.name);
+                listeners.forEach(listener -> listener.deleted(storageDirectory.name, name));
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to drop missing file {} of {}. Error description: {}", name, storageDirectory.name, e.getMessage());
+        }
+    }
+
+    private static void move(Path source, Path target, String id) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The source lies on another file system, so it is copied next to the target first
+            Path temporary = target.resolveSibling(TEMPORARY_PREFIX + id + "-" + System.nanoTime());
+            try {
+                Files.copy(source, temporary, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            Files.delete(source);
+        }
+    }
+
+    private static StoredObject toStoredObject(String directory, String name, String id, BasicFileAttributes attributes) {
+        return StoredObject.builder()
+                .directory(directory)
+                .name(name)
+                .id(id)
+                .size(attributes.size())
+                .lastModified(attributes.lastModifiedTime().toInstant())
+                .build();
+    }
+
+    private void importFiles(Directory directory) {
+        try (Stream<Path> paths = Files.list(directory.path)) {
+            paths.forEach(path -> importFile(directory, path));
+        } catch (IOException e) {
+            throw new StorageException("Failed to import files of " + directory.path, e);
+        }
+    }
+
+    private void importFile(Directory directory, Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".") || !Files.isRegularFile(path)) {
+            return;
+        }
+        try {
+            put(directory.name, name, path);
+            LOG.debug("Imported file {} into {}", name, directory.name);
+        } catch (NoSuchFileException e) {
+            // Moved or deleted in the meantime
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Failed to import file {}. Error description: {}", path, e.getMessage());
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+            Directory directory = watchKeys.get(key);
+            if (directory != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        importFiles(directory);
+                    } else {
+                        importFile(directory, directory.path.resolve(event.context().toString()));
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchKeys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A storage directory, with the ids of its files by name and the manifest recording them. Changes of the names
+     * are serialized so that the manifest appends them in the order they apply, while reads go through the
+     * concurrent map without locking.
+     */
+    private static final class Directory {
+
+        private final String name;
+        private final Path path;
+        private final Path manifest;
+        private final Map<String, String> ids = new ConcurrentHashMap<>();
+
+        private FileChannel channel;
+        private long lines;
+
+        private Directory(String name, Path path) {
+            this.name = name;
+            this.path = path;
+            this.manifest = path.resolve(MANIFEST_FILE);
+        }
+
+        private synchronized void open() throws IOException {
+            boolean clean = load();
+            if (!clean || lines > Math.max(MIN_COMPACTION_LINES, 2L * ids.size())) {
+                compact();
+            } else {
+                channel = FileChannel.open(manifest, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+        }
+
+        /**
+         * Replays the manifest, skipping unreadable lines.
+         *
+         * @return whether every line could be read, the last one included
+         */
+        private boolean load() throws IOException {
+            if (!Files.exists(manifest)) {
+                return true;
+            }
+            boolean clean = true;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(manifest), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    try {
+                        int separator = line.indexOf(ID_SEPARATOR);
+                        String fileName = URLDecoder.decode(line.substring(1, separator >= 0 ? separator : line.length()), StandardCharsets.UTF_8);
+                        switch (line.charAt(0)) {
+                            case ADDED:
+                                // Lines written before files had their own id point to the hash of the name
+                                ids.put(fileName, separator >= 0 ? id(line.substring(separator + 1)) : StorageNames.hash(fileName));
+                                break;
+                            case DELETED:
+                                ids.remove(fileName);
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Unknown change " + line.charAt(0));
+                        }
+                    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                        LOG.warn("Skipping unreadable line {} of manifest {}", lines, manifest);
+                        clean = false;
+                    }
+                }
+            }
+            try (FileChannel reader = FileChannel.open(manifest, StandardOpenOption.READ)) {
+                // A last line torn by a crash would otherwise be continued by the next change
+                ByteBuffer last = ByteBuffer.allocate(1);
+                if (reader.size() > 0 && (reader.read(last, reader.size() - 1) != 1 || last.get(0) != '\n')) {
+                    clean = false;
+                }
+            }
+            return clean;
+        }
+
+        /**
+         * Records a file under the first free variant of its name.
+         *
+         * @return the name the file is recorded under
+         */
+        private synchronized String add(String fileName, String id) throws IOException {
+            String storedName = fileName;
+            for (int variant = 1; ids.containsKey(storedName); variant++) {
+                storedName = StorageNames.variant(fileName, variant);
+            }
+            ids.put(storedName, id);
+            try {
+                append(line(ADDED, storedName, id));
+            } catch (IOException e) {
+                ids.remove(storedName);
+                throw e;
+            }
+            return storedName;
+        }
+
+        /**
+         * Removes a name.
+         *
+         * @return the id of the removed file, or {@code null} if there was no file of that name
+         */
+        private synchronized String remove(String fileName) throws IOException {
+            String id = ids.remove(fileName);
+            if (id != null) {
+                append(line(DELETED, fileName, null));
+            }
+            return id;
+        }
+
+        /**
+         * Removes a name if it still holds the given file.
+         *
+         * @return whether the name was removed
+         */
+        private synchronized boolean remove(String fileName, String id) throws IOException {
+            if (!ids.remove(fileName, id)) {
+                return false;
+            }
+            append(line(DELETED, fileName, null));
+            return true;
+        }
+
+        private void append(byte[] change) throws IOException {
+            if (channel == null) {
+                throw new StorageException("Storage directory " + name + " is closed");
+            }
+            ByteBuffer line = ByteBuffer.wrap(change);
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            lines++;
+            if (lines > Math.max(MIN_COMPACTION_LINES, 2L * ids.size())) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    LOG.warn("Failed to compact manifest {}. Error description: {}", manifest, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Rewrites the manifest with the live names into a new file, which atomically replaces the manifest once
+         * synced.
+         */
+        private void compact() throws IOException {
+            Path compacted = manifest.resolveSibling(MANIFEST_FILE + COMPACTION_SUFFIX);
+            try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(compactedChannel))) {
+                for (Map.Entry<String, String> entry : ids.entrySet()) {
+                    outputStream.write(line(ADDED, entry.getKey(), entry.getValue()));
+                }
+                outputStream.flush();
+                compactedChannel.force(true);
+            }
+            Files.move(compacted, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+
+            if (channel != null) {
+                channel.close();
+            }
+            channel = FileChannel.open(manifest, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            lines = ids.size();
+        }
+
+        private void syncDirectory() {
+            try (FileChannel directory = FileChannel.open(path, StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException e) {
+                // Directories cannot be synced on every platform
+                LOG.debug("Failed to sync storage directory {}. Error description: {}", path, e.getMessage());
+            }
+        }
+
+        private synchronized void close() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to close manifest {}. Error description: {}", manifest, e.getMessage());
+            }
+        }
+
+        private static byte[] line(char change, String fileName, String id) {
+            String line = change + URLEncoder.encode(fileName, StandardCharsets.UTF_8) + (id != null ? ID_SEPARATOR + id : "");
+            return (line + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String id(String id) {
+            if (!ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("Invalid id " + id);
+            }
+            return id;
+        }
+
+    }
+
+}
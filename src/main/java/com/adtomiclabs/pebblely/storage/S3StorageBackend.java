@@ -0,0 +1,525 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import com.adtomiclabs.pebblely.utils.DiskLruCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link StorageBackend} keeping the files in an S3-compatible object store, so that they are shared by every
+ * instance of the application.
+ * <p>
+ * A file is stored as the object {@code <key-prefix><directory>/<name>}. A file stored under a name that is
+ * already taken is given the first variant of it whose object does not exist. Names being uploaded by this
+ * instance are reserved until their upload completes, but another instance uploading the same name at the same
+ * time may still replace the object, since the object store offers no conditional write.
+ * <p>
+ * Files larger than the part size are uploaded as a multipart upload whose parts are read from the file and sent
+ * in parallel, so an upload never holds more than the buffers of the HTTP client in memory, and small files are
+ * sent in a single request.
+ * <p>
+ * Local copies of the objects, needed to read them as images or send them to the Pebblely API, are kept in a
+ * size-bounded {@link DiskLruCache} keyed by the ETag of the object, so a file written by another instance is
+ * downloaded again. The file of an upload becomes the local copy of its object, which is therefore never
+ * downloaded by the instance that wrote it, and is returned without a request to the object store for as long as
+ * it is cached and the object is not seen replaced or deleted by the polling. The local copies of the objects
+ * written elsewhere are checked against the ETag of the object first. Downloads are either redirected to
+ * presigned URLs or streamed from the requested range of the object.
+ * <p>
+ * The files written by other instances are picked up by listing the bucket periodically and notifying the
+ * listeners of the differences with the previous listing.
+ */
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String DIRECTORY_SEPARATOR = "/";
+
+    private final S3Client s3Client;
+
+    private final S3Presigner s3Presigner;
+
+    private final StoragePropertiesConfig.S3 properties;
+
+    private final Path stagingLocation;
+
+    private final List<String> directories;
+
+    private final DiskLruCache localCopies;
+
+    private final ExecutorService partExecutor;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // The files of each directory as last seen by this instance, to notify the changes made by the others
+    private final Map<String, Map<String, KnownObject>> knownObjects = new HashMap<>();
+
+    // The keys being uploaded by this instance, so that concurrent uploads of the same name get different variants
+    private final Set<String> reservedKeys = ConcurrentHashMap.newKeySet();
+
+    // The ETags of the objects uploaded by this instance, keyed by object key, to find their local copies
+    private final Map<String, String> uploadedETags = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a backend storing the given directories in the configured bucket, which is not accessed until the
+     * backend is started. The clients are closed with the backend.
+     *
+     * @param s3Client                the client of the object store
+     * @param s3Presigner             the presigner of the download URLs
+     * @param storagePropertiesConfig the storage configuration holding the object store properties and the
+     *                                location of the local copies
+     * @param directories             the storage directory names
+     */
+    public S3StorageBackend(S3Client s3Client, S3Presigner s3Presigner, StoragePropertiesConfig storagePropertiesConfig,
+                            List<String> directories) {
+        this.s3Client = s3Client;
+        this.s3Presigner = s3Presigner;
+        this.properties = storagePropertiesConfig.getS3();
+        this.stagingLocation = storagePropertiesConfig.getStagingLocation();
+        this.directories = List.copyOf(directories);
+        this.localCopies = new DiskLruCache(storagePropertiesConfig.getObjectCacheLocation(), properties.getLocalCacheMaxSize().toBytes());
+        this.partExecutor = Executors.newFixedThreadPool(properties.getUploadConcurrency(), new CustomizableThreadFactory("s3-upload-"));
+        directories.forEach(directory -> knownObjects.put(directory, new HashMap<>()));
+    }
+
+    /**
+     * Checks that the bucket can be accessed and starts polling it for the files written by other instances.
+     *
+     * @throws StorageException if the bucket cannot be accessed
+     */
+    public void start() {
+        try {
+            s3Client.headBucket(request -> request.bucket(properties.getBucket()));
+        } catch (SdkException e) {
+            throw new StorageException("Failed to access bucket " + properties.getBucket(), e);
+        }
+        if (properties.getPollInterval().isZero()) {
+            return;
+        }
+        poll();
+        long interval = properties.getPollInterval().toMillis();
+        poller = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("s3-poller-"));
+        poller.scheduleWithFixedDelay(this::pollSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling the bucket and uploading parts, and closes the clients.
+     */
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        partExecutor.shutdownNow();
+        s3Presigner.close();
+        s3Client.close();
+    }
+
+    @Override
+    public StoredObject put(String directory, String name, Path source) throws IOException {
+        checkDirectory(directory);
+        StorageNames.validate(name);
+        String storedName = reserve(directory, name);
+        String key = key(directory, storedName);
+        HeadObjectResponse head;
+        try {
+            long size = Files.size(source);
+            String contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+            try {
+                if (size <= properties.getPartSize().toBytes()) {
+                    s3Client.putObject(request -> request.bucket(properties.getBucket()).key(key).contentType(contentType),
+                            RequestBody.fromFile(source));
+                } else {
+                    uploadParts(key, contentType, source, size);
+                }
+            } catch (SdkException e) {
+                throw new IOException("Failed to upload " + key, e);
+            }
+            head = head(key).orElseThrow(() -> new IOException("Uploaded object " + key + " is missing"));
+        } finally {
+            reservedKeys.remove(key);
+        }
+        keepLocalCopy(directory, storedName, head.eTag(), source);
+
+        StoredObject object = toStoredObject(directory, storedName, key, head.contentLength(), head.lastModified());
+        record(directory, storedName, object);
+        listeners.forEach(listener -> listener.stored(object));
+        return object;
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String directory, String name) throws IOException {
+        checkDirectory(directory);
+        if (!StorageNames.isValid(name)) {
+            return Optional.empty();
+        }
+        String key = key(directory, name);
+        return head(key).map(head -> toStoredObject(directory, name, key, head.contentLength(), head.lastModified()));
+    }
+
+    @Override
+    public Path getLocalFile(String directory, String name) throws IOException {
+        checkDirectory(directory);
+        if (!StorageNames.isValid(name)) {
+            throw notFound(name);
+        }
+        String key = key(directory, name);
+        String uploadedETag = uploadedETags.get(key);
+        if (uploadedETag != null) {
+            Optional<Path> uploaded = localCopies.get(cacheKey(directory, name, uploadedETag));
+            if (uploaded.isPresent()) {
+                return uploaded.get();
+            }
+            uploadedETags.remove(key, uploadedETag);
+        }
+        HeadObjectResponse head = head(key).orElseThrow(() -> notFound(name));
+        String cacheKey = cacheKey(directory, name, head.eTag());
+        Optional<Path> cached = localCopies.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        Path temporary = stagingFile();
+        try {
+            // Streamed to disk, and only if the object was not replaced since its ETag was read
+            s3Client.getObject(request -> request.bucket(properties.getBucket()).key(key).ifMatch(head.eTag()),
+                    ResponseTransformer.toFile(temporary));
+            return localCopies.move(cacheKey, temporary);
+        } catch (NoSuchKeyException e) {
+            throw notFound(name);
+        } catch (SdkException e) {
+            throw new IOException("Failed to download " + key, e);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String directory, String name, long start, long end) throws IOException {
+        checkDirectory(directory);
+        if (!StorageNames.isValid(name)) {
+            throw notFound(name);
+        }
+        String key = key(directory, name);
+        try {
+            return s3Client.getObject(request -> request.bucket(properties.getBucket()).key(key).range("bytes=" + start + "-" + end));
+        } catch (NoSuchKeyException e) {
+            throw notFound(name);
+        } catch (SdkException e) {
+            throw new IOException("Failed to download " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<URI> getDownloadUrl(String directory, String name) {
+        checkDirectory(directory);
+        if (!properties.isPresignedDownloads() || !StorageNames.isValid(name)) {
+            return Optional.empty();
+        }
+        String contentDisposition = ContentDisposition.attachment().filename(name).build().toString();
+        URI url;
+        try {
+            url = s3Presigner.presignGetObject(presign -> presign
+                    .signatureDuration(properties.getPresignedUrlExpiry())
+                    .getObjectRequest(request -> request.bucket(properties.getBucket()).key(key(directory, name))
+                            .responseContentDisposition(contentDisposition)))
+                    .url().toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid presigned URL of " + name, e);
+        }
+        return Optional.of(url);
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    @Override
+    public boolean delete(String directory, String name) throws IOException {
+        checkDirectory(directory);
+        if (!StorageNames.isValid(name)) {
+            return false;
+        }
+        String key = key(directory, name);
+        uploadedETags.remove(key);
+        boolean existed = head(key).isPresent();
+        try {
+            s3Client.deleteObject(request -> request.bucket(properties.getBucket()).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete " + key, e);
+        }
+        record(directory, name, null);
+        if (existed) {
+            listeners.forEach(listener -> listener.deleted(directory, name));
+        }
+        return existed;
+    }
+
+    @Override
+    public Stream<StoredObject> list(String directory) {
+        checkDirectory(directory);
+        String prefix = properties.getKeyPrefix() + directory + DIRECTORY_SEPARATOR;
+        return s3Client.listObjectsV2Paginator(request -> request.bucket(properties.getBucket()).prefix(prefix))
+                .contents().stream()
+                .filter(object -> object.key().indexOf(DIRECTORY_SEPARATOR, prefix.length()) < 0)
+                .map(object -> toStoredObject(directory, object.key().substring(prefix.length()), object.key(),
+                        object.size(), object.lastModified()));
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private void uploadParts(String key, String contentType, Path source, long size) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(request -> request.bucket(properties.getBucket()).key(key).contentType(contentType))
+                .uploadId();
+        long partSize = properties.getPartSize().toBytes();
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>(partCount);
+        try {
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                long length = Math.min(partSize, size - offset);
+                parts.add(CompletableFuture.supplyAsync(() -> uploadPart(key, uploadId, partNumber, source, offset, length), partExecutor));
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(partCount);
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+            s3Client.completeMultipartUpload(request -> request.bucket(properties.getBucket()).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(completedParts)));
+        } catch (CompletionException | SdkException e) {
+            parts.forEach(part -> part.cancel(true));
+            abort(key, uploadId);
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("Failed to upload " + key, cause);
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, Path source, long offset, long length) {
+        UploadPartResponse response = s3Client.uploadPart(
+                request -> request.bucket(properties.getBucket()).key(key).uploadId(uploadId).partNumber(partNumber).contentLength(length),
+                RequestBody.fromContentProvider(() -> openPart(source, offset, length), length, MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .build();
+    }
+
+    private static InputStream openPart(Path source, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+            return new BoundedInputStream(Channels.newInputStream(channel.position(offset)), length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(request -> request.bucket(properties.getBucket()).key(key).uploadId(uploadId));
+        } catch (SdkException e) {
+            LOG.warn("Failed to abort the upload of {}. Error description: {}", key, e.getMessage());
+        }
+    }
+
+    private Optional<HeadObjectResponse> head(String key) throws IOException {
+        try {
+            return Optional.of(s3Client.headObject(request -> request.bucket(properties.getBucket()).key(key)));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("Failed to read " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read " + key, e);
+        }
+    }
+
+    private void keepLocalCopy(String directory, String name, String eTag, Path source) {
+        try {
+            localCopies.move(cacheKey(directory, name, eTag), source);
+            uploadedETags.put(key(directory, name), eTag);
+        } catch (IOException e) {
+            LOG.debug("Failed to keep the local copy of {}. Error description: {}", name, e.getMessage());
+        }
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to list bucket {}. Error description: {}", properties.getBucket(), e.getMessage());
+        }
+    }
+
+    /**
+     * Lists every directory and notifies the files stored or deleted since the previous listing. Files written by
+     * this instance after the listing started are left as they are, since the listing may predate them.
+     */
+    private void poll() {
+        for (String directory : directories) {
+            Map<String, KnownObject> known = knownObjects.get(directory);
+            long started = System.nanoTime();
+            Set<String> listed = new HashSet<>();
+            try (Stream<StoredObject> objects = list(directory)) {
+                objects.forEach(object -> {
+                    listed.add(object.getName());
+                    synchronized (known) {
+                        KnownObject previous = known.get(object.getName());
+                        if (previous != null && (previous.recorded() - started > 0 || object.equals(previous.object()))) {
+                            return;
+                        }
+                        known.put(object.getName(), new KnownObject(object, System.nanoTime()));
+                    }
+                    // Replaced by another instance, so its local copy must be checked again
+                    uploadedETags.remove(object.getId());
+                    listeners.forEach(listener -> listener.stored(object));
+                });
+            }
+            List<String> deleted = new ArrayList<>();
+            synchronized (known) {
+                known.entrySet().removeIf(entry -> {
+                    if (listed.contains(entry.getKey()) || entry.getValue().recorded() - started > 0) {
+                        return false;
+                    }
+                    if (entry.getValue().object() != null) {
+                        deleted.add(entry.getKey());
+                    }
+                    return true;
+                });
+            }
+            deleted.forEach(name -> {
+                uploadedETags.remove(key(directory, name));
+                listeners.forEach(listener -> listener.deleted(directory, name));
+            });
+        }
+    }
+
+    private void record(String directory, String name, StoredObject object) {
+        Map<String, KnownObject> known = knownObjects.get(directory);
+        synchronized (known) {
+            known.put(name, new KnownObject(object, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Reserves the first variant of a name that has no object and is not being uploaded by this instance.
+     *
+     * @return the reserved name, whose key must be released once uploaded
+     */
+    private String reserve(String directory, String name) throws IOException {
+        for (int variant = 0; ; variant++) {
+            String candidate = StorageNames.variant(name, variant);
+            String key = key(directory, candidate);
+            if (reservedKeys.add(key)) {
+                boolean taken;
+                try {
+                    taken = head(key).isPresent();
+                } catch (IOException | RuntimeException e) {
+                    reservedKeys.remove(key);
+                    throw e;
+                }
+                if (!taken) {
+                    return candidate;
+                }
+                reservedKeys.remove(key);
+            }
+        }
+    }
+
+    private void checkDirectory(String directory) {
+        if (!knownObjects.containsKey(directory)) {
+            throw new StorageFileNotFoundException("Unknown directory: " + directory);
+        }
+    }
+
+    private String key(String directory, String name) {
+        return properties.getKeyPrefix() + directory + DIRECTORY_SEPARATOR + name;
+    }
+
+    private static String cacheKey(String directory, String name, String eTag) {
+        return StorageNames.hash(directory + DIRECTORY_SEPARATOR + name) + "-" + eTag.replaceAll("[^A-Za-z0-9]", "");
+    }
+
+    private Path stagingFile() throws IOException {
+        Files.createDirectories(stagingLocation);
+        return stagingLocation.resolve(UUID.randomUUID().toString());
+    }
+
+    private static StoredObject toStoredObject(String directory, String name, String key, long size, Instant lastModified) {
+        return StoredObject.builder()
+                .directory(directory)
+                .name(name)
+                .id(key)
+                .size(size)
+                // Listings and metadata do not share the same precision
+                .lastModified(lastModified.truncatedTo(ChronoUnit.SECONDS))
+                .build();
+    }
+
+    private static StorageFileNotFoundException notFound(String name) {
+        return new StorageFileNotFoundException("Could not read file: " + name);
+    }
+
+    /**
+     * A file as last seen by this instance, or a deleted file if the object is {@code null}, with the
+     * {@link System#nanoTime} it was recorded at.
+     */
+    private record KnownObject(StoredObject object, long recorded) {
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Store of the files of the storage directories, i.e. the uploaded originals and the results of each operation.
+ * <p>
+ * Files are addressed by their directory and their name, whatever the layout of the backend. A stored file is
+ * never replaced: storing a file under a name that is already taken stores it under a variant of that name, e.g.
+ * {@code flowers (1).png}, so that uploads of the same name do not overwrite each other.
+ */
+public interface StorageBackend {
+
+    /**
+     * Moves a file into the store under the given name, or under the first free variant of it if the name is taken.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file
+     * @param source    the file to store, which is moved and should therefore lie on the file system of the storage
+     *                  location, e.g. in its staging directory
+     * @return the stored file, holding the name it was stored under
+     * @throws IOException                  if the file cannot be stored
+     * @throws IllegalArgumentException     if the name is not a valid file name
+     * @throws StorageFileNotFoundException if the directory is unknown
+     */
+    StoredObject put(String directory, String name, Path source) throws IOException;
+
+    /**
+     * Returns the attributes of a stored file.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file
+     * @return the stored file, or an empty optional if there is no file of that name
+     * @throws IOException                  if the attributes of the file cannot be read
+     * @throws StorageFileNotFoundException if the directory is unknown
+     */
+    Optional<StoredObject> stat(String directory, String name) throws IOException;
+
+    /**
+     * Returns a local file holding the content of a stored file, e.g. to read it as an image or send it with
+     * sendfile. The file must not be modified.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file
+     * @return the local file
+     * @throws IOException                  if the file cannot be made available locally
+     * @throws StorageFileNotFoundException if the directory is unknown or there is no file of that name
+     */
+    Path getLocalFile(String directory, String name) throws IOException;
+
+    /**
+     * Opens a byte range of a stored file, which is streamed rather than read at once.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file
+     * @param start     the position of the first byte of the range
+     * @param end       the position of the last byte of the range, inclusive
+     * @return the stream of the range, which must be closed
+     * @throws IOException                  if the file cannot be read
+     * @throws StorageFileNotFoundException if the directory is unknown or there is no file of that name
+     */
+    InputStream openRange(String directory, String name, long start, long end) throws IOException;
+
+    /**
+     * Returns a URL the file can be downloaded from without going through the application, e.g. a presigned URL
+     * of an object store. The URL is only valid for a limited time and must not be cached beyond it.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file, also given as the name of the download
+     * @return the URL, or an empty optional if the file must be served by the application
+     * @throws StorageFileNotFoundException if the directory is unknown
+     */
+    Optional<URI> getDownloadUrl(String directory, String name);
+
+    /**
+     * Returns whether {@link #getLocalFile} returns the stored files themselves, rather than local copies that
+     * must first be downloaded.
+     *
+     * @return whether the files are stored locally
+     */
+    boolean isLocal();
+
+    /**
+     * Deletes a stored file.
+     *
+     * @param directory the storage directory name
+     * @param name      the name of the file
+     * @return whether there was a file of that name
+     * @throws IOException                  if the file cannot be deleted
+     * @throws StorageFileNotFoundException if the directory is unknown
+     */
+    boolean delete(String directory, String name) throws IOException;
+
+    /**
+     * Lists the files of a storage directory, in no particular order. The stream must be closed.
+     *
+     * @param directory the storage directory name
+     * @return the stored files
+     * @throws IOException                  if the directory cannot be listed
+     * @throws StorageFileNotFoundException if the directory is unknown
+     */
+    Stream<StoredObject> list(String directory) throws IOException;
+
+    /**
+     * Registers a listener notified of every file stored or deleted from now on, whether through this backend or
+     * by another writer the backend can observe.
+     *
+     * @param listener the listener
+     */
+    void addListener(Listener listener);
+
+    /**
+     * Listener of the changes of the stored files.
+     */
+    interface Listener {
+
+        /**
+         * Called after a file was stored or replaced.
+         *
+         * @param object the stored file
+         */
+        void stored(StoredObject object);
+
+        /**
+         * Called after a file was deleted.
+         *
+         * @param directory the storage directory name
+         * @param name      the name of the file
+         */
+        void deleted(String directory, String name);
+
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.adtomiclabs.pebblely.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Utility class for the names of the stored files, shared by the {@link StorageBackend} implementations.
+ */
+final class StorageNames {
+
+    private static final int HASH_LENGTH = 32;
+
+    private StorageNames() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns a new random identifier for a stored file: 128 bits in hexadecimal.
+     *
+     * @return the identifier
+     */
+    static String newId() {
+        UUID uuid = UUID.randomUUID();
+        return HexFormat.of().toHexDigits(uuid.getMostSignificantBits()) + HexFormat.of().toHexDigits(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the hash of a name: the first 128 bits of its SHA-256 hash, in hexadecimal.
+     *
+     * @param name the name
+     * @return the hash
+     */
+    static String hash(String name) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Returns the name under which a file is stored when the given name is taken by the previous variants, e.g.
+     * {@code flowers (2).png} for the second variant of {@code flowers.png}.
+     *
+     * @param name    the name
+     * @param variant the number of the variant, 0 for the name itself
+     * @return the name of the variant
+     */
+    static String variant(String name, int variant) {
+        if (variant == 0) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0
+                ? name.substring(0, dot) + " (" + variant + ")" + name.substring(dot)
+                : name + " (" + variant + ")";
+    }
+
+    /**
+     * Returns whether a name can address a stored file, i.e. it is a single path segment.
+     *
+     * @param name the name
+     * @return whether the name is valid
+     */
+    static boolean isValid(String name) {
+        return name != null && !name.isEmpty() && !name.equals(".") && !name.equals("..")
+                && name.indexOf('/') < 0 && name.indexOf('\\') < 0 && name.indexOf('\0') < 0;
+    }
+
+    /**
+     * Checks that a name can address a stored file.
+     *
+     * @param name the name
+     * @throws IllegalArgumentException if the name is not valid
+     */
+    static void validate(String name) {
+        if (!isValid(name)) {
+            throw new IllegalArgumentException("Invalid file name: " + name);
+        }
+    }
+
+}
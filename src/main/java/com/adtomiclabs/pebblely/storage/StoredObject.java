@@ -0,0 +1,34 @@
+package com.adtomiclabs.pebblely.storage;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A file of a storage directory, as seen by a {@link StorageBackend}.
+ */
+@Value
+@Builder
+public class StoredObject {
+
+    /**
+     * The storage directory name, e.g. {@code upscale}.
+     */
+    String directory;
+
+    /**
+     * The name the file is addressed by, e.g. the name of the uploaded image.
+     */
+    String name;
+
+    /**
+     * The identifier of the file in the backend, e.g. its random id or its object key.
+     */
+    String id;
+
+    long size;
+
+    Instant lastModified;
+
+}
@@ -0,0 +1,145 @@
+package com.adtomiclabs.pebblely.utils;
+
+import java.time.Duration;
+
+/**
+ * Concurrency limit adapted to the observed latency and overload signals, following an AIMD scheme.
+ * <p>
+ * Each completed call is reported with one of three outcomes. A dropped call, i.e. a throttled or timed-out one,
+ * shrinks the limit multiplicatively by {@code backoffRatio}. A successful call grows the limit additively, by one
+ * for every {@code limit} such calls, as long as the limit is actually in use. Other failures leave the limit
+ * unchanged.
+ * <p>
+ * Single calls are not compared with each other, as the latency of image generation spreads widely and includes
+ * the upload of the request body. Instead, the average latency of the last few calls is compared with the average
+ * of the last few hundred: when it grows beyond {@code latencyTolerance} times the long-term average, the
+ * upstream is queueing, and the limit shrinks as for a dropped call. The long-term average then takes the
+ * short-term one, so that a lasting rise of the latency, e.g. while large images are uploaded, shrinks the limit
+ * once rather than down to its minimum.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Number of calls averaged by the short-term and the long-term latency
+    private static final int SHORT_WINDOW = 10;
+
+    private static final int LONG_WINDOW = 500;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double latencyTolerance;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double shortLatencyNanos;
+
+    private double longLatencyNanos;
+
+    private long samples;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit     the limit before any call completed
+     * @param minLimit         the lowest limit, at least one
+     * @param maxLimit         the highest limit
+     * @param backoffRatio     the factor applied to the limit when a call is dropped or the latency rises
+     * @param latencyTolerance how many times the long-term average latency the short-term one may reach before
+     *                         the limit shrinks
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Waits until a call can start under the current limit.
+     *
+     * @param timeout the longest time to wait
+     * @return whether the call may start, in which case its outcome must be reported once
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized boolean tryAcquire(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight >= getLimit()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Reports a successful call.
+     *
+     * @param latencyNanos the latency of the call, in nanoseconds
+     */
+    public synchronized void succeeded(long latencyNanos) {
+        boolean saturated = inFlight * 2 >= getLimit();
+        release();
+        samples++;
+        // Plain averages until the windows are filled, exponential moving averages afterwards
+        shortLatencyNanos += (latencyNanos - shortLatencyNanos) / Math.min(samples, SHORT_WINDOW);
+        longLatencyNanos += (latencyNanos - longLatencyNanos) / Math.min(samples, LONG_WINDOW);
+        if (samples >= SHORT_WINDOW && shortLatencyNanos > longLatencyNanos * latencyTolerance) {
+            decrease();
+            longLatencyNanos = shortLatencyNanos;
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Reports a call dropped because the upstream is overloaded, such as a throttled or timed-out call.
+     */
+    public synchronized void dropped() {
+        release();
+        decrease();
+    }
+
+    /**
+     * Reports a call whose outcome says nothing about the upstream load.
+     */
+    public synchronized void ignored() {
+        release();
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the number of calls that may run at the same time
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of calls currently running.
+     *
+     * @return the number of running calls
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.adtomiclabs.pebblely.utils;
+
+import com.adtomiclabs.pebblely.exception.StorageException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded cache of files on local disk, evicting the least recently used entries first.
+ * <p>
+ * Entries are stored as {@code <directory>/<first two key characters>/<key>} and their recency is persisted as
+ * the file modification time, so the cache survives restarts. Keys must be safe file names, e.g. hex digests.
+ */
+@Slf4j
+public class DiskLruCache {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    @Getter
+    private final AtomicLong hits = new AtomicLong();
+
+    @Getter
+    private final AtomicLong misses = new AtomicLong();
+
+    @Getter
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache over the given directory, indexing the entries already stored in it.
+     *
+     * @param directory the directory holding the cached files
+     * @param maxSize   the maximum total size of the cached files, in bytes
+     * @throws StorageException if the directory cannot be created or read
+     */
+    public DiskLruCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.walk(directory, 2)) {
+                files.filter(Files::isRegularFile)
+                        .map(DiskLruCache::readAttributes)
+                        .flatMap(Optional::stream)
+                        .sorted(Comparator.comparing(entry -> entry.attributes().lastModifiedTime()))
+                        .forEach(this::index);
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to open cache directory " + directory, e);
+        }
+        evict();
+    }
+
+    /**
+     * Returns the cached file of a key and marks it as recently used.
+     *
+     * @param key the cache key
+     * @return the cached file, or an empty optional on a miss
+     */
+    public Optional<Path> get(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+        }
+        Path file = resolve(key);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            remove(key);
+            misses.incrementAndGet();
+            return Optional.empty();
+        } catch (IOException e) {
+            LOG.warn("Failed to touch cache entry {}. Error description: {}", key, e.getMessage());
+        }
+        hits.incrementAndGet();
+        return Optional.of(file);
+    }
+
+    /**
+     * Copies a file into the cache under the given key, evicting the least recently used entries if the cache
+     * grows beyond its maximum size.
+     *
+     * @param key    the cache key
+     * @param source the file to cache
+     * @return the cached file
+     * @throws IOException if the file cannot be copied
+     */
+    public Path put(String key, Path source) throws IOException {
+        Path file = resolve(key);
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), key, TEMPORARY_SUFFIX);
+        try {
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return add(key, file);
+    }
+
+    /**
+     * Moves a file into the cache under the given key, evicting the least recently used entries if the cache
+     * grows beyond its maximum size. The file must lie on the file system of the cache, e.g. in the staging
+     * directory of the storage location.
+     *
+     * @param key    the cache key
+     * @param source the file to cache, which is moved
+     * @return the cached file
+     * @throws IOException if the file cannot be moved
+     */
+    public Path move(String key, Path source) throws IOException {
+        Path file = resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.move(source, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        return add(key, file);
+    }
+
+    private Path add(String key, Path file) throws IOException {
+        long fileSize = Files.size(file);
+        synchronized (this) {
+            Long previous = entries.put(key, fileSize);
+            size += fileSize - (previous != null ? previous : 0);
+        }
+        evict();
+        return file;
+    }
+
+    /**
+     * Returns the number of cached files.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total size of the cached files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void evict() {
+        while (true) {
+            String eldest;
+            synchronized (this) {
+                if (size <= maxSize || entries.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+                Map.Entry<String, Long> entry = iterator.next();
+                eldest = entry.getKey();
+                size -= entry.getValue();
+                iterator.remove();
+            }
+            try {
+                Files.deleteIfExists(resolve(eldest));
+                evictions.incrementAndGet();
+            } catch (IOException e) {
+                LOG.warn("Failed to evict cache entry {}. Error description: {}", eldest, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed;
+        }
+    }
+
+    private synchronized void index(CachedFile cachedFile) {
+        String key = cachedFile.file().getFileName().toString();
+        if (key.endsWith(TEMPORARY_SUFFIX)) {
+            cachedFile.file().toFile().delete();
+            return;
+        }
+        entries.put(key, cachedFile.attributes().size());
+        size += cachedFile.attributes().size();
+    }
+
+    private Path resolve(String key) {
+        return directory.resolve(key.substring(0, Math.min(2, key.length()))).resolve(key);
+    }
+
+    private static Optional<CachedFile> readAttributes(Path file) {
+        try {
+            return Optional.of(new CachedFile(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private record CachedFile(Path file, BasicFileAttributes attributes) {
+    }
+
+}
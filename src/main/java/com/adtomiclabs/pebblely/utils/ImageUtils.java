@@ -0,0 +1,117 @@
+package com.adtomiclabs.pebblely.utils;
+
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Helpers decoding, resizing and encoding images with ImageIO.
+ */
+public class ImageUtils {
+
+    /**
+     * Private constructor to prevent instantiation of the utility class.
+     */
+    private ImageUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Decodes an image that will be shrunk to fit the given bounds. Pixels of sources more than twice as large
+     * as needed are skipped while decoding, so a large image is never held in memory at full size.
+     *
+     * @param input     the encoded image
+     * @param maxWidth  the width the image will be shrunk to, or {@link Integer#MAX_VALUE}
+     * @param maxHeight the height the image will be shrunk to, or {@link Integer#MAX_VALUE}
+     * @return the decoded image
+     * @throws IOException              if the image cannot be read
+     * @throws IllegalArgumentException if the input is not an image in a supported format
+     */
+    public static BufferedImage read(InputStream input, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = imageInput != null ? ImageIO.getImageReaders(imageInput) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                double scale = Math.max((double) reader.getWidth(0) / maxWidth, (double) reader.getHeight(0) / maxHeight);
+                int subsampling = Math.max(1, (int) (scale / 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Redraws an image at the given size. Transparent pixels are flattened on white when the target format does
+     * not keep transparency.
+     *
+     * @param image  the image
+     * @param width  the target width
+     * @param height the target height
+     * @param format the format the image will be encoded in
+     * @return the redrawn image
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height, ImageFormatEnum format) {
+        BufferedImage resized = new BufferedImage(width, height,
+                format.isAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!format.isAlpha()) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    /**
+     * Encodes an image without any metadata.
+     *
+     * @param image       the image
+     * @param format      the format to encode the image in
+     * @param jpegQuality the quality of JPEG images, between 0 and 1
+     * @param output      the stream receiving the encoded image
+     * @throws IOException if the image cannot be written
+     */
+    public static void write(BufferedImage image, ImageFormatEnum format, float jpegQuality, OutputStream output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.getName()).next();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == ImageFormatEnum.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,319 @@
+package com.adtomiclabs.pebblely.utils;
+
+import com.adtomiclabs.pebblely.exception.StorageException;
+import com.adtomiclabs.pebblely.model.JobJournalEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only journal of the asynchronous jobs, stored as one JSON entry per line.
+ * <p>
+ * Entries are serialized by the caller and written by a single writer thread, which appends every entry queued
+ * since its last write and then syncs the file once, completing the futures of the whole group. A torn last line,
+ * left by a crash in the middle of a write, is skipped on replay.
+ * <p>
+ * The entries of each job are also kept in memory, so that the journal can be compacted by rewriting only the
+ * entries still needed: those of the unfinished jobs and of the jobs completed within the retention, without the
+ * start of the files that have completed since. Compaction runs when opening the journal and whenever it has grown
+ * to twice its compacted size, which keeps replay time proportional to the live jobs.
+ */
+@Slf4j
+public class JobJournal implements AutoCloseable {
+
+    private static final String COMPACTION_SUFFIX = ".compact";
+    private static final PendingEntry CLOSE = new PendingEntry(null, null, null);
+
+    private final Path file;
+
+    private final ObjectMapper objectMapper;
+
+    private final long compactionThreshold;
+
+    private final Duration retention;
+
+    private final BlockingQueue<PendingEntry> queue = new LinkedBlockingQueue<>();
+
+    // Owned by the writer thread once the journal is open
+    private final Map<String, List<JobJournalEntry>> jobs = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long entryCount;
+    private long compactedCount;
+
+    private Thread writer;
+    private boolean closed;
+
+    @Getter
+    private final AtomicLong syncs = new AtomicLong();
+
+    @Getter
+    private final AtomicLong compactions = new AtomicLong();
+
+    /**
+     * Creates a journal over the given file, which is not read until the journal is opened.
+     *
+     * @param file                the journal file
+     * @param objectMapper        the mapper serializing the entries
+     * @param compactionThreshold the number of entries below which the journal is never compacted
+     * @param retention           how long the entries of a completed job are kept
+     */
+    public JobJournal(Path file, ObjectMapper objectMapper, long compactionThreshold, Duration retention) {
+        this.file = file.toAbsolutePath();
+        this.objectMapper = objectMapper;
+        this.compactionThreshold = compactionThreshold;
+        this.retention = retention;
+    }
+
+    /**
+     * Replays and compacts the journal, then starts accepting entries.
+     *
+     * @return the live entries of each job, in the order the jobs were submitted
+     * @throws StorageException if the journal cannot be read or compacted
+     */
+    public synchronized Map<String, List<JobJournalEntry>> open() {
+        try {
+            Files.createDirectories(file.getParent());
+            replay();
+            compact();
+        } catch (IOException e) {
+            throw new StorageException("Failed to open job journal " + file, e);
+        }
+        Map<String, List<JobJournalEntry>> replayed = new LinkedHashMap<>();
+        jobs.forEach((jobId, entries) -> replayed.put(jobId, List.copyOf(entries)));
+
+        writer = new Thread(this::write, "job-journal");
+        writer.setDaemon(true);
+        writer.start();
+        return replayed;
+    }
+
+    /**
+     * Queues an entry to be appended to the journal.
+     *
+     * @param entry the entry
+     * @return a future completed once the entry is synced to disk, or completed exceptionally if it cannot be
+     * written or the journal is closed
+     */
+    public CompletableFuture<Void> append(JobJournalEntry entry) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        byte[] line;
+        try {
+            line = serialize(entry);
+        } catch (JsonProcessingException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        synchronized (queue) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("The job journal is closed"));
+            } else {
+                queue.add(new PendingEntry(entry, line, future));
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Writes the queued entries and closes the journal.
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to close job journal {}. Error description: {}", file, e.getMessage());
+        }
+    }
+
+    private void write() {
+        List<PendingEntry> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            stop = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingEntry> batch) {
+        try {
+            ByteBuffer[] buffers = batch.stream()
+                    .map(pending -> ByteBuffer.wrap(pending.line()))
+                    .toArray(ByteBuffer[]::new);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+            syncs.incrementAndGet();
+        } catch (IOException e) {
+            LOG.error("Failed to write job journal {}. Error description: {}", file, e.getMessage());
+            StorageException exception = new StorageException("Failed to write job journal " + file, e);
+            batch.forEach(pending -> pending.future().completeExceptionally(exception));
+            return;
+        }
+        batch.forEach(pending -> apply(pending.entry()));
+        batch.forEach(pending -> pending.future().complete(null));
+
+        if (entryCount >= Math.max(compactionThreshold, 2 * compactedCount)) {
+            try {
+                compact();
+            } catch (IOException e) {
+                LOG.warn("Failed to compact job journal {}. Error description: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        // Decodes malformed input, e.g. a character torn by a crash, as a replacement character
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    apply(objectMapper.readValue(line, JobJournalEntry.class));
+                } catch (JsonProcessingException e) {
+                    LOG.warn("Skipping unreadable entry {} of job journal {}. Error description: {}", lineNumber, file, e.getOriginalMessage());
+                }
+            }
+        }
+    }
+
+    private void apply(JobJournalEntry entry) {
+        entryCount++;
+        if (entry.getType() == JobJournalEntry.Type.SUBMITTED) {
+            jobs.put(entry.getJobId(), new ArrayList<>(List.of(entry)));
+            return;
+        }
+        List<JobJournalEntry> entries = jobs.get(entry.getJobId());
+        if (entries != null) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Rewrites the journal with its live entries into a new file, which atomically replaces the journal once
+     * synced.
+     */
+    private void compact() throws IOException {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(entries -> isExpired(entries, threshold));
+        jobs.values().forEach(JobJournal::removeCompletedStarts);
+
+        Path compacted = file.resolveSibling(file.getFileName() + COMPACTION_SUFFIX);
+        long count = 0;
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(compactedChannel))) {
+            for (List<JobJournalEntry> entries : jobs.values()) {
+                for (JobJournalEntry entry : entries) {
+                    outputStream.write(serialize(entry));
+                    count++;
+                }
+            }
+            outputStream.flush();
+            compactedChannel.force(true);
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        entryCount = count;
+        compactedCount = count;
+        compactions.incrementAndGet();
+    }
+
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced on every platform
+            LOG.debug("Failed to sync directory of job journal {}. Error description: {}", file, e.getMessage());
+        }
+    }
+
+    private byte[] serialize(JobJournalEntry entry) throws JsonProcessingException {
+        byte[] json = objectMapper.writeValueAsBytes(entry);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private static boolean isExpired(List<JobJournalEntry> entries, Instant threshold) {
+        JobJournalEntry last = entries.get(entries.size() - 1);
+        return last.getType() == JobJournalEntry.Type.COMPLETED && last.getTimestamp() != null && last.getTimestamp().isBefore(threshold);
+    }
+
+    private static void removeCompletedStarts(List<JobJournalEntry> entries) {
+        Set<Integer> completed = entries.stream()
+                .filter(entry -> entry.getType() == JobJournalEntry.Type.FILE_COMPLETED)
+                .map(JobJournalEntry::getIndex)
+                .collect(Collectors.toSet());
+        entries.removeIf(entry -> entry.getType() == JobJournalEntry.Type.FILE_STARTED && completed.contains(entry.getIndex()));
+    }
+
+    private record PendingEntry(JobJournalEntry entry, byte[] line, CompletableFuture<Void> future) {
+    }
+
+}
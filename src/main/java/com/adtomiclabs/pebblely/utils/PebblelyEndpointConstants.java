@@ -13,7 +13,7 @@ public class PebblelyEndpointConstants {
     }
 
     /**
-     * The base URL for the Pebblely API.
+     * The base URL for the Pebblely API, used unless {@code pebblely.api.base-url} is set.
      */
     public static final String PEBBLELY_BASE_URL = "https://api.pebblely.com";
 
@@ -62,3 +62,74 @@ colorCheckboxBackground.addEventListener('change', () => {
 colorCheckboxInpaint.addEventListener('change', () => {
     toggleColorInput(colorCheckboxInpaint, styleColorInpaint);
 });
+
+function createFileItem(file) {
+    const listItem = document.createElement('li');
+    const fileItem = document.createElement('div');
+    fileItem.classList.add('file-item');
+    const icon = document.createElement('img');
+    if (file.thumbnail_url) {
+        icon.src = file.thumbnail_url;
+        icon.alt = file.name;
+        icon.loading = 'lazy';
+        icon.classList.add('file-thumbnail');
+    } else {
+        icon.src = '/static/file-icon.png';
+        icon.alt = 'File Icon';
+        icon.classList.add('file-icon');
+    }
+    const link = document.createElement('a');
+    link.href = file.url;
+    link.textContent = file.name;
+    fileItem.appendChild(icon);
+    fileItem.appendChild(link);
+    listItem.appendChild(fileItem);
+    return listItem;
+}
+
+function lazyLoadFileGallery(gallery) {
+    const sentinel = document.createElement('li');
+    sentinel.classList.add('file-gallery-sentinel');
+    gallery.appendChild(sentinel);
+
+    let cursor = null;
+    let loading = false;
+
+    const observer = new IntersectionObserver(async (entries) => {
+        if (loading || !entries.some(entry => entry.isIntersecting)) {
+            return;
+        }
+        loading = true;
+        try {
+            const params = new URLSearchParams({limit: '50'});
+            if (cursor) {
+                params.set('cursor', cursor);
+            }
+            const response = await fetch('/files/' + gallery.dataset.directory + '?' + params);
+            if (!response.ok) {
+                throw new Error(response.statusText);
+            }
+            const page = await response.json();
+            page.files.forEach(file => gallery.insertBefore(createFileItem(file), sentinel));
+            cursor = page.next_cursor;
+            if (!cursor) {
+                observer.disconnect();
+                sentinel.remove();
+            }
+        } catch (error) {
+            console.error('Failed to load files of ' + gallery.dataset.directory, error);
+            cursor = null;
+            observer.disconnect();
+        } finally {
+            loading = false;
+        }
+        // Keep loading while the sentinel is still in view, e.g. when a page does not fill the column
+        if (cursor) {
+            observer.unobserve(sentinel);
+            observer.observe(sentinel);
+        }
+    });
+    observer.observe(sentinel);
+}
+
+document.querySelectorAll('.file-gallery').forEach(lazyLoadFileGallery);
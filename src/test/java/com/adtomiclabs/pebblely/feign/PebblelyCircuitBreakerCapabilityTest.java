@@ -0,0 +1,121 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.CircuitBreakerPropertiesConfig;
+import com.adtomiclabs.pebblely.config.RetryPropertiesConfig;
+import com.adtomiclabs.pebblely.exception.CircuitBreakerOpenException;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyCircuitBreakerCapabilityTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void getCredits_shouldRetryServerErrors() {
+        PebblelyApi api = api(List.of(503, 200), Duration.ofSeconds(30));
+
+        PebblelyResponseDto response = api.getCredits();
+
+        assertEquals(7, response.getCredits());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void getCredits_shouldFailFastOnceCircuitIsOpen() {
+        PebblelyApi api = api(List.of(503, 503, 503, 503), Duration.ofSeconds(30));
+
+        assertThrows(RetryableException.class, api::getCredits);
+        assertThrows(CircuitBreakerOpenException.class, api::getCredits);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void getCredits_shouldCloseCircuitAfterSuccessfulTrialCall() {
+        PebblelyApi api = api(List.of(503, 503, 200, 200), Duration.ZERO);
+
+        assertThrows(RetryableException.class, api::getCredits);
+        assertEquals(7, api.getCredits().getCredits());
+        assertEquals(7, api.getCredits().getCredits());
+
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void getCredits_shouldNotCountInterruptedCalls() {
+        PebblelyApi api = api((request, options) -> {
+            if (calls.getAndIncrement() < 4) {
+                throw new InterruptedIOException("Interrupted while waiting for the Pebblely credits concurrency limit");
+            }
+            return response(request, 200);
+        }, Duration.ofSeconds(30));
+
+        assertThrows(RetryableException.class, api::getCredits);
+        assertThrows(RetryableException.class, api::getCredits);
+        assertEquals(7, api.getCredits().getCredits());
+
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    void getCredits_shouldCountTimeouts() {
+        PebblelyApi api = api((request, options) -> {
+            calls.incrementAndGet();
+            throw new SocketTimeoutException("Read timed out");
+        }, Duration.ofSeconds(30));
+
+        assertThrows(RetryableException.class, api::getCredits);
+        assertThrows(CircuitBreakerOpenException.class, api::getCredits);
+
+        assertEquals(2, calls.get());
+    }
+
+    private PebblelyApi api(List<Integer> statuses, Duration openDuration) {
+        return api((request, options) -> response(request, statuses.get(calls.getAndIncrement())), openDuration);
+    }
+
+    private static Response response(Request request, int status) {
+        return Response.builder()
+                .request(request)
+                .status(status)
+                .headers(Map.of())
+                .body("{\"credits\":7}", StandardCharsets.UTF_8)
+                .build();
+    }
+
+    private PebblelyApi api(Client client, Duration openDuration) {
+        RetryPropertiesConfig retryPropertiesConfig = new RetryPropertiesConfig();
+        retryPropertiesConfig.setInitialBackoff(Duration.ofMillis(1));
+        retryPropertiesConfig.setMaxAttempts(2);
+        CircuitBreakerPropertiesConfig circuitBreakerPropertiesConfig = new CircuitBreakerPropertiesConfig();
+        circuitBreakerPropertiesConfig.setFailureThreshold(2);
+        circuitBreakerPropertiesConfig.setOpenDuration(openDuration);
+        ObjectMapper objectMapper = new ObjectMapper();
+        return Feign.builder()
+                .contract(new SpringMvcContract())
+                .decoder(new PebblelyResponseDecoder(objectMapper, null, false))
+                .errorDecoder(new PebblelyErrorDecoder())
+                .retryer(new PebblelyRetryer(retryPropertiesConfig))
+                .client(client)
+                .addCapability(new PebblelyCircuitBreakerCapability(circuitBreakerPropertiesConfig))
+                .target(PebblelyApi.class, "http://localhost");
+    }
+
+}
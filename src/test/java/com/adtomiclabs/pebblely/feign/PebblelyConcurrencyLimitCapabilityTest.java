@@ -0,0 +1,51 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.ConcurrencyLimitPropertiesConfig;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.service.PebblelyMetricsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Feign;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyConcurrencyLimitCapabilityTest {
+
+    @Test
+    void getCredits_shouldReleaseSlotAndShrinkLimitWhenThrottled() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PebblelyConcurrencyLimitCapability capability = new PebblelyConcurrencyLimitCapability(
+                new ConcurrencyLimitPropertiesConfig(), new PebblelyMetricsService(meterRegistry));
+        AtomicInteger status = new AtomicInteger(429);
+        PebblelyApi api = Feign.builder()
+                .contract(new SpringMvcContract())
+                .decoder(new PebblelyResponseDecoder(new ObjectMapper(), null, false))
+                .client((request, options) -> Response.builder()
+                        .request(request)
+                        .status(status.get())
+                        .headers(Map.of())
+                        .body("{\"credits\":7}", StandardCharsets.UTF_8)
+                        .build())
+                .addCapability(capability)
+                .target(PebblelyApi.class, "http://localhost");
+
+        assertThrows(RuntimeException.class, api::getCredits);
+
+        assertEquals(1, capability.getLimiter(PebblelyOperationEnum.CREDITS).getLimit());
+        assertEquals(0, capability.getLimiter(PebblelyOperationEnum.CREDITS).getInFlight());
+        assertEquals(4, capability.getLimiter(PebblelyOperationEnum.UPSCALE).getLimit());
+        assertEquals(1, meterRegistry.get("pebblely.concurrency.limit").tag("operation", "credits").gauge().value());
+
+        status.set(200);
+        assertEquals(7, api.getCredits().getCredits());
+        assertEquals(0, capability.getLimiter(PebblelyOperationEnum.CREDITS).getInFlight());
+    }
+
+}
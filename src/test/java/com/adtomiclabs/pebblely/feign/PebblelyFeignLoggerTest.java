@@ -0,0 +1,81 @@
+package com.adtomiclabs.pebblely.feign;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import feign.Logger;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyFeignLoggerTest {
+
+    private final ch.qos.logback.classic.Logger logbackLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(PebblelyApi.class);
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    private final PebblelyFeignLogger logger = new PebblelyFeignLogger(PebblelyApi.class, 8, 1.0);
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logbackLogger.addAppender(appender);
+        logbackLogger.setLevel(Level.DEBUG);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logbackLogger.detachAppender(appender);
+        logbackLogger.setLevel(null);
+    }
+
+    @Test
+    void logRequest_shouldLogSizeAndTruncatedPreviewAndRedactApiKey() {
+        Map<String, Collection<String>> headers = Map.of("X-Pebblely-Access-Token", List.of("secret"));
+        Request request = Request.create(Request.HttpMethod.POST, "https://api.pebblely.com/upscale/v1", headers,
+                "{\"image\":\"AAAAAAAAAAAA\"}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, null);
+
+        logger.logRequest("PebblelyApi#upscale(UpscaleDto)", Logger.Level.FULL, request);
+
+        List<String> messages = appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+        assertTrue(messages.get(0).endsWith("---> POST https://api.pebblely.com/upscale/v1 (24-byte body)"));
+        assertTrue(messages.get(1).endsWith("X-Pebblely-Access-Token: <redacted>"));
+        assertTrue(messages.get(2).endsWith("---> {\"image\"... (truncated)"));
+    }
+
+    @Test
+    void logAndRebufferResponse_shouldPreviewWithoutConsumingBody() throws IOException {
+        byte[] body = "{\"data\":\"AAAA\",\"credits\":7}".getBytes(StandardCharsets.UTF_8);
+        Response response = Response.builder()
+                .status(200)
+                .reason("OK")
+                .request(Request.create(Request.HttpMethod.GET, "https://api.pebblely.com/credits/v1", Map.of(), null, null, null))
+                .headers(Map.of())
+                .body(new ByteArrayInputStream(body), body.length)
+                .build();
+
+        Response logged = logger.logAndRebufferResponse("PebblelyApi#getCredits()", Logger.Level.FULL, response, 12);
+
+        try (InputStream inputStream = logged.body().asInputStream()) {
+            assertArrayEquals(body, inputStream.readAllBytes());
+        }
+        assertEquals(body.length, logged.body().length());
+        List<String> messages = appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+        assertTrue(messages.get(0).contains("200 OK (12ms, 27-byte body)"));
+        assertTrue(messages.get(1).endsWith("<--- {\"data\":... (truncated)"));
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import com.adtomiclabs.pebblely.service.PebblelyMetricsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Feign;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyMetricsCapabilityTest {
+
+    private static final String RESPONSE_BODY = "{\"data\":\"AQID\",\"credits\":7}";
+
+    @Test
+    void upscale_shouldRecordStagesAndBytes() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper();
+        PebblelyApi api = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new PebblelyRequestEncoder(objectMapper, false))
+                .decoder(new PebblelyResponseDecoder(objectMapper, null, false))
+                .client((request, options) -> Response.builder()
+                        .request(request)
+                        .status(200)
+                        .headers(Map.of())
+                        .body(RESPONSE_BODY, StandardCharsets.UTF_8)
+                        .build())
+                .addCapability(new PebblelyMetricsCapability(new PebblelyMetricsService(meterRegistry)))
+                .target(PebblelyApi.class, "http://localhost");
+
+        PebblelyResponseDto response = api.upscale(UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build());
+
+        assertEquals(7, response.getCredits());
+        for (String stage : new String[]{"encode", "call", "decode"}) {
+            assertEquals(1, meterRegistry.get("pebblely.stage.duration").tags("operation", "upscale", "stage", stage).timer().count());
+        }
+        assertEquals("{\"image\":\"AQID\",\"size\":2048}".length(),
+                meterRegistry.get("pebblely.api.request.bytes").tag("operation", "upscale").counter().count());
+        assertEquals(RESPONSE_BODY.length(), meterRegistry.get("pebblely.api.response.bytes").tag("operation", "upscale").counter().count());
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.request.CreateBackgroundDto;
+import com.adtomiclabs.pebblely.model.request.InpaintDto;
+import com.adtomiclabs.pebblely.model.request.RequestBodyTemplate;
+import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.RequestTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyRequestEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void encode_shouldGzipBodyWhenCompressionIsEnabled() throws IOException {
+        UpscaleDto upscaleDto = UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build();
+        RequestTemplate template = new RequestTemplate();
+
+        new PebblelyRequestEncoder(objectMapper, true).encode(upscaleDto, UpscaleDto.class, template);
+
+        assertEquals(List.of("gzip"), List.copyOf(template.headers().get("Content-Encoding")));
+        JsonNode body = objectMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(template.body())));
+        assertEquals("AQID", body.get("image").asText());
+        assertEquals(2048, body.get("size").asInt());
+    }
+
+    @Test
+    void encode_shouldSpliceImageIntoSharedBodyTemplate() throws IOException {
+        InpaintDto sharedDto = InpaintDto.builder().mask(Base64Image.of("BAUG")).styleImage(Base64Image.of("BwgJ")).theme("Surprise me").build();
+        RequestBodyTemplate bodyTemplate = RequestBodyTemplate.of(objectMapper, sharedDto.toBuilder().image(RequestBodyTemplate.PLACEHOLDER_IMAGE).build());
+        InpaintDto inpaintDto = sharedDto.toBuilder().image(Base64Image.of("AQID")).bodyTemplate(bodyTemplate).build();
+        RequestTemplate template = new RequestTemplate();
+
+        new PebblelyRequestEncoder(objectMapper, false).encode(inpaintDto, InpaintDto.class, template);
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(inpaintDto)), objectMapper.readTree(template.body()));
+    }
+
+    @Test
+    void encode_shouldSpliceSingleImageOfCreateBackgroundTemplate() throws IOException {
+        CreateBackgroundDto sharedDto = CreateBackgroundDto.builder().styleImage(Base64Image.of("BwgJ")).height(512).build();
+        RequestBodyTemplate bodyTemplate = RequestBodyTemplate.of(objectMapper, sharedDto.toBuilder().images(List.of(RequestBodyTemplate.PLACEHOLDER_IMAGE)).build());
+        CreateBackgroundDto createBackgroundDto = sharedDto.toBuilder().images(List.of(Base64Image.of("AQID"))).bodyTemplate(bodyTemplate).build();
+        RequestTemplate template = new RequestTemplate();
+
+        new PebblelyRequestEncoder(objectMapper, true).encode(createBackgroundDto, CreateBackgroundDto.class, template);
+
+        JsonNode body = objectMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(template.body())));
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(createBackgroundDto)), body);
+        assertEquals("AQID", body.get("images").get(0).asText());
+    }
+
+    @Test
+    void encode_shouldWritePlainJsonByDefault() throws IOException {
+        UpscaleDto upscaleDto = UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build();
+        RequestTemplate template = new RequestTemplate();
+
+        new PebblelyRequestEncoder(objectMapper, false).encode(upscaleDto, UpscaleDto.class, template);
+
+        assertFalse(template.headers().containsKey("Content-Encoding"));
+        assertEquals("AQID", objectMapper.readTree(template.body()).get("image").asText());
+    }
+
+}
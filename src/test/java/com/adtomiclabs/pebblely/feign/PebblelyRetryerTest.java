@@ -0,0 +1,63 @@
+package com.adtomiclabs.pebblely.feign;
+
+import com.adtomiclabs.pebblely.config.RetryPropertiesConfig;
+import feign.Request;
+import feign.RetryableException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelyRetryerTest {
+
+    @Test
+    void nextDelayMillis_shouldApplyJitterToExponentialBackoff() {
+        RetryPropertiesConfig config = new RetryPropertiesConfig();
+        PebblelyRetryer retryer = new PebblelyRetryer(config);
+
+        long delay = retryer.nextDelayMillis(retryable(null));
+
+        assertTrue(delay > 250 && delay <= 500, "Unexpected delay " + delay);
+    }
+
+    @Test
+    void nextDelayMillis_shouldHonorRetryAfter() {
+        PebblelyRetryer retryer = new PebblelyRetryer(new RetryPropertiesConfig());
+
+        long delay = retryer.nextDelayMillis(retryable(new Date(System.currentTimeMillis() + 5000)));
+
+        assertTrue(delay > 4000 && delay <= 5000, "Unexpected delay " + delay);
+    }
+
+    @Test
+    void continueOrPropagate_shouldFailWhenRetryAfterIsTooLong() {
+        PebblelyRetryer retryer = new PebblelyRetryer(new RetryPropertiesConfig());
+        RetryableException exception = retryable(new Date(System.currentTimeMillis() + Duration.ofMinutes(5).toMillis()));
+
+        assertSame(exception, assertThrows(RetryableException.class, () -> retryer.continueOrPropagate(exception)));
+    }
+
+    @Test
+    void continueOrPropagate_shouldFailAfterMaxAttempts() {
+        RetryPropertiesConfig config = new RetryPropertiesConfig();
+        config.setInitialBackoff(Duration.ofMillis(1));
+        PebblelyRetryer retryer = new PebblelyRetryer(config);
+        RetryableException exception = retryable(null);
+
+        retryer.continueOrPropagate(exception);
+        retryer.continueOrPropagate(exception);
+
+        assertThrows(RetryableException.class, () -> retryer.continueOrPropagate(exception));
+        assertDoesNotThrow(() -> retryer.clone().continueOrPropagate(exception));
+    }
+
+    private static RetryableException retryable(Date retryAfter) {
+        Request request = Request.create(Request.HttpMethod.POST, "http://localhost/upscale/v1", Map.of(), null, StandardCharsets.UTF_8, null);
+        return new RetryableException(503, "Service Unavailable", Request.HttpMethod.POST, retryAfter, request);
+    }
+
+}
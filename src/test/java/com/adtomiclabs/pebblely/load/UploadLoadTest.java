@@ -0,0 +1,391 @@
+package com.adtomiclabs.pebblely.load;
+
+import com.adtomiclabs.pebblely.config.SimulatorPropertiesConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.simulator.PebblelySimulator;
+import com.adtomiclabs.pebblely.utils.ImageUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of the upload, transform and store flow: batches of images are posted to {@code /upscale} by concurrent
+ * users, going through the multipart parsing, the Base64 encoding, the Feign call to a {@link PebblelySimulator},
+ * the response decoding and the write to the storage.
+ * <p>
+ * It is tagged {@code load} and only runs with the {@code load-test} profile: {@code mvn -Pload-test test}. Each
+ * scenario of users &times; batch size &times; image size reports its throughput, latency percentiles, heap
+ * high-water mark and GC time to {@code target/load-test/results.json}, the files being stored under
+ * {@code target/load-test/files}. The whole JVM is measured, including the load generating users.
+ * <p>
+ * Absolute numbers depend on the machine, so a calibration scenario of a single user posting a single 256 KB
+ * image is run first, and each scenario is compared with the stored baseline by its throughput and median latency
+ * relative to the calibration: the test fails if they, or its failures, regressed beyond the tolerance. The
+ * baseline also records the environment it was measured on, and a warning is logged when it differs. Scenarios
+ * and settings are overridden with system properties:
+ * <ul>
+ *     <li>{@code load.users}, {@code load.batch-sizes}, {@code load.image-sizes}: comma-separated scenario values;</li>
+ *     <li>{@code load.requests}: the measured posts of a scenario, shared by its users;</li>
+ *     <li>{@code load.warmup-requests}: the posts of each user before a scenario is measured;</li>
+ *     <li>{@code load.latency}: the fixed latency of the simulated Pebblely API;</li>
+ *     <li>{@code load.tolerance}: the accepted regression, as a fraction of the baseline;</li>
+ *     <li>{@code load.update-baseline}: whether the results replace the baseline instead of being compared.</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "pebblely.api-key=load-test",
+        "pebblely.cache.enabled=false",
+        "logging.level.com.adtomiclabs.pebblely=WARN",
+        "logging.level.com.adtomiclabs.pebblely.load=INFO"
+})
+@Slf4j
+class UploadLoadTest {
+
+    private static final Path BASELINE = Path.of("src/test/resources/com/adtomiclabs/pebblely/load/baseline.json");
+    private static final Path RESULTS = Path.of("target/load-test/results.json");
+    // Not deleted after the test, as the application may still be writing previews while it stops
+    private static final Path STORAGE = Path.of("target/load-test/files").toAbsolutePath();
+    private static final String BOUNDARY = "load-test-boundary";
+    private static final int UPSCALE_SIZE = 2048;
+    private static final long HEAP_SAMPLING_MILLIS = 10;
+    private static final DataSize CALIBRATION_IMAGE_SIZE = DataSize.ofKilobytes(256);
+
+    private static final SimulatorPropertiesConfig SIMULATOR_PROPERTIES = new SimulatorPropertiesConfig();
+    private static final PebblelySimulator SIMULATOR;
+
+    static {
+        SIMULATOR_PROPERTIES.setPort(0);
+        SIMULATOR_PROPERTIES.getDefaultLatency().setDistribution(SimulatorPropertiesConfig.Distribution.FIXED);
+        SIMULATOR_PROPERTIES.getDefaultLatency().setMedian(DurationStyle.detectAndParse(System.getProperty("load.latency", "50ms")));
+        SIMULATOR = new PebblelySimulator(SIMULATOR_PROPERTIES);
+        try {
+            FileSystemUtils.deleteRecursively(STORAGE);
+            SIMULATOR.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void pebblelyApi(DynamicPropertyRegistry registry) {
+        registry.add("pebblely.api.base-url", SIMULATOR::getBaseUrl);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        SIMULATOR.stop();
+    }
+
+    @Test
+    void upload_shouldNotRegressFromBaseline() throws Exception {
+        ScenarioResult calibration = run(1, 1, CALIBRATION_IMAGE_SIZE);
+        List<ScenarioResult> results = new ArrayList<>();
+        for (int users : integers("load.users", "1,4,8")) {
+            for (int batchSize : integers("load.batch-sizes", "1,4")) {
+                for (String imageSize : System.getProperty("load.image-sizes", "256KB,2MB").split(",")) {
+                    results.add(run(users, batchSize, DataSize.parse(imageSize.trim())));
+                }
+            }
+        }
+        LoadTestResults current = new LoadTestResults(Environment.current(), calibration, results);
+        Files.createDirectories(RESULTS.getParent());
+        objectMapper.writeValue(RESULTS.toFile(), current);
+
+        boolean updateBaseline = Boolean.getBoolean("load.update-baseline");
+        LoadTestResults baseline = !updateBaseline && Files.exists(BASELINE)
+                ? objectMapper.readValue(BASELINE.toFile(), LoadTestResults.class)
+                : null;
+        List<String> regressions = report(current, baseline, Double.parseDouble(System.getProperty("load.tolerance", "0.25")));
+        if (updateBaseline) {
+            objectMapper.writeValue(BASELINE.toFile(), current);
+            LOG.info("Load test baseline updated: {}", BASELINE);
+            return;
+        }
+        assertTrue(regressions.isEmpty(), "Load test regressions: " + regressions);
+    }
+
+    private ScenarioResult run(int users, int batchSize, DataSize imageSize) throws Exception {
+        SIMULATOR_PROPERTIES.setDefaultResponseSize(imageSize);
+        int warmupRequests = Integer.getInteger("load.warmup-requests", 2);
+        int requestsPerUser = Math.max(1, Integer.getInteger("load.requests", 80) / users);
+        List<byte[]> bodies = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            bodies.add(multipartBody(user, batchSize, imageSize));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            post(executor, bodies, warmupRequests);
+
+            System.gc();
+            AtomicLong heapHighWater = new AtomicLong();
+            heapSampler.scheduleAtFixedRate(() -> heapHighWater.accumulateAndGet(
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max), 0, HEAP_SAMPLING_MILLIS, TimeUnit.MILLISECONDS);
+            long gcMillis = gcMillis();
+            long gcCount = gcCount();
+            long successes = successfulCalls();
+            long start = System.nanoTime();
+
+            List<Long> latencies = post(executor, bodies, requestsPerUser);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            heapSampler.shutdownNow();
+            Collections.sort(latencies);
+            long requests = (long) users * requestsPerUser;
+            return new ScenarioResult(
+                    "users=" + users + ",batch=" + batchSize + ",image=" + imageSize.toKilobytes() + "KB",
+                    users, batchSize, imageSize.toBytes(),
+                    requests / seconds,
+                    requests * batchSize / seconds,
+                    percentile(latencies, 0.50),
+                    percentile(latencies, 0.99),
+                    heapHighWater.get() / (1024 * 1024),
+                    gcMillis() - gcMillis,
+                    gcCount() - gcCount,
+                    requests * batchSize - (successfulCalls() - successes));
+        } finally {
+            heapSampler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Has every user post its body the given number of times, one post after the other.
+     *
+     * @return the latency of every post, in nanoseconds
+     */
+    private List<Long> post(ExecutorService executor, List<byte[]> bodies, int requestsPerUser) throws Exception {
+        List<Future<List<Long>>> users = new ArrayList<>();
+        for (byte[] body : bodies) {
+            users.add(executor.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/upscale"))
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+                for (int i = 0; i < requestsPerUser; i++) {
+                    long start = System.nanoTime();
+                    HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies.add(System.nanoTime() - start);
+                    assertEquals(302, response.statusCode());
+                }
+                return latencies;
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> user : users) {
+            latencies.addAll(user.get());
+        }
+        return latencies;
+    }
+
+    /**
+     * Builds the upscale form of a user, holding a batch of noise PNGs of about the given size. Images differ
+     * between users, so that concurrent identical calls are not coalesced.
+     */
+    private static byte[] multipartBody(int user, int batchSize, DataSize imageSize) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int file = 0; file < batchSize; file++) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"files\"; filename=\"user-" + user
+                    + "-" + file + ".png\"\r\nContent-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            body.write(noiseImage(imageSize.toBytes(), user * 1000L + file));
+            body.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"upscaleSize\"\r\n\r\n" + UPSCALE_SIZE
+                + "\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private static byte[] noiseImage(long size, long seed) throws IOException {
+        int side = (int) Math.max(1, Math.ceil(Math.sqrt(size / 3.0)));
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageUtils.write(image, ImageFormatEnum.PNG, 1, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Logs the results and compares them with the baseline, relative to the calibration of each run.
+     *
+     * @return the regressions beyond the tolerance
+     */
+    private List<String> report(LoadTestResults current, LoadTestResults baseline, double tolerance) {
+        LOG.info("Environment: {}", current.environment());
+        LOG.info("Calibration: {} req/s, p50 {} ms", String.format("%.1f", current.calibration().requestsPerSecond()),
+                String.format("%.0f", current.calibration().p50Millis()));
+        Map<String, ScenarioResult> previousResults = Map.of();
+        if (baseline != null) {
+            if (!current.environment().equals(baseline.environment())) {
+                LOG.warn("The baseline was measured on another environment, only relative numbers are comparable: {}", baseline.environment());
+            }
+            previousResults = baseline.scenarios().stream().collect(Collectors.toMap(ScenarioResult::scenario, Function.identity()));
+        }
+        List<String> regressions = new ArrayList<>();
+        LOG.info(String.format("%-32s %10s %10s %10s %10s %10s %8s %7s %s",
+                "scenario", "req/s", "images/s", "p50 ms", "p99 ms", "heap MB", "gc ms", "failed", "relative req/s, p50 (baseline)"));
+        for (ScenarioResult result : current.scenarios()) {
+            double throughput = result.requestsPerSecond() / current.calibration().requestsPerSecond();
+            double latency = result.p50Millis() / current.calibration().p50Millis();
+            String comparison = String.format("%.2f, %.2f", throughput, latency);
+            ScenarioResult previous = previousResults.get(result.scenario());
+            if (previous != null) {
+                double previousThroughput = previous.requestsPerSecond() / baseline.calibration().requestsPerSecond();
+                double previousLatency = previous.p50Millis() / baseline.calibration().p50Millis();
+                comparison += String.format(" (%.2f, %.2f)", previousThroughput, previousLatency);
+                if (throughput < previousThroughput * (1 - tolerance)) {
+                    regressions.add(result.scenario() + ": throughput");
+                    comparison += " THROUGHPUT REGRESSION";
+                }
+                // The p99 of a few dozen posts hangs on single pauses, so it is reported but not compared
+                if (latency > previousLatency * (1 + tolerance)) {
+                    regressions.add(result.scenario() + ": latency");
+                    comparison += " LATENCY REGRESSION";
+                }
+                if (result.failedImages() > previous.failedImages()) {
+                    regressions.add(result.scenario() + ": failures");
+                    comparison += " FAILURES";
+                }
+            }
+            LOG.info(String.format("%-32s %10.1f %10.1f %10.0f %10.0f %10d %8d %7d %s",
+                    result.scenario(), result.requestsPerSecond(), result.imagesPerSecond(), result.p50Millis(),
+                    result.p99Millis(), result.heapHighWaterMegabytes(), result.gcMillis(), result.failedImages(), comparison));
+        }
+        return regressions;
+    }
+
+    private long successfulCalls() {
+        return meterRegistry.find("pebblely.api.requests").tags("operation", "upscale", "outcome", "success").timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    private static double percentile(List<Long> sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedLatencies.size()) - 1;
+        return sortedLatencies.get(Math.max(0, index)) / 1e6;
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static int[] integers(String property, String defaults) {
+        return Arrays.stream(System.getProperty(property, defaults).split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The results of a run, as stored in the results and the baseline.
+     */
+    record LoadTestResults(Environment environment, ScenarioResult calibration, List<ScenarioResult> scenarios) {
+    }
+
+    /**
+     * The machine and JVM a run was measured on.
+     */
+    record Environment(String javaVersion, String vmName, String osName, String osArch, int availableProcessors,
+                       long maxHeapMegabytes) {
+
+        static Environment current() {
+            return new Environment(System.getProperty("java.version"), System.getProperty("java.vm.name"),
+                    System.getProperty("os.name"), System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors(),
+                    Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        }
+
+    }
+
+    /**
+     * The measures of a scenario, as stored in the results and the baseline.
+     */
+    record ScenarioResult(String scenario, int users, int batchSize, long imageSize, double requestsPerSecond,
+                          double imagesPerSecond, double p50Millis, double p99Millis, long heapHighWaterMegabytes,
+                          long gcMillis, long gcCount, long failedImages) {
+    }
+
+    /**
+     * Keeps the stored files out of the working directory.
+     */
+    @TestConfiguration
+    static class LoadTestConfig {
+
+        @Bean
+        @Primary
+        StoragePropertiesConfig loadTestStoragePropertiesConfig() {
+            return new StoragePropertiesConfig() {
+                @Override
+                public String getLocation() {
+                    return STORAGE.toString();
+                }
+            };
+        }
+
+    }
+
+}
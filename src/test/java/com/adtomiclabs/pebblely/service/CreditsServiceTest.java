@@ -0,0 +1,95 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.CreditsPropertiesConfig;
+import com.adtomiclabs.pebblely.feign.PebblelyApi;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CreditsServiceTest {
+
+    private PebblelyApi api;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CreditsService creditsService;
+
+    @BeforeEach
+    void setUp() {
+        api = mock(PebblelyApi.class);
+        meterRegistry = new SimpleMeterRegistry();
+        creditsService = new CreditsService(api, new CreditsPropertiesConfig(), new PebblelyMetricsService(meterRegistry));
+    }
+
+    @Test
+    void refreshIfExpired_shouldNotCallApiWhileBalanceIsFresh() {
+        creditsService.update(creditsService.startCall(PebblelyOperationEnum.UPSCALE), 42);
+
+        creditsService.refreshIfExpired();
+
+        verifyNoInteractions(api);
+        assertEquals(OptionalInt.of(42), creditsService.getCredits());
+    }
+
+    @Test
+    void refreshIfExpired_shouldKeepLastBalanceWhenApiFails() {
+        when(api.getCredits()).thenReturn(new PebblelyResponseDto(null, 10)).thenThrow(new RuntimeException("timeout"));
+        CreditsPropertiesConfig config = new CreditsPropertiesConfig();
+        config.setTtl(Duration.ZERO);
+        creditsService = new CreditsService(api, config, new PebblelyMetricsService(new SimpleMeterRegistry()));
+
+        creditsService.refreshIfExpired();
+        creditsService.refreshIfExpired();
+
+        verify(api, times(2)).getCredits();
+        assertEquals(OptionalInt.of(10), creditsService.getCredits());
+    }
+
+    @Test
+    void update_shouldIgnoreBalanceOfOlderCall() {
+        CreditsService.Call older = creditsService.startCall(PebblelyOperationEnum.UPSCALE);
+        CreditsService.Call newer = creditsService.startCall(PebblelyOperationEnum.UPSCALE);
+
+        creditsService.update(newer, 8);
+        creditsService.update(older, 9);
+
+        assertEquals(OptionalInt.of(8), creditsService.getCredits());
+    }
+
+    @Test
+    void update_shouldRecordCreditsConsumedByCallThatRanAlone() {
+        creditsService.update(creditsService.startCall(PebblelyOperationEnum.UPSCALE), 10);
+
+        creditsService.update(creditsService.startCall(PebblelyOperationEnum.UPSCALE), 7);
+
+        assertEquals(3, consumed("upscale"));
+    }
+
+    @Test
+    void update_shouldRecordCreditsOfOverlappingCallsAsUnattributed() {
+        creditsService.update(creditsService.startCall(PebblelyOperationEnum.UPSCALE), 10);
+        CreditsService.Call first = creditsService.startCall(PebblelyOperationEnum.UPSCALE);
+        CreditsService.Call second = creditsService.startCall(PebblelyOperationEnum.REMOVE_BACKGROUND);
+
+        creditsService.update(second, 8);
+        creditsService.update(first, 9);
+        creditsService.update(creditsService.startCall(PebblelyOperationEnum.UPSCALE), 7);
+
+        assertEquals(2, consumed("unattributed"));
+        assertEquals(1, consumed("upscale"));
+        assertEquals(OptionalInt.of(7), creditsService.getCredits());
+    }
+
+    private double consumed(String operation) {
+        return meterRegistry.get("pebblely.credits.consumed").tag("operation", operation).counter().count();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.FileSortEnum;
+import com.adtomiclabs.pebblely.model.response.FilePageDto;
+import com.adtomiclabs.pebblely.model.response.StoredFileDto;
+import com.adtomiclabs.pebblely.storage.LocalStorageBackend;
+import com.adtomiclabs.pebblely.utils.FilesDirectoriesEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileIndexServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private LocalStorageBackend storageBackend;
+
+    private FileIndexService fileIndexService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(directory.resolve("upscale"));
+        Files.write(directory.resolve("upscale").resolve("shoe (1).png"), new byte[10]);
+        storageBackend = new LocalStorageBackend(directory, FilesDirectoriesEnum.getDirectoriesNames());
+        storageBackend.start();
+        fileIndexService = new FileIndexService(storageBackend, new ThumbnailPropertiesConfig(), "");
+        fileIndexService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageBackend.stop();
+    }
+
+    @Test
+    void list_shouldReturnScannedFilesWithUrls() {
+        List<StoredFileDto> files = list("upscale");
+
+        assertEquals(1, files.size());
+        assertEquals("shoe (1).png", files.get(0).getName());
+        assertEquals(10, files.get(0).getSize());
+        assertEquals("/files/upscale/shoe%20(1).png?v=" + FileServingService.version(10, files.get(0).getLastModified()), files.get(0).getUrl());
+        assertEquals(files.get(0).getUrl() + "&w=128&format=jpeg", files.get(0).getThumbnailUrl());
+        assertTrue(list("originals").isEmpty());
+    }
+
+    @Test
+    void list_shouldIndexStoredFilesImmediately() throws IOException {
+        storageBackend.put("removed", "tv.png", Files.write(directory.resolve("tv.tmp"), new byte[5]));
+        assertEquals(1, list("removed").size());
+
+        storageBackend.delete("removed", "tv.png");
+        assertTrue(list("removed").isEmpty());
+    }
+
+    @Test
+    void list_shouldPickUpExternalChanges() throws Exception {
+        Files.write(directory.resolve("created").resolve("earring.png"), new byte[5]);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (list("created").isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "The external file was not indexed");
+            Thread.sleep(10);
+        }
+        assertEquals("earring.png", list("created").get(0).getName());
+    }
+
+    @Test
+    void list_shouldPageByModificationTimeWithCursor() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Path file = Files.write(directory.resolve("tv.tmp"), new byte[1]);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2023-01-01T00:00:00Z").plusSeconds(i)));
+            storageBackend.put("inpaint", "tv" + i + ".png", file);
+        }
+
+        FilePageDto first = fileIndexService.list("inpaint", FileSortEnum.MODIFIED, true, null, null, 2);
+        FilePageDto second = fileIndexService.list("inpaint", FileSortEnum.MODIFIED, true, null, first.getNextCursor(), 2);
+        FilePageDto last = fileIndexService.list("inpaint", FileSortEnum.MODIFIED, true, null, second.getNextCursor(), 2);
+
+        assertEquals(List.of("tv4.png", "tv3.png"), names(first));
+        assertEquals(List.of("tv2.png", "tv1.png"), names(second));
+        assertEquals(List.of("tv0.png"), names(last));
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void list_shouldFilterByPrefix() throws IOException {
+        for (String name : List.of("earring.png", "shoe.png", "shoe (2).png", "tv.png")) {
+            storageBackend.put("originals", name, Files.write(directory.resolve("tv.tmp"), new byte[1]));
+        }
+
+        FilePageDto byName = fileIndexService.list("originals", FileSortEnum.NAME, false, "shoe", null, 10);
+        FilePageDto byModified = fileIndexService.list("originals", FileSortEnum.MODIFIED, false, "shoe", null, 1);
+
+        assertEquals(List.of("shoe (2).png", "shoe.png"), names(byName));
+        assertNull(byName.getNextCursor());
+        assertEquals(1, byModified.getFiles().size());
+        assertNotNull(byModified.getNextCursor());
+    }
+
+    private List<StoredFileDto> list(String subdirectory) {
+        return fileIndexService.list(subdirectory, FileSortEnum.NAME, false, null, null, 100).getFiles();
+    }
+
+    private static List<String> names(FilePageDto page) {
+        return page.getFiles().stream().map(StoredFileDto::getName).toList();
+    }
+
+}
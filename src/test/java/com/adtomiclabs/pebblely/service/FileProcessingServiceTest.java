@@ -1,91 +1,145 @@
 package com.adtomiclabs.pebblely.service;
 
+import com.adtomiclabs.pebblely.config.BatchPropertiesConfig;
+import com.adtomiclabs.pebblely.config.PreprocessingPropertiesConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
 import com.adtomiclabs.pebblely.model.request.CreateBackgroundDto;
 import com.adtomiclabs.pebblely.model.request.InpaintDto;
+import com.adtomiclabs.pebblely.model.request.PipelineDto;
+import com.adtomiclabs.pebblely.model.request.PipelineStepDto;
 import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.adtomiclabs.pebblely.model.response.BatchResultDto;
+import com.adtomiclabs.pebblely.model.response.FileStatusEnum;
 import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
 import com.adtomiclabs.pebblely.exception.PebblelyException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class FileProcessingServiceTest {
 
+    private static final FileStorageService.StoredFile ORIGINAL = new FileStorageService.StoredFile("original.png", Path.of("original.png"));
+
     @Mock
     private PebblelyService pebblelyService;
 
     @Mock
     private FileStorageService fileStorageService;
 
+    @Mock
+    private ResultCacheService resultCacheService;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Spy
+    private PebblelyMetricsService metricsService = new PebblelyMetricsService(new SimpleMeterRegistry());
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private ImagePreprocessingService imagePreprocessingService = new ImagePreprocessingService(new PreprocessingPropertiesConfig(),
+            new StoragePropertiesConfig(), metricsService);
+
+    @Spy
+    private BatchExecutionService batchExecutionService = new BatchExecutionService(new BatchPropertiesConfig(), metricsService);
+
     @InjectMocks
     private FileProcessingService fileProcessingService;
 
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(fileStorageService.saveImage(any(), any(), any()))
+                .thenReturn(new FileStorageService.StoredFile("result.png", Path.of("result.png")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchExecutionService.shutdown();
+    }
+
     @Test
     void upscaleImages() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         int size = 100;
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenReturn("base64Image");
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
         when(pebblelyService.upscale(any(UpscaleDto.class))).thenReturn(mock(PebblelyResponseDto.class));
 
         assertDoesNotThrow(() -> fileProcessingService.upscaleImages(multipartFiles, size));
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, times(1)).upscale(any(UpscaleDto.class));
-        verify(fileStorageService, times(1)).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
     }
 
     @Test
-    void upscaleImages_shouldThrowIOException() throws IOException, PebblelyException {
+    void upscaleImages_shouldReportIOException() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         int size = 100;
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenThrow(IOException.class);
+        when(fileStorageService.storeMultipartFile(any(), any())).thenThrow(IOException.class);
+
+        BatchResultDto result = fileProcessingService.upscaleImages(multipartFiles, size);
 
-        assertThrows(IOException.class, () -> fileProcessingService.upscaleImages(multipartFiles, size));
+        assertEquals(1, result.getFailed());
+        assertEquals(FileStatusEnum.FAILED, result.getFiles().get(0).getStatus());
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, never()).upscale(any(UpscaleDto.class));
-        verify(fileStorageService, never()).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, never()).saveImage(any(), any(), any());
     }
 
     @Test
     void removeBackgrounds() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenReturn("base64Image");
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
         when(pebblelyService.removeBackground(any())).thenReturn(mock(PebblelyResponseDto.class));
 
         assertDoesNotThrow(() -> fileProcessingService.removeBackgrounds(multipartFiles));
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, times(1)).removeBackground(any());
-        verify(fileStorageService, times(1)).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
     }
 
     @Test
-    void removeBackgrounds_shouldThrowIOException() throws IOException, PebblelyException {
+    void removeBackgrounds_shouldReportIOException() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenThrow(IOException.class);
+        when(fileStorageService.storeMultipartFile(any(), any())).thenThrow(IOException.class);
 
-        assertThrows(IOException.class, () -> fileProcessingService.removeBackgrounds(multipartFiles));
+        BatchResultDto result = fileProcessingService.removeBackgrounds(multipartFiles);
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        assertEquals(1, result.getFailed());
+        assertEquals(FileStatusEnum.FAILED, result.getFiles().get(0).getStatus());
+
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, never()).removeBackground(any());
-        verify(fileStorageService, never()).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, never()).saveImage(any(), any(), any());
     }
 
     @Test
@@ -93,28 +147,31 @@ class FileProcessingServiceTest {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         CreateBackgroundDto createBackgroundDto = mockCreateBackgroundDto();
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenReturn("base64Image");
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
         when(pebblelyService.createBackground(any())).thenReturn(mock(PebblelyResponseDto.class));
 
         assertDoesNotThrow(() -> fileProcessingService.createBackgrounds(multipartFiles, createBackgroundDto));
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, times(1)).createBackground(any());
-        verify(fileStorageService, times(1)).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
     }
 
     @Test
-    void createBackgrounds_shouldThrowIOException() throws IOException, PebblelyException {
+    void createBackgrounds_shouldReportIOException() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         CreateBackgroundDto createBackgroundDto = mockCreateBackgroundDto();
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenThrow(IOException.class);
+        when(fileStorageService.storeMultipartFile(any(), any())).thenThrow(IOException.class);
+
+        BatchResultDto result = fileProcessingService.createBackgrounds(multipartFiles, createBackgroundDto);
 
-        assertThrows(IOException.class, () -> fileProcessingService.createBackgrounds(multipartFiles, createBackgroundDto));
+        assertEquals(1, result.getFailed());
+        assertEquals(FileStatusEnum.FAILED, result.getFiles().get(0).getStatus());
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, never()).createBackground(any());
-        verify(fileStorageService, never()).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, never()).saveImage(any(), any(), any());
     }
 
     @Test
@@ -122,35 +179,175 @@ class FileProcessingServiceTest {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         InpaintDto inpaintDto = mockInpaintDto();
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenReturn("base64Image");
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
         when(pebblelyService.inpaint(any())).thenReturn(mock(PebblelyResponseDto.class));
 
         assertDoesNotThrow(() -> fileProcessingService.inpaintFiles(multipartFiles, inpaintDto));
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, times(1)).inpaint(any());
-        verify(fileStorageService, times(1)).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
     }
 
     @Test
-    void inpaintFiles_shouldThrowIOException() throws IOException, PebblelyException {
+    void inpaintFiles_shouldReportIOException() throws IOException, PebblelyException {
         List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
         InpaintDto inpaintDto = mockInpaintDto();
 
-        when(fileStorageService.getMultipartFileInBase64(any(), any())).thenThrow(IOException.class);
+        when(fileStorageService.storeMultipartFile(any(), any())).thenThrow(IOException.class);
 
-        assertThrows(IOException.class, () -> fileProcessingService.inpaintFiles(multipartFiles, inpaintDto));
+        BatchResultDto result = fileProcessingService.inpaintFiles(multipartFiles, inpaintDto);
 
-        verify(fileStorageService, times(1)).getMultipartFileInBase64(any(), any());
+        assertEquals(1, result.getFailed());
+        assertEquals(FileStatusEnum.FAILED, result.getFiles().get(0).getStatus());
+
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
         verify(pebblelyService, never()).inpaint(any());
-        verify(fileStorageService, never()).saveFileFromBase64(any(), any(), any());
+        verify(fileStorageService, never()).saveImage(any(), any(), any());
+    }
+
+    @Test
+    void upscaleImages_shouldContinueAfterFailure() throws IOException, PebblelyException {
+        MultipartFile failing = mock(MultipartFile.class);
+        MultipartFile succeeding = mock(MultipartFile.class);
+        List<MultipartFile> multipartFiles = List.of(failing, succeeding);
+
+        when(fileStorageService.storeMultipartFile(eq(failing), any())).thenThrow(IOException.class);
+        when(fileStorageService.storeMultipartFile(eq(succeeding), any())).thenReturn(ORIGINAL);
+        when(pebblelyService.upscale(any(UpscaleDto.class))).thenReturn(mock(PebblelyResponseDto.class));
+
+        BatchResultDto result = fileProcessingService.upscaleImages(multipartFiles, 100);
+
+        assertEquals(1, result.getFailed());
+        assertEquals(FileStatusEnum.FAILED, result.getFiles().get(0).getStatus());
+        assertEquals(FileStatusEnum.SUCCEEDED, result.getFiles().get(1).getStatus());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
+    }
+
+    @Test
+    void upscaleImages_shouldReuseCachedResult() throws IOException, PebblelyException {
+        List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
+        Path cachedResult = Path.of("cached.png");
+
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
+        when(resultCacheService.key(any(), any())).thenReturn("key");
+        when(resultCacheService.lookup("key")).thenReturn(Optional.of(cachedResult));
+
+        BatchResultDto result = fileProcessingService.upscaleImages(multipartFiles, 100);
+
+        assertEquals(0, result.getFailed());
+        verify(pebblelyService, never()).upscale(any(UpscaleDto.class));
+        verify(fileStorageService, times(1)).saveImage(eq(Base64Image.ofFile(cachedResult)), any(), any());
+        verify(resultCacheService, never()).store(any(), any());
+    }
+
+    @Test
+    void upscaleImages_shouldCacheNewResult() throws IOException, PebblelyException {
+        List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
+        Path savedResult = Path.of("saved.png");
+
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
+        when(resultCacheService.key(any(), any())).thenReturn("key");
+        when(pebblelyService.upscale(any(UpscaleDto.class))).thenReturn(mock(PebblelyResponseDto.class));
+        when(fileStorageService.saveImage(any(), any(), any())).thenReturn(new FileStorageService.StoredFile("saved.png", savedResult));
+
+        fileProcessingService.upscaleImages(multipartFiles, 100);
+
+        verify(pebblelyService, times(1)).upscale(any(UpscaleDto.class));
+        verify(resultCacheService, times(1)).store("key", savedResult);
+    }
+
+    @Test
+    void createBackgrounds_shouldNotMutateSharedDto() throws IOException, PebblelyException {
+        List<MultipartFile> multipartFiles = List.of(mock(MultipartFile.class), mock(MultipartFile.class));
+        CreateBackgroundDto createBackgroundDto = mockCreateBackgroundDto();
+
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
+        when(pebblelyService.createBackground(any())).thenReturn(mock(PebblelyResponseDto.class));
+
+        fileProcessingService.createBackgrounds(multipartFiles, createBackgroundDto);
+
+        ArgumentCaptor<CreateBackgroundDto> captor = ArgumentCaptor.forClass(CreateBackgroundDto.class);
+        verify(pebblelyService, times(2)).createBackground(captor.capture());
+        assertNull(createBackgroundDto.getImages());
+        captor.getAllValues().forEach(dto -> {
+            assertNotSame(createBackgroundDto, dto);
+            assertEquals(List.of(Base64Image.ofFile(ORIGINAL.file())), dto.getImages());
+            assertEquals(createBackgroundDto.getTheme(), dto.getTheme());
+            assertNotNull(dto.getBodyTemplate());
+        });
+    }
+
+    @Test
+    void pipeline_shouldChainStepOutputsAndStoreOnlyFinalResult() throws IOException, PebblelyException {
+        List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
+        Base64Image intermediate = Base64Image.of("intermediate");
+        PipelineDto pipeline = PipelineDto.builder()
+                .steps(List.of(PipelineStepDto.builder().operation("remove-background").build(),
+                        PipelineStepDto.builder().operation("upscale").size(2048).build()))
+                .build();
+
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
+        when(pebblelyService.removeBackground(any())).thenReturn(new PebblelyResponseDto(intermediate, 9));
+        when(pebblelyService.upscale(any(UpscaleDto.class))).thenReturn(new PebblelyResponseDto(Base64Image.of("final"), 8));
+
+        BatchResultDto result = batchExecutionService.execute(fileProcessingService.getFinalOperation(pipeline), multipartFiles,
+                fileProcessingService.pipelineTask(pipeline));
+
+        assertEquals(0, result.getFailed());
+        verify(fileStorageService, times(1)).storeMultipartFile(any(), any());
+        ArgumentCaptor<UpscaleDto> captor = ArgumentCaptor.forClass(UpscaleDto.class);
+        verify(pebblelyService).upscale(captor.capture());
+        assertSame(intermediate, captor.getValue().getImage());
+        assertEquals(2048, captor.getValue().getSize());
+        verify(fileStorageService, times(1)).saveImage(any(), any(), any());
+        verify(fileStorageService).saveImage(eq(Base64Image.of("final")), eq("upscale"), any());
+    }
+
+    @Test
+    void pipeline_shouldStoreIntermediatesWhenRequested() throws IOException, PebblelyException {
+        List<MultipartFile> multipartFiles = Collections.singletonList(mock(MultipartFile.class));
+        PipelineDto pipeline = PipelineDto.builder()
+                .steps(List.of(PipelineStepDto.builder().operation("remove-background").build(),
+                        PipelineStepDto.builder().operation("upscale").size(2048).build()))
+                .persistIntermediates(true)
+                .build();
+
+        when(fileStorageService.storeMultipartFile(any(), any())).thenReturn(ORIGINAL);
+        when(fileStorageService.saveImage(any(), any(), any())).thenReturn(new FileStorageService.StoredFile("removed.png", Path.of("removed.png")));
+        when(pebblelyService.removeBackground(any())).thenReturn(new PebblelyResponseDto(Base64Image.of("intermediate"), 9));
+        when(pebblelyService.upscale(any(UpscaleDto.class))).thenReturn(new PebblelyResponseDto(Base64Image.of("final"), 8));
+
+        batchExecutionService.execute(PebblelyOperationEnum.UPSCALE, multipartFiles, fileProcessingService.pipelineTask(pipeline));
+
+        verify(fileStorageService).saveImage(eq(Base64Image.of("intermediate")), eq("removed"), any());
+        verify(pebblelyService).upscale(argThat(dto -> Base64Image.ofFile(Path.of("removed.png")).equals(dto.getImage())));
+    }
+
+    @Test
+    void pipelineTask_shouldRejectUnsupportedSteps() {
+        PipelineDto inpaint = PipelineDto.builder().steps(List.of(PipelineStepDto.builder().operation("inpaint").build())).build();
+
+        assertThrows(IllegalArgumentException.class, () -> fileProcessingService.pipelineTask(inpaint));
+        assertThrows(IllegalArgumentException.class, () -> fileProcessingService.pipelineTask(new PipelineDto()));
+    }
+
+    @Test
+    void pipelineTask_shouldRejectUpscaleStepWithoutSizeBeforeAnyCall() {
+        PipelineDto pipeline = PipelineDto.builder()
+                .steps(List.of(PipelineStepDto.builder().operation("remove-background").build(),
+                        PipelineStepDto.builder().operation("upscale").build()))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> fileProcessingService.pipelineTask(pipeline));
+        verifyNoInteractions(pebblelyService);
     }
 
     private CreateBackgroundDto mockCreateBackgroundDto() {
         String theme = "theme";
         String description = "description";
         String styleColor = "color";
-        String styleImage = "image";
+        Base64Image styleImage = Base64Image.of("image");
         String negative = "negative";
         Integer height = 100;
         Integer width = 200;
@@ -166,11 +363,11 @@ class FileProcessingServiceTest {
                 .build();    }
 
     private InpaintDto mockInpaintDto() {
-        String mask = "mask";
+        Base64Image mask = Base64Image.of("mask");
         String theme = "theme";
         String description = "description";
         String styleColor = "color";
-        String styleImage = "image";
+        Base64Image styleImage = Base64Image.of("image");
         String negative = "negative";
 
         return InpaintDto.builder()
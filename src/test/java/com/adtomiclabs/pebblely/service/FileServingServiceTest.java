@@ -0,0 +1,198 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import com.adtomiclabs.pebblely.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FileServingServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private FileStorageService fileStorageService;
+
+    private ThumbnailService thumbnailService;
+
+    private FileServingService fileServingService;
+
+    private String version;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path file = Files.writeString(directory.resolve("shoe.png"), "0123456789");
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        version = FileServingService.version(attributes.size(), attributes.lastModifiedTime().toInstant());
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.stat("upscale", "shoe.png")).thenReturn(StoredObject.builder()
+                .directory("upscale")
+                .name("shoe.png")
+                .id("shoe.png")
+                .size(attributes.size())
+                .lastModified(attributes.lastModifiedTime().toInstant())
+                .build());
+        when(fileStorageService.loadAsFile("upscale", "shoe.png")).thenReturn(file);
+        when(fileStorageService.getDownloadUrl("upscale", "shoe.png")).thenReturn(Optional.empty());
+        when(fileStorageService.isLocal()).thenReturn(true);
+        thumbnailService = mock(ThumbnailService.class);
+        fileServingService = new FileServingService(fileStorageService, thumbnailService, new ThumbnailPropertiesConfig());
+    }
+
+    @Test
+    void serve_shouldSendWholeFileWithValidators() throws IOException {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/files/upscale/shoe.png"), version);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("\"" + version + "\"", response.getHeader("ETag"));
+        assertNotNull(response.getHeader("Last-Modified"));
+        assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+        assertEquals("image/png", response.getContentType());
+    }
+
+    @Test
+    void serve_shouldAnswerNotModifiedWhenEtagMatches() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.addHeader("If-None-Match", "\"" + version + "\"");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals("no-cache", response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void serve_shouldSendRequestedRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.addHeader("Range", "bytes=2-5");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals("2345", response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    void serve_shouldIgnoreRangeOfChangedFile() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"outdated\"");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void serve_shouldRejectUnsatisfiableRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.addHeader("Range", "bytes=20-30");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void serve_shouldDelegateToSendfileWhenSupported() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=4-");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(6, response.getContentLengthLong());
+    }
+
+    @Test
+    void serve_shouldSendResizedCopyWithItsOwnEtag() throws IOException {
+        Path thumbnail = Files.writeString(directory.resolve("thumbnail"), "abc");
+        when(thumbnailService.getThumbnail(directory.resolve("shoe.png"), version, 64, ImageFormatEnum.JPEG)).thenReturn(thumbnail);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileServingService.serve("upscale", "shoe.png", version, 64, "jpg", new ServletWebRequest(request, response), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("abc", response.getContentAsString());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals("\"" + version + "-64-jpeg\"", response.getHeader("ETag"));
+        assertTrue(response.getHeader("Content-Disposition").contains("shoe.jpg"));
+    }
+
+    @Test
+    void serve_shouldNotGenerateResizedCopyWhenNotModified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.addHeader("If-None-Match", "\"" + version + "-64-jpeg\"");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileServingService.serve("upscale", "shoe.png", version, 64, "jpeg", new ServletWebRequest(request, response), response);
+
+        assertEquals(304, response.getStatus());
+        verifyNoInteractions(thumbnailService);
+    }
+
+    @Test
+    void serve_shouldRedirectToDownloadUrl() throws IOException {
+        when(fileStorageService.getDownloadUrl("upscale", "shoe.png"))
+                .thenReturn(Optional.of(URI.create("https://bucket.example.com/upscale/shoe.png?X-Amz-Signature=abc")));
+
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/files/upscale/shoe.png"), version);
+
+        assertEquals(302, response.getStatus());
+        assertEquals("https://bucket.example.com/upscale/shoe.png?X-Amz-Signature=abc", response.getRedirectedUrl());
+        assertEquals("no-store", response.getHeader("Cache-Control"));
+        assertNull(response.getHeader("ETag"));
+        verify(fileStorageService, never()).loadAsFile(any(), any());
+    }
+
+    @Test
+    void serve_shouldStreamRequestedRangeOfRemoteFile() throws IOException {
+        when(fileStorageService.isLocal()).thenReturn(false);
+        when(fileStorageService.openRange("upscale", "shoe.png", 2, 5))
+                .thenReturn(new ByteArrayInputStream("2345".getBytes(StandardCharsets.UTF_8)));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/upscale/shoe.png");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+
+        MockHttpServletResponse response = serve(request, null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString(StandardCharsets.UTF_8));
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        verify(fileStorageService, never()).loadAsFile(any(), any());
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request, String requestedVersion) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileServingService.serve("upscale", "shoe.png", requestedVersion, null, null, new ServletWebRequest(request, response), response);
+        return response;
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.PreprocessingPropertiesConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessingServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private PreprocessingPropertiesConfig preprocessingPropertiesConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ImagePreprocessingService imagePreprocessingService;
+
+    private Base64Image upload;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path file = directory.resolve("shoe.png");
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+        ImageIO.write(image, "png", file.toFile());
+        upload = Base64Image.ofFile(file);
+        StoragePropertiesConfig storagePropertiesConfig = new StoragePropertiesConfig() {
+            @Override
+            public String getLocation() {
+                return directory.toString();
+            }
+        };
+        preprocessingPropertiesConfig = new PreprocessingPropertiesConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        imagePreprocessingService = new ImagePreprocessingService(preprocessingPropertiesConfig, storagePropertiesConfig,
+                new PebblelyMetricsService(meterRegistry));
+    }
+
+    @Test
+    void preprocess_shouldSendUploadAsIsWithoutConfiguration() throws IOException {
+        assertSame(upload, imagePreprocessingService.preprocess(PebblelyOperationEnum.UPSCALE, upload));
+    }
+
+    @Test
+    void preprocess_shouldShrinkAndReencodeAndRecordSizes() throws IOException {
+        PreprocessingPropertiesConfig.Preprocessing preprocessing = new PreprocessingPropertiesConfig.Preprocessing();
+        preprocessing.setMaxDimension(200);
+        preprocessing.setFormat("jpeg");
+        preprocessingPropertiesConfig.getOperations().put(PebblelyOperationEnum.REMOVE_BACKGROUND.getName(), preprocessing);
+
+        Base64Image preprocessed = imagePreprocessingService.preprocess(PebblelyOperationEnum.REMOVE_BACKGROUND, upload);
+
+        assertNotSame(upload, preprocessed);
+        assertTrue(preprocessed.getFile().getFileName().toString().endsWith(".jpg"));
+        try (InputStream input = preprocessed.openStream()) {
+            BufferedImage image = ImageIO.read(input);
+            assertEquals(200, image.getWidth());
+            assertEquals(100, image.getHeight());
+        }
+        assertEquals(Files.size(upload.getFile()), meterRegistry.get("pebblely.preprocessing.bytes").tag("image", "original").summary().totalAmount());
+        assertEquals(Files.size(preprocessed.getFile()), meterRegistry.get("pebblely.preprocessing.bytes").tag("image", "preprocessed").summary().totalAmount());
+    }
+
+    @Test
+    void preprocessMask_shouldMatchImageDimensionsLosslessly() throws IOException {
+        PreprocessingPropertiesConfig.Preprocessing preprocessing = new PreprocessingPropertiesConfig.Preprocessing();
+        preprocessing.setMaxDimension(200);
+        preprocessing.setFormat("jpeg");
+        preprocessingPropertiesConfig.getOperations().put(PebblelyOperationEnum.INPAINT.getName(), preprocessing);
+
+        Base64Image mask = imagePreprocessingService.preprocessMask(PebblelyOperationEnum.INPAINT, upload);
+
+        assertNull(mask.getFile());
+        try (InputStream input = mask.openStream()) {
+            assertEquals(200, ImageIO.read(input).getWidth());
+        }
+    }
+
+}
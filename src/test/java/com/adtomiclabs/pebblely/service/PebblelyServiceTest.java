@@ -0,0 +1,128 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.exception.PebblelyException;
+import com.adtomiclabs.pebblely.feign.PebblelyApi;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.PebblelyOperationEnum;
+import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PebblelyServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private PebblelyApi api;
+
+    private CreditsService creditsService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PebblelyService pebblelyService;
+
+    @BeforeEach
+    void setUp() {
+        api = mock(PebblelyApi.class);
+        creditsService = mock(CreditsService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        pebblelyService = new PebblelyService(api, new RequestDigestService(new ObjectMapper()), creditsService,
+                new PebblelyMetricsService(meterRegistry));
+    }
+
+    @Test
+    void upscale_shouldCoalesceIdenticalInFlightRequests() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        when(api.upscale(any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.join();
+            return new PebblelyResponseDto(Base64Image.ofTemporaryFile(Files.write(directory.resolve("response.tmp"), new byte[]{1, 2, 3})), 7);
+        });
+        UpscaleDto upscaleDto = UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PebblelyResponseDto> leader = executor.submit(() -> pebblelyService.upscale(upscaleDto));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            AtomicReference<Thread> followerThread = new AtomicReference<>();
+            Future<PebblelyResponseDto> follower = executor.submit(() -> {
+                followerThread.set(Thread.currentThread());
+                return pebblelyService.upscale(upscaleDto.toBuilder().build());
+            });
+            awaitWaiting(followerThread);
+            release.complete(null);
+
+            PebblelyResponseDto leaderResponse = leader.get(5, TimeUnit.SECONDS);
+            PebblelyResponseDto followerResponse = follower.get(5, TimeUnit.SECONDS);
+
+            verify(api, times(1)).upscale(any());
+            verify(creditsService, times(1)).update(any(), eq(7));
+            assertEquals(7, followerResponse.getCredits());
+            assertTrue(followerResponse.getData().isTemporary());
+            assertNotEquals(leaderResponse.getData().getFile(), followerResponse.getData().getFile());
+            assertArrayEquals(Files.readAllBytes(leaderResponse.getData().getFile()), Files.readAllBytes(followerResponse.getData().getFile()));
+        } finally {
+            release.complete(null);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void upscale_shouldCallApiAgainOnceRequestCompleted() {
+        when(api.upscale(any())).thenReturn(new PebblelyResponseDto(Base64Image.of("AQID"), 7));
+        UpscaleDto upscaleDto = UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build();
+
+        pebblelyService.upscale(upscaleDto);
+        pebblelyService.upscale(upscaleDto);
+
+        verify(api, times(2)).upscale(any());
+    }
+
+    @Test
+    void upscale_shouldRecordLatencyAndBalance() {
+        when(api.upscale(any())).thenReturn(new PebblelyResponseDto(Base64Image.of("AQID"), 7));
+
+        pebblelyService.upscale(UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build());
+
+        assertEquals(1, meterRegistry.get("pebblely.api.requests").tags("operation", "upscale", "outcome", "success").timer().count());
+        verify(creditsService).startCall(PebblelyOperationEnum.UPSCALE);
+        verify(creditsService).update(any(), eq(7));
+    }
+
+    @Test
+    void upscale_shouldCountErrorsByExceptionType() {
+        when(api.upscale(any())).thenThrow(new IllegalStateException("boom"));
+
+        assertThrows(PebblelyException.class, () -> pebblelyService.upscale(UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build()));
+
+        assertEquals(1, meterRegistry.get("pebblely.api.errors").tags("operation", "upscale", "exception", "IllegalStateException").counter().count());
+    }
+
+    private static void awaitWaiting(AtomicReference<Thread> thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "Follower did not join the in-flight request");
+            Thread.sleep(1);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.adtomiclabs.pebblely.service;
+
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.config.ThumbnailPropertiesConfig;
+import com.adtomiclabs.pebblely.model.ImageFormatEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ThumbnailService thumbnailService;
+
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = directory.resolve("shoe.png");
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB), "png", source.toFile());
+        StoragePropertiesConfig storagePropertiesConfig = new StoragePropertiesConfig() {
+            @Override
+            public String getLocation() {
+                return directory.toString();
+            }
+        };
+        meterRegistry = new SimpleMeterRegistry();
+        thumbnailService = new ThumbnailService(new ThumbnailPropertiesConfig(), storagePropertiesConfig,
+                mock(FileStorageService.class), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailService.shutdown();
+    }
+
+    @Test
+    void getThumbnail_shouldResizeKeepingAspectRatio() throws IOException {
+        Path thumbnail = thumbnailService.getThumbnail(source, "v1", 100, ImageFormatEnum.JPEG);
+
+        BufferedImage image = ImageIO.read(thumbnail.toFile());
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+        assertFalse(image.getColorModel().hasAlpha());
+    }
+
+    @Test
+    void getThumbnail_shouldNotEnlargeSmallerSources() throws IOException {
+        Path thumbnail = thumbnailService.getThumbnail(source, "v1", 1000, ImageFormatEnum.PNG);
+
+        assertEquals(400, ImageIO.read(thumbnail.toFile()).getWidth());
+    }
+
+    @Test
+    void getThumbnail_shouldReuseCachedCopyOfSameVersion() throws IOException {
+        Path first = thumbnailService.getThumbnail(source, "v1", 100, ImageFormatEnum.JPEG);
+        Path second = thumbnailService.getThumbnail(source, "v1", 100, ImageFormatEnum.JPEG);
+        Path otherVersion = thumbnailService.getThumbnail(source, "v2", 100, ImageFormatEnum.JPEG);
+
+        assertEquals(first, second);
+        assertNotEquals(first, otherVersion);
+        assertEquals(1, meterRegistry.get("pebblely.thumbnails.requests").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void getThumbnail_shouldRejectInvalidWidthAndNonImages() throws IOException {
+        Path text = Files.writeString(directory.resolve("notes.png"), "not an image");
+
+        assertThrows(IllegalArgumentException.class, () -> thumbnailService.getThumbnail(source, "v1", 0, ImageFormatEnum.JPEG));
+        assertThrows(IllegalArgumentException.class, () -> thumbnailService.getThumbnail(text, "v1", 100, ImageFormatEnum.JPEG));
+    }
+
+}
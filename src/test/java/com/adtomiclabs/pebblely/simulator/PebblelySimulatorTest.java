@@ -0,0 +1,125 @@
+package com.adtomiclabs.pebblely.simulator;
+
+import com.adtomiclabs.pebblely.config.SimulatorPropertiesConfig;
+import com.adtomiclabs.pebblely.feign.PebblelyApi;
+import com.adtomiclabs.pebblely.feign.PebblelyRequestEncoder;
+import com.adtomiclabs.pebblely.feign.PebblelyResponseDecoder;
+import com.adtomiclabs.pebblely.model.Base64Image;
+import com.adtomiclabs.pebblely.model.request.UpscaleDto;
+import com.adtomiclabs.pebblely.model.response.PebblelyResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Feign;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PebblelySimulatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SimulatorPropertiesConfig simulatorPropertiesConfig;
+
+    private PebblelySimulator simulator;
+
+    @BeforeEach
+    void setUp() {
+        simulatorPropertiesConfig = new SimulatorPropertiesConfig();
+        simulatorPropertiesConfig.setPort(0);
+        simulatorPropertiesConfig.setCredits(10);
+        simulatorPropertiesConfig.setDefaultResponseSize(DataSize.ofKilobytes(64));
+        simulatorPropertiesConfig.getDefaultLatency().setDistribution(SimulatorPropertiesConfig.Distribution.FIXED);
+        simulatorPropertiesConfig.getDefaultLatency().setMedian(Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    void upscale_shouldReturnImageOfConfiguredSizeThroughPebblelyClient() throws IOException {
+        start();
+        PebblelyApi api = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new PebblelyRequestEncoder(objectMapper, true))
+                .decoder(new PebblelyResponseDecoder(objectMapper, directory, true))
+                .requestInterceptor(template -> template.header("X-Pebblely-Access-Token", "token"))
+                .target(PebblelyApi.class, simulator.getBaseUrl());
+
+        PebblelyResponseDto response = api.upscale(UpscaleDto.builder().image(Base64Image.of("AQID")).size(2048).build());
+
+        assertEquals(9, response.getCredits());
+        assertEquals(9, api.getCredits().getCredits());
+        BufferedImage image = ImageIO.read(response.getData().getFile().toFile());
+        assertNotNull(image);
+        long size = Files.size(response.getData().getFile());
+        assertTrue(size > 60_000 && size < 70_000, "Unexpected image size " + size);
+    }
+
+    @Test
+    void post_shouldBeRateLimitedWithRetryAfter() throws Exception {
+        simulatorPropertiesConfig.setRateLimitRate(1);
+        simulatorPropertiesConfig.setRetryAfter(Duration.ofSeconds(3));
+        start();
+
+        HttpResponse<String> response = post("/remove-background/v1");
+
+        assertEquals(429, response.statusCode());
+        assertEquals("3", response.headers().firstValue("Retry-After").orElseThrow());
+        assertEquals(1, simulator.getResponseCount(429));
+        assertEquals(10, simulator.getCredits());
+    }
+
+    @Test
+    void post_shouldCapRequestsPerSecond() throws Exception {
+        simulatorPropertiesConfig.setMaxRequestsPerSecond(1);
+        start();
+
+        assertEquals(200, post("/inpaint/v1").statusCode());
+        assertEquals(429, post("/inpaint/v1").statusCode());
+        assertEquals(1, simulator.getResponseCount(200));
+    }
+
+    @Test
+    void post_shouldInjectServerErrors() throws Exception {
+        simulatorPropertiesConfig.setServerErrorRate(1);
+        start();
+
+        int status = post("/create-background/v2").statusCode();
+
+        assertTrue(status == 500 || status == 502 || status == 503, "Unexpected status " + status);
+    }
+
+    private void start() throws IOException {
+        simulator = new PebblelySimulator(simulatorPropertiesConfig);
+        simulator.start();
+    }
+
+    private HttpResponse<String> post(String endpoint) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(simulator.getBaseUrl() + endpoint))
+                .header("X-Pebblely-Access-Token", "token")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"image\":\"AQID\"}"))
+                .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStorageBackendTest {
+
+    private static final List<String> DIRECTORIES = List.of("originals", "upscale");
+
+    @TempDir
+    Path directory;
+
+    private LocalStorageBackend storageBackend;
+
+    @BeforeEach
+    void setUp() {
+        storageBackend = start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageBackend.stop();
+    }
+
+    @Test
+    void put_shouldStoreFileInItsShard() throws IOException {
+        StoredObject stored = storageBackend.put("upscale", "Shoe (1).PNG", staged("shoe"));
+
+        String id = stored.getId();
+        Path file = directory.resolve("upscale").resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id + ".png");
+        assertEquals("Shoe (1).PNG", stored.getName());
+        assertEquals(4, stored.getSize());
+        assertEquals(file, storageBackend.getLocalFile("upscale", "Shoe (1).PNG"));
+        assertEquals("shoe", Files.readString(file));
+        assertTrue(storageBackend.stat("originals", "Shoe (1).PNG").isEmpty());
+    }
+
+    @Test
+    void put_shouldKeepFileOfSameName() throws IOException {
+        StoredObject first = storageBackend.put("upscale", "shoe.png", staged("first"));
+        StoredObject second = storageBackend.put("upscale", "shoe.png", staged("second"));
+        storageBackend.stop();
+
+        storageBackend = start();
+
+        assertEquals("shoe (1).png", second.getName());
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals("first", Files.readString(storageBackend.getLocalFile("upscale", "shoe.png")));
+        assertEquals("second", Files.readString(storageBackend.getLocalFile("upscale", "shoe (1).png")));
+        assertEquals(List.of("shoe (1).png", "shoe.png"), names("upscale"));
+    }
+
+    @Test
+    void stat_shouldDropNameOfMissingFile() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("shoe"));
+        Files.delete(storageBackend.getLocalFile("upscale", "shoe.png"));
+
+        assertTrue(storageBackend.stat("upscale", "shoe.png").isEmpty());
+        storageBackend.stop();
+        storageBackend = start();
+
+        assertEquals(List.of(), names("upscale"));
+        assertEquals("shoe.png", storageBackend.put("upscale", "shoe.png", staged("shoe")).getName());
+    }
+
+    @Test
+    void list_shouldReloadManifestAfterRestart() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("shoe"));
+        storageBackend.put("upscale", "tv.png", staged("tv"));
+        storageBackend.put("upscale", "name with\nnewline.png", staged("odd"));
+        assertTrue(storageBackend.delete("upscale", "tv.png"));
+        assertFalse(storageBackend.delete("upscale", "tv.png"));
+        storageBackend.stop();
+
+        storageBackend = start();
+
+        assertEquals(Set.of("shoe.png", "name with\nnewline.png"), Set.copyOf(names("upscale")));
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("upscale", "tv.png"));
+    }
+
+    @Test
+    void start_shouldSkipTornManifestLine() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("shoe"));
+        storageBackend.stop();
+        Files.write(directory.resolve("upscale").resolve(".manifest"), "+tv%2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        storageBackend = start();
+        storageBackend.put("upscale", "earring.png", staged("earring"));
+        storageBackend.stop();
+        storageBackend = start();
+
+        assertEquals(Set.of("shoe.png", "earring.png"), Set.copyOf(names("upscale")));
+    }
+
+    @Test
+    void start_shouldImportFlatFiles() throws IOException {
+        storageBackend.stop();
+        Files.writeString(directory.resolve("originals").resolve("earring.png"), "earring");
+        Files.writeString(directory.resolve("originals").resolve(".hidden"), "hidden");
+
+        storageBackend = start();
+
+        assertEquals(List.of("earring.png"), names("originals"));
+        assertEquals("earring", Files.readString(storageBackend.getLocalFile("originals", "earring.png")));
+        assertFalse(Files.exists(directory.resolve("originals").resolve("earring.png")));
+    }
+
+    @Test
+    void put_shouldNotifyListeners() throws IOException {
+        List<String> changes = new ArrayList<>();
+        storageBackend.addListener(new StorageBackend.Listener() {
+            @Override
+            public void stored(StoredObject object) {
+                changes.add("+" + object.getDirectory() + "/" + object.getName());
+            }
+
+            @Override
+            public void deleted(String directory, String name) {
+                changes.add("-" + directory + "/" + name);
+            }
+        });
+
+        storageBackend.put("originals", "shoe.png", staged("shoe"));
+        storageBackend.delete("originals", "shoe.png");
+
+        assertEquals(List.of("+originals/shoe.png", "-originals/shoe.png"), changes);
+    }
+
+    @Test
+    void put_shouldRejectInvalidNames() throws IOException {
+        Path staged = staged("shoe");
+
+        for (String name : List.of("", "..", "../shoe.png", "a/b.png", "a\\b.png")) {
+            assertThrows(IllegalArgumentException.class, () -> storageBackend.put("originals", name, staged));
+        }
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.put("unknown", "shoe.png", staged));
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("originals", "../upscale"));
+        assertTrue(Files.exists(staged));
+    }
+
+    private LocalStorageBackend start() {
+        LocalStorageBackend backend = new LocalStorageBackend(directory, DIRECTORIES);
+        backend.start();
+        return backend;
+    }
+
+    private Path staged(String content) throws IOException {
+        return Files.writeString(Files.createTempFile(directory, "staged", null), content);
+    }
+
+    private List<String> names(String subdirectory) throws IOException {
+        try (Stream<StoredObject> objects = storageBackend.list(subdirectory)) {
+            return objects.map(StoredObject::getName).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in of an S3-compatible object store, serving a single bucket from memory with path-style
+ * addressing. It implements the requests sent by {@link S3StorageBackend} and presigned downloads, ignoring
+ * authentication, and records how many parts of multipart uploads were received at the same time and how many
+ * objects were read.
+ */
+class S3StandIn implements AutoCloseable {
+
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+    private static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ISO_INSTANT;
+
+    private final String bucket;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, StoredEntry> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeParts = new AtomicInteger();
+    private final AtomicInteger maxActiveParts = new AtomicInteger();
+    private final AtomicInteger completedUploads = new AtomicInteger();
+    private final AtomicInteger objectReads = new AtomicInteger();
+
+    S3StandIn(String bucket) throws IOException {
+        this.bucket = bucket;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    URI getEndpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Writes an object directly, as another instance of the application would.
+     */
+    void putObject(String key, byte[] content) {
+        objects.put(key, new StoredEntry(content, "\"" + md5(content) + "\"", now(), "application/octet-stream"));
+    }
+
+    byte[] getObject(String key) {
+        StoredEntry entry = objects.get(key);
+        return entry != null ? entry.content() : null;
+    }
+
+    void deleteObject(String key) {
+        objects.remove(key);
+    }
+
+    int getMaxActiveParts() {
+        return maxActiveParts.get();
+    }
+
+    int getCompletedUploads() {
+        return completedUploads.get();
+    }
+
+    int getPendingUploads() {
+        return uploads.size();
+    }
+
+    int getObjectReads() {
+        return objectReads.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            int separator = path.indexOf('/');
+            String requestedBucket = separator < 0 ? path : path.substring(0, separator);
+            String key = separator < 0 ? "" : path.substring(separator + 1);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            if (!bucket.equals(requestedBucket)) {
+                error(exchange, 404, "NoSuchBucket");
+            } else if (key.isEmpty()) {
+                handleBucket(exchange, query);
+            } else {
+                handleObject(exchange, key, query);
+            }
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, Map<String, String> query) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "HEAD":
+                noContent(exchange, 200);
+                break;
+            case "GET":
+                list(exchange, query.getOrDefault("prefix", ""));
+                break;
+            default:
+                error(exchange, 405, "MethodNotAllowed");
+        }
+    }
+
+    private void handleObject(HttpExchange exchange, String key, Map<String, String> query) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                if (query.containsKey("uploadId")) {
+                    uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+                } else {
+                    byte[] content = body(exchange);
+                    String contentType = Objects.requireNonNullElse(exchange.getRequestHeaders().getFirst("Content-Type"), "application/octet-stream");
+                    StoredEntry entry = new StoredEntry(content, "\"" + md5(content) + "\"", now(), contentType);
+                    objects.put(key, entry);
+                    exchange.getResponseHeaders().set("ETag", entry.etag());
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                break;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    String uploadId = UUID.randomUUID().toString();
+                    uploads.put(uploadId, new ConcurrentHashMap<>());
+                    xml(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + escape(key)
+                            + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    completeUpload(exchange, key, query.get("uploadId"));
+                }
+                break;
+            case "DELETE":
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    objects.remove(key);
+                }
+                noContent(exchange, 204);
+                break;
+            case "GET":
+            case "HEAD":
+                objectReads.incrementAndGet();
+                getObject(exchange, key, query);
+                break;
+            default:
+                error(exchange, 405, "MethodNotAllowed");
+        }
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+        int active = activeParts.incrementAndGet();
+        maxActiveParts.accumulateAndGet(active, Math::max);
+        try {
+            byte[] content = body(exchange);
+            // Keeps the part in flight long enough for concurrent parts to overlap
+            Thread.sleep(50);
+            Map<Integer, byte[]> parts = uploads.get(uploadId);
+            if (parts == null) {
+                error(exchange, 404, "NoSuchUpload");
+                return;
+            }
+            parts.put(partNumber, content);
+            exchange.getResponseHeaders().set("ETag", "\"" + md5(content) + "\"");
+            exchange.sendResponseHeaders(200, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error(exchange, 500, "InternalError");
+        } finally {
+            activeParts.decrementAndGet();
+        }
+    }
+
+    private void completeUpload(HttpExchange exchange, String key, String uploadId) throws IOException {
+        String request = new String(body(exchange), StandardCharsets.UTF_8);
+        Map<Integer, byte[]> parts = uploads.remove(uploadId);
+        if (parts == null) {
+            error(exchange, 404, "NoSuchUpload");
+            return;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Matcher matcher = PART_NUMBER.matcher(request);
+        int count = 0;
+        while (matcher.find()) {
+            byte[] part = parts.get(Integer.parseInt(matcher.group(1)));
+            if (part == null) {
+                error(exchange, 400, "InvalidPart");
+                return;
+            }
+            content.write(part);
+            count++;
+        }
+        byte[] bytes = content.toByteArray();
+        StoredEntry entry = new StoredEntry(bytes, "\"" + md5(bytes) + "-" + count + "\"", now(), "application/octet-stream");
+        objects.put(key, entry);
+        completedUploads.incrementAndGet();
+        xml(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + escape(key)
+                + "</Key><ETag>" + escape(entry.etag()) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void getObject(HttpExchange exchange, String key, Map<String, String> query) throws IOException {
+        StoredEntry entry = objects.get(key);
+        if (entry == null) {
+            error(exchange, 404, "NoSuchKey");
+            return;
+        }
+        byte[] content = entry.content();
+        int start = 0;
+        int end = content.length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = bounds.length > 1 ? Math.min(Integer.parseInt(bounds[1]), content.length - 1) : content.length - 1;
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+        exchange.getResponseHeaders().set("ETag", entry.etag());
+        exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(entry.lastModified().atOffset(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Content-Type", entry.contentType());
+        if (query.containsKey("response-content-disposition")) {
+            exchange.getResponseHeaders().set("Content-Disposition", query.get("response-content-disposition"));
+        }
+        int length = end - start + 1;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            noContent(exchange, status);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content, start, length);
+        }
+    }
+
+    private void list(HttpExchange exchange, String prefix) throws IOException {
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>")
+                .append(bucket).append("</Name><Prefix>").append(escape(prefix)).append("</Prefix><IsTruncated>false</IsTruncated>");
+        new TreeMap<>(objects).forEach((key, entry) -> {
+            if (key.startsWith(prefix)) {
+                xml.append("<Contents><Key>").append(escape(key)).append("</Key><LastModified>")
+                        .append(ISO_DATE.format(entry.lastModified())).append("</LastModified><ETag>").append(escape(entry.etag()))
+                        .append("</ETag><Size>").append(entry.content().length).append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            }
+        });
+        xml(exchange, 200, xml.append("</ListBucketResult>").toString());
+    }
+
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream input = exchange.getRequestBody()) {
+            body = input.readAllBytes();
+        }
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        return contentSha256 != null && contentSha256.startsWith("STREAMING-") ? decodeChunks(body) : body;
+    }
+
+    /**
+     * Decodes an {@code aws-chunked} body, made of {@code <hex size>;chunk-signature=<signature>\r\n<data>\r\n}
+     * chunks ending with an empty chunk.
+     */
+    private static byte[] decodeChunks(byte[] body) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < body.length) {
+            int lineEnd = indexOfLineEnd(body, position);
+            String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            if (size == 0) {
+                break;
+            }
+            content.write(body, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return content.toByteArray();
+    }
+
+    private static int indexOfLineEnd(byte[] body, int from) {
+        for (int i = from; i < body.length - 1; i++) {
+            if (body[i] == '\r' && body[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Truncated chunk");
+    }
+
+    private static void xml(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void error(HttpExchange exchange, int status, String code) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            noContent(exchange, status);
+            return;
+        }
+        xml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>");
+    }
+
+    /**
+     * Answers a HEAD request, or with a 204 status. The JDK server closes the connection after such responses,
+     * which the client must be told so that it does not reuse the connection for its next request.
+     */
+    private static void noContent(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private record StoredEntry(byte[] content, String etag, Instant lastModified, String contentType) {
+    }
+
+}
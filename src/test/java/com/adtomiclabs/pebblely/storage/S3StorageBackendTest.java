@@ -0,0 +1,211 @@
+package com.adtomiclabs.pebblely.storage;
+
+import com.adtomiclabs.pebblely.config.StorageBackendConfig;
+import com.adtomiclabs.pebblely.config.StoragePropertiesConfig;
+import com.adtomiclabs.pebblely.exception.StorageFileNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3StorageBackendTest {
+
+    private static final String BUCKET = "pebblely";
+
+    @TempDir
+    Path directory;
+
+    private S3StandIn standIn;
+
+    private S3StorageBackend storageBackend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = new S3StandIn(BUCKET);
+        storageBackend = start(Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageBackend.stop();
+        standIn.close();
+    }
+
+    @Test
+    void put_shouldUploadSmallFileInSingleRequest() throws IOException {
+        Path staged = staged("shoe".getBytes(StandardCharsets.UTF_8));
+
+        StoredObject stored = storageBackend.put("upscale", "Shoe (1).png", staged);
+
+        assertEquals("app/upscale/Shoe (1).png", stored.getId());
+        assertEquals(4, stored.getSize());
+        assertEquals("shoe", new String(standIn.getObject("app/upscale/Shoe (1).png"), StandardCharsets.UTF_8));
+        assertEquals(0, standIn.getCompletedUploads());
+        assertEquals(stored, storageBackend.stat("upscale", "Shoe (1).png").orElseThrow());
+        // The uploaded file is kept as the local copy
+        assertFalse(Files.exists(staged));
+        assertEquals("shoe", Files.readString(storageBackend.getLocalFile("upscale", "Shoe (1).png")));
+    }
+
+    @Test
+    void put_shouldUploadLargeFileInParallelParts() throws IOException {
+        byte[] content = new byte[300 * 1024];
+        new Random(42).nextBytes(content);
+
+        StoredObject stored = storageBackend.put("upscale", "shoe.png", staged(content));
+
+        assertEquals(content.length, stored.getSize());
+        assertArrayEquals(content, standIn.getObject("app/upscale/shoe.png"));
+        assertEquals(1, standIn.getCompletedUploads());
+        assertEquals(0, standIn.getPendingUploads());
+        assertTrue(standIn.getMaxActiveParts() > 1);
+    }
+
+    @Test
+    void getLocalFile_shouldDownloadFilesWrittenElsewhere() throws IOException {
+        standIn.putObject("app/originals/tv.png", "first".getBytes(StandardCharsets.UTF_8));
+
+        Path first = storageBackend.getLocalFile("originals", "tv.png");
+        assertEquals("first", Files.readString(first));
+        assertEquals(first, storageBackend.getLocalFile("originals", "tv.png"));
+
+        standIn.putObject("app/originals/tv.png", "second".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("second", Files.readString(storageBackend.getLocalFile("originals", "tv.png")));
+    }
+
+    @Test
+    void getLocalFile_shouldReturnUploadedFileWithoutRequest() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("shoe".getBytes(StandardCharsets.UTF_8)));
+        int reads = standIn.getObjectReads();
+
+        assertEquals("shoe", Files.readString(storageBackend.getLocalFile("upscale", "shoe.png")));
+        assertEquals("shoe", Files.readString(storageBackend.getLocalFile("upscale", "shoe.png")));
+        assertEquals(reads, standIn.getObjectReads());
+
+        storageBackend.delete("upscale", "shoe.png");
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("upscale", "shoe.png"));
+    }
+
+    @Test
+    void getLocalFile_shouldRejectMissingFiles() throws IOException {
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("originals", "missing.png"));
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("originals", "../upscale"));
+        assertThrows(StorageFileNotFoundException.class, () -> storageBackend.getLocalFile("unknown", "shoe.png"));
+        assertTrue(storageBackend.stat("originals", "missing.png").isEmpty());
+    }
+
+    @Test
+    void openRange_shouldStreamRequestedBytes() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("0123456789".getBytes(StandardCharsets.UTF_8)));
+
+        try (InputStream input = storageBackend.openRange("upscale", "shoe.png", 2, 5)) {
+            assertEquals("2345", new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void getDownloadUrl_shouldPresignDownloadWithFilename() throws Exception {
+        storageBackend.put("upscale", "shoe.png", staged("shoe".getBytes(StandardCharsets.UTF_8)));
+
+        URI url = storageBackend.getDownloadUrl("upscale", "shoe.png").orElseThrow();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(url).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertTrue(url.getQuery().contains("X-Amz-Signature="));
+        assertEquals("shoe", response.body());
+        assertEquals("attachment; filename=\"shoe.png\"", response.headers().firstValue("Content-Disposition").orElseThrow());
+    }
+
+    @Test
+    void delete_shouldRemoveFileFromListing() throws IOException {
+        storageBackend.put("upscale", "shoe.png", staged("shoe".getBytes(StandardCharsets.UTF_8)));
+        storageBackend.put("upscale", "tv.png", staged("tv".getBytes(StandardCharsets.UTF_8)));
+        standIn.putObject("app/upscale/nested/earring.png", new byte[1]);
+        standIn.putObject("app/originals/earring.png", new byte[1]);
+
+        assertTrue(storageBackend.delete("upscale", "tv.png"));
+        assertFalse(storageBackend.delete("upscale", "tv.png"));
+
+        assertEquals(List.of("shoe.png"), names("upscale"));
+        assertEquals(List.of("earring.png"), names("originals"));
+    }
+
+    @Test
+    void start_shouldPollFilesWrittenByOtherInstances() throws Exception {
+        storageBackend.stop();
+        standIn.putObject("app/upscale/shoe.png", new byte[1]);
+        storageBackend = start(Duration.ofMillis(50));
+        BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+        storageBackend.addListener(new StorageBackend.Listener() {
+            @Override
+            public void stored(StoredObject object) {
+                changes.add("+" + object.getDirectory() + "/" + object.getName());
+            }
+
+            @Override
+            public void deleted(String directory, String name) {
+                changes.add("-" + directory + "/" + name);
+            }
+        });
+
+        storageBackend.put("upscale", "own.png", staged(new byte[1]));
+        assertEquals("+upscale/own.png", changes.poll(5, TimeUnit.SECONDS));
+        standIn.putObject("app/originals/tv.png", new byte[1]);
+        assertEquals("+originals/tv.png", changes.poll(5, TimeUnit.SECONDS));
+        standIn.deleteObject("app/upscale/shoe.png");
+        assertEquals("-upscale/shoe.png", changes.poll(5, TimeUnit.SECONDS));
+
+        // Files seen at start, and the files written by this instance, are only notified once
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private S3StorageBackend start(Duration pollInterval) {
+        StoragePropertiesConfig storagePropertiesConfig = new StoragePropertiesConfig();
+        storagePropertiesConfig.setLocation(directory.toString());
+        StoragePropertiesConfig.S3 s3 = storagePropertiesConfig.getS3();
+        s3.setEndpoint(standIn.getEndpoint());
+        s3.setBucket(BUCKET);
+        s3.setKeyPrefix("app/");
+        s3.setAccessKey("access-key");
+        s3.setSecretKey("secret-key");
+        s3.setPathStyleAccess(true);
+        s3.setPartSize(DataSize.ofKilobytes(64));
+        s3.setUploadConcurrency(4);
+        s3.setPollInterval(pollInterval);
+        S3StorageBackend backend = new StorageBackendConfig().s3StorageBackend(storagePropertiesConfig);
+        backend.start();
+        return backend;
+    }
+
+    private Path staged(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(directory, "staged", null), content);
+    }
+
+    private List<String> names(String subdirectory) {
+        try (Stream<StoredObject> objects = storageBackend.list(subdirectory)) {
+            return objects.map(StoredObject::getName).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.adtomiclabs.pebblely.utils;
+
+import com.adtomiclabs.pebblely.config.SimulatorPropertiesConfig;
+import com.adtomiclabs.pebblely.simulator.PebblelySimulator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long LATENCY = Duration.ofMillis(100).toNanos();
+
+    @Test
+    void tryAcquire_shouldWaitForLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 2.0);
+
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertFalse(limiter.tryAcquire(Duration.ofMillis(10)));
+
+        limiter.ignored();
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void succeeded_shouldGrowLimitWhileSaturatedAndFast() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 3, 0.5, 2.0);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(Duration.ZERO);
+            limiter.succeeded(LATENCY);
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void dropped_shouldShrinkLimitMultiplicatively() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 0.5, 2.0);
+
+        limiter.tryAcquire(Duration.ZERO);
+        limiter.dropped();
+        assertEquals(4, limiter.getLimit());
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(Duration.ZERO);
+            limiter.dropped();
+        }
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void succeeded_shouldKeepLimitUnderWideLatencySpread() throws InterruptedException {
+        // The simulated latency of create-background
+        SimulatorPropertiesConfig.Latency latency = new SimulatorPropertiesConfig.Latency();
+        latency.setMedian(Duration.ofSeconds(6));
+        latency.setP99(Duration.ofSeconds(15));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 6, 0.7, 2.0);
+
+        for (int i = 0; i < 500; i++) {
+            runBatch(limiter, () -> PebblelySimulator.latency(latency).toNanos());
+        }
+
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    void succeeded_shouldShrinkLimitOnceWhenLatencyRises() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8, 0.5, 2.0);
+        for (int i = 0; i < 200; i++) {
+            limiter.tryAcquire(Duration.ZERO);
+            limiter.succeeded(LATENCY);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(Duration.ZERO);
+            limiter.succeeded(LATENCY * 4);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    /**
+     * Starts as many calls as the limit allows, then completes them with the given latencies.
+     */
+    private static void runBatch(AdaptiveConcurrencyLimiter limiter, LongSupplier latency) throws InterruptedException {
+        int calls = 0;
+        while (limiter.tryAcquire(Duration.ZERO)) {
+            calls++;
+        }
+        for (int i = 0; i < calls; i++) {
+            limiter.succeeded(latency.getAsLong());
+        }
+    }
+
+}
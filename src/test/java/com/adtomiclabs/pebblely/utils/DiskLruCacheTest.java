@@ -0,0 +1,65 @@
+package com.adtomiclabs.pebblely.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskLruCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void get_shouldReturnCachedCopy() throws IOException {
+        DiskLruCache cache = new DiskLruCache(directory.resolve("cache"), 1024);
+        Path source = writeFile("source", 10);
+
+        cache.put("abcdef", source);
+        Optional<Path> cached = cache.get("abcdef");
+
+        assertTrue(cached.isPresent());
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(cached.get()));
+        assertEquals(1, cache.getHits().get());
+        assertTrue(cache.get("missing").isEmpty());
+        assertEquals(1, cache.getMisses().get());
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        DiskLruCache cache = new DiskLruCache(directory.resolve("cache"), 25);
+
+        cache.put("aa1", writeFile("first", 10));
+        cache.put("aa2", writeFile("second", 10));
+        cache.get("aa1");
+        cache.put("aa3", writeFile("third", 10));
+
+        assertTrue(cache.get("aa1").isPresent());
+        assertTrue(cache.get("aa2").isEmpty());
+        assertTrue(cache.get("aa3").isPresent());
+        assertEquals(20, cache.getSize());
+        assertEquals(1, cache.getEvictions().get());
+    }
+
+    @Test
+    void constructor_shouldIndexExistingEntries() throws IOException {
+        DiskLruCache cache = new DiskLruCache(directory.resolve("cache"), 1024);
+        cache.put("abcdef", writeFile("source", 10));
+
+        DiskLruCache reopened = new DiskLruCache(directory.resolve("cache"), 1024);
+
+        assertEquals(1, reopened.getEntryCount());
+        assertEquals(10, reopened.getSize());
+        assertTrue(reopened.get("abcdef").isPresent());
+    }
+
+    private Path writeFile(String name, int size) throws IOException {
+        return Files.write(directory.resolve(name), new byte[size]);
+    }
+
+}
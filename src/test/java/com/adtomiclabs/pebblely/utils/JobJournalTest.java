@@ -0,0 +1,157 @@
+package com.adtomiclabs.pebblely.utils;
+
+import com.adtomiclabs.pebblely.model.JobJournalEntry;
+import com.adtomiclabs.pebblely.model.request.JobRequestDto;
+import com.adtomiclabs.pebblely.model.response.FileResultDto;
+import com.adtomiclabs.pebblely.model.response.FileStatusEnum;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_shouldReplayAppendedEntries() {
+        JobJournal journal = journal(1000);
+        journal.open();
+        journal.append(submitted("job-1", 2)).join();
+        journal.append(started("job-1", 0)).join();
+        journal.append(completed("job-1", 0)).join();
+        journal.append(started("job-1", 1)).join();
+        journal.close();
+
+        Map<String, List<JobJournalEntry>> jobs = journal(1000).open();
+
+        List<JobJournalEntry> entries = jobs.get("job-1");
+        assertEquals(List.of(JobJournalEntry.Type.SUBMITTED, JobJournalEntry.Type.FILE_COMPLETED, JobJournalEntry.Type.FILE_STARTED),
+                entries.stream().map(JobJournalEntry::getType).toList());
+        assertEquals(100, entries.get(0).getRequest().getUpscaleSize());
+        assertEquals("image-1.png", entries.get(0).getFiles().get(1).getFilename());
+        assertEquals(FileStatusEnum.SUCCEEDED, entries.get(1).getResult().getStatus());
+        assertEquals(1, entries.get(2).getIndex());
+    }
+
+    @Test
+    void open_shouldSkipTornLastEntry() throws IOException {
+        JobJournal journal = journal(1000);
+        journal.open();
+        journal.append(submitted("job-1", 1)).join();
+        journal.close();
+        Files.write(file(), "{\"type\":\"FILE_COMPLETED\",\"jobId\":\"jo".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        JobJournal reopened = journal(1000);
+        assertEquals(1, reopened.open().get("job-1").size());
+        reopened.append(completed("job-1", 0)).join();
+        reopened.close();
+
+        assertEquals(2, journal(1000).open().get("job-1").size());
+    }
+
+    @Test
+    void append_shouldCompactJournal() throws IOException {
+        JobJournal journal = journal(10);
+        journal.open();
+        journal.append(submitted("expired", 1)).join();
+        journal.append(JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.COMPLETED)
+                .jobId("expired")
+                .timestamp(Instant.now().minus(Duration.ofDays(1)))
+                .build()).join();
+        journal.append(submitted("job-1", 20)).join();
+        for (int i = 0; i < 20; i++) {
+            journal.append(started("job-1", i)).join();
+            journal.append(completed("job-1", i)).join();
+        }
+        journal.close();
+
+        assertTrue(journal.getCompactions().get() > 1);
+        assertTrue(Files.readAllLines(file()).size() < 43);
+        Map<String, List<JobJournalEntry>> jobs = journal(10).open();
+        assertFalse(jobs.containsKey("expired"));
+        assertEquals(21, jobs.get("job-1").size());
+        assertTrue(jobs.get("job-1").stream().noneMatch(entry -> entry.getType() == JobJournalEntry.Type.FILE_STARTED));
+    }
+
+    @Test
+    void append_shouldCompleteEveryQueuedEntry() {
+        JobJournal journal = journal(1000);
+        journal.open();
+        journal.append(submitted("job-1", 200)).join();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(journal.append(completed("job-1", i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        journal.close();
+
+        assertTrue(journal.getSyncs().get() <= 201);
+        assertEquals(201, journal(1000).open().get("job-1").size());
+        assertTrue(journal.append(completed("job-1", 0)).isCompletedExceptionally());
+    }
+
+    private JobJournal journal(long compactionThreshold) {
+        return new JobJournal(file(), objectMapper, compactionThreshold, Duration.ofHours(1));
+    }
+
+    private Path file() {
+        return directory.resolve("journal").resolve("jobs.log");
+    }
+
+    private static JobJournalEntry submitted(String jobId, int files) {
+        List<JobJournalEntry.JournaledFile> journaledFiles = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            journaledFiles.add(new JobJournalEntry.JournaledFile("image-" + i + ".png", "image/png"));
+        }
+        return JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.SUBMITTED)
+                .jobId(jobId)
+                .timestamp(Instant.now())
+                .operation("upscale")
+                .request(JobRequestDto.builder().upscaleSize(100).build())
+                .files(journaledFiles)
+                .build();
+    }
+
+    private static JobJournalEntry started(String jobId, int index) {
+        return JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.FILE_STARTED)
+                .jobId(jobId)
+                .timestamp(Instant.now())
+                .index(index)
+                .build();
+    }
+
+    private static JobJournalEntry completed(String jobId, int index) {
+        return JobJournalEntry.builder()
+                .type(JobJournalEntry.Type.FILE_COMPLETED)
+                .jobId(jobId)
+                .timestamp(Instant.now())
+                .index(index)
+                .result(FileResultDto.builder()
+                        .filename("image-" + index + ".png")
+                        .status(FileStatusEnum.SUCCEEDED)
+                        .output("image-" + index + ".png")
+                        .build())
+                .build();
+    }
+
+}